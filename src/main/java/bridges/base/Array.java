@@ -1,5 +1,7 @@
 package bridges.base;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
 
 import bridges.validation.InvalidValueException;
@@ -35,6 +37,10 @@ public class Array<E> extends DataStruct {
 	private int[] dims = {1, 1, 1};			// array dimensions
 	private int size;						// array size
 
+	// the elements and dimensions when clearDirty was last called
+	private Element<?>[] sent_data;
+	private int[] sent_dims;
+
 	/*
 	 * Construct a default array object
 	 */
@@ -197,4 +203,62 @@ public class Array<E> extends DataStruct {
 
 		return json_str;
 	}
+
+	/**
+	 *
+	 *	Writes the elements whose representation changed since the last
+	 *	call to clearDirty; elements replaced or resized arrays need the
+	 *	whole representation
+	 *
+	 *	@param out where to write the changes
+	 *	@return false if nothing was written
+	 *
+	 */
+	@Override
+	public boolean writeDeltaRepresentation(Writer out) throws IOException {
+		if (sent_data == null || sent_data.length != size
+			|| sent_dims[0] != dims[0] || sent_dims[1] != dims[1]
+			|| sent_dims[2] != dims[2])
+			return false;
+		for (int i = 0; i < size; i++) {
+			if (array_data.get(i) != sent_data[i])
+				return false;
+		}
+
+		out.write(QUOTE + "dims" + QUOTE + COLON +
+			OPEN_BOX +
+			dims[0] + COMMA + dims[1] + COMMA + dims[2] +
+			CLOSE_BOX + COMMA +
+			QUOTE + "nodes"  + QUOTE + COLON + OPEN_CURLY);
+		// indices of the nodes in the full representation, which
+		// leaves out the null elements
+		int node = 0;
+		boolean first = true;
+		for (int i = 0; i < size; i++) {
+			Element<E> el = array_data.get(i);
+			if (el == null)
+				continue;
+			if (el.isDirty()) {
+				if (!first)
+					out.write(COMMA);
+				first = false;
+				out.write(QUOTE + node + QUOTE + COLON + el.getElementRepresentation());
+			}
+			node++;
+		}
+		out.write(CLOSE_CURLY + CLOSE_CURLY);
+		return true;
+	}
+
+	@Override
+	public void clearDirty() {
+		sent_data = new Element<?>[size];
+		for (int i = 0; i < size; i++) {
+			Element<E> el = array_data.get(i);
+			sent_data[i] = el;
+			if (el != null)
+				el.clearDirty();
+		}
+		sent_dims = dims.clone();
+	}
 }
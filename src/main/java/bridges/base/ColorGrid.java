@@ -1,4 +1,8 @@
 package bridges.base;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.util.*;
 import bridges.base.Color;
 import java.nio.ByteBuffer;
@@ -187,32 +191,52 @@ public class ColorGrid extends Grid<Color> {
 	 * @return the JSON representation (string) of the color grid
 	**/
 	public String getDataStructureRepresentation () {
-		ByteBuffer byte_buff = getRLE();
-
-		// store length of bytes in buffer and allocate new byte array of same size
-		int len = byte_buff.remaining();
-		byte[] byte_arr = new byte[len];
+		StringWriter out = new StringWriter();
+		try {
+			writeDataStructureRepresentation(out);
+		}
+		catch (IOException e) {
+			// a StringWriter does not fail
+			throw new UncheckedIOException(e);
+		}
+		return out.toString();
+	}
 
-		// transfer bytes from buffer to array
-		byte_buff.get(byte_arr);
+	/**
+	 * Write the JSON representation of the color grid; the pixels are
+	 * encoded to base64 a chunk at a time
+	 *
+	 * @param out where to write the representation
+	 * @throws IOException if writing to out fails
+	**/
+	@Override
+	public void writeDataStructureRepresentation(Writer out) throws IOException {
+		ByteBuffer byte_buff = getRLE();
 		String encoding = "RLE";
 
 		// if RLE encoding is larger than RAW, use RAW
-		if (len > gridSize[0] * gridSize[1] * 4) {
+		if (byte_buff.remaining() > gridSize[0] * gridSize[1] * 4) {
 			encoding = "RAW";
 			byte_buff = getRAW();
-			byte_arr = byte_buff.array();
+			((Buffer)byte_buff).rewind();
 		}
 
 		// Add the byte representation of the grid
-		String json_str =  QUOTE + "encoding" + QUOTE + COLON + QUOTE + encoding +
-			QUOTE + COMMA + QUOTE + "nodes" + QUOTE + COLON + OPEN_BOX  + QUOTE +
-			Base64.encodeBase64String(byte_arr) + QUOTE + CLOSE_BOX + COMMA;
+		out.write(QUOTE + "encoding" + QUOTE + COLON + QUOTE + encoding +
+			QUOTE + COMMA + QUOTE + "nodes" + QUOTE + COLON + OPEN_BOX  + QUOTE);
+		// chunks of a multiple of 3 bytes encode to the same base64 as
+		// the whole buffer
+		byte[] chunk = new byte[3 * 16 * 1024];
+		while (byte_buff.hasRemaining()) {
+			int len = Math.min(chunk.length, byte_buff.remaining());
+			byte_buff.get(chunk, 0, len);
+			out.write(Base64.encodeBase64String(len == chunk.length ? chunk
+					: Arrays.copyOf(chunk, len)));
+		}
+		out.write(QUOTE + CLOSE_BOX + COMMA);
 
 		// Specify the dimensions of the grid
-		json_str += QUOTE + "dimensions" + QUOTE + COLON +
-			OPEN_BOX + gridSize[0] + "," + gridSize[1] + CLOSE_BOX + CLOSE_CURLY;
-
-		return json_str;
+		out.write(QUOTE + "dimensions" + QUOTE + COLON +
+			OPEN_BOX + gridSize[0] + "," + gridSize[1] + CLOSE_BOX + CLOSE_CURLY);
 	}
 }
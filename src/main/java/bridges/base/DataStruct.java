@@ -1,5 +1,8 @@
 package bridges.base;
 
+import java.io.IOException;
+import java.io.Writer;
+
 /*! \mainpage BRIDGES
  *	@author  Mihai Mehedint, David Burlinson, Dakota Carmer, Kalpathi Subramanian, Jamie Payton, Michael Youngblood, Robert Kosara
  *	@date  7/18/16
@@ -63,5 +66,44 @@ public abstract class DataStruct {
 
 	public  abstract  String getDataStructType();
 	public abstract String getDataStructureRepresentation();
+
+	/**
+	 *	@brief Writes the JSON representation of the data structure, the
+	 *	same as getDataStructureRepresentation returns
+	 *
+	 *	Data structures with large representations override it to write
+	 *	their JSON piece by piece rather than building it as one String.
+	 *
+	 *	@param out where to write the representation
+	 *	@throws IOException if writing to out fails
+	 */
+	public void writeDataStructureRepresentation(Writer out) throws IOException {
+		out.write(getDataStructureRepresentation());
+	}
+
+	/**
+	 *	@brief Writes the changes since the last call to clearDirty, in
+	 *	place of the JSON representation
+	 *
+	 *	Changed nodes are written as a "nodes" object from their index in
+	 *	the full representation to their JSON, changed links likewise as
+	 *	a "links" object. Data structures that can not describe their
+	 *	changes this way, or whose structure changed, return false.
+	 *
+	 *	@param out where to write the changes
+	 *	@return false if nothing was written and the whole representation
+	 *	has to be sent
+	 *	@throws IOException if writing to out fails
+	 */
+	public boolean writeDeltaRepresentation(Writer out) throws IOException {
+		return false;
+	}
+
+	/**
+	 *	@brief Marks the current state as visualized, the base of the next
+	 *	writeDeltaRepresentation
+	 */
+	public void clearDirty() {
+	}
 };
 
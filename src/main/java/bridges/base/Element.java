@@ -44,6 +44,9 @@ public class Element<E> extends DataStruct {
 	private HashMap<Element<E>, LinkVisualizer>  lvisualizer;
 	private E value;
 
+	// whether the label or the visualizer changed since clearDirty
+	private boolean dirty = true;
+
 	/**
 	 *  @brief Get the Element type name
 	 *	@return the element type (string)
@@ -192,6 +195,7 @@ public class Element<E> extends DataStruct {
 	 */
 	public void setVisualizer(ElementVisualizer visualizer) {
 		this.visualizer = visualizer;
+		dirty = true;
 	}
 
 	/**
@@ -348,6 +352,26 @@ public class Element<E> extends DataStruct {
 		return null;
 	}
 
+	/**
+	 * @brief Tells whether the representation of the element changed since
+	 *	the last call to clearDirty
+	 *
+	 * @return true if the label or the visual properties changed, or if
+	 *	clearDirty was never called
+	 */
+	public boolean isDirty() {
+		return dirty || visualizer.isDirty();
+	}
+
+	/**
+	 * @brief Marks the label and the visual properties as visualized
+	 */
+	@Override
+	public void clearDirty() {
+		dirty = false;
+		visualizer.clearDirty();
+	}
+
 	/**
 	 *
 	 *	Get  the link visualizer representation, iterating through
@@ -380,6 +404,7 @@ public class Element<E> extends DataStruct {
 	 */
 	public void setLabel(String label) {
 		this.label = label;
+		dirty = true;
 	}
 
 	/**
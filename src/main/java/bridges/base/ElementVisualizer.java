@@ -53,6 +53,11 @@ public class ElementVisualizer {
 					size = 10.0;
 	private float   opacity = 1.0f;
 
+	// whether the properties changed since clearDirty; the color is
+	// compared with its value then, as it can be changed through getColor
+	private boolean dirty = true;
+	private Color sent_color;
+
 	// default properties
 	private Map<String, String> properties = new HashMap<String, String>() {
 		{
@@ -160,6 +165,7 @@ public class ElementVisualizer {
 		Validation.validateSize(sz);
 		size = sz;
 		properties.put("size", Double.toString(size));
+		dirty = true;
 	}
 
 	/**
@@ -247,6 +253,7 @@ public class ElementVisualizer {
 		aShape = aShape.toLowerCase();
 		Validation.validateShape(aShape);
 		shape = aShape;
+		dirty = true;
 	}
 
 	/**
@@ -279,6 +286,7 @@ public class ElementVisualizer {
 	public void setLocation(double x, double y) {
 		locationX = x;
 		locationY = y;
+		dirty = true;
 	}
 
 	/**
@@ -300,4 +308,23 @@ public class ElementVisualizer {
 	public double getLocationY() {
 		return locationY;
 	}
+
+	/**
+	 *  @brief Tells whether the visual properties changed since the last
+	 *	call to clearDirty
+	 *
+	 *	@return true if they changed, or if clearDirty was never called
+	 */
+	public boolean isDirty() {
+		return dirty || sent_color == null || !sent_color.equals(color);
+	}
+
+	/**
+	 *  @brief Marks the current visual properties as visualized
+	 */
+	public void clearDirty() {
+		dirty = false;
+		sent_color = new Color(color.getRed(), color.getGreen(), color.getBlue(),
+				color.getAlpha());
+	}
 }
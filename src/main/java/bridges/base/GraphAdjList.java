@@ -1,5 +1,9 @@
 package bridges.base;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.util.HashMap;
 import java.util.Map.Entry;
 import java.util.ArrayList;
@@ -111,6 +115,11 @@ public class GraphAdjList<K, E1, E2> extends DataStruct  {
 	private boolean forceLargeViz = false;
 	private boolean forceSmallViz = false;
 
+	// the vertices and the link visualizers of the edges, in the order of
+	// the JSON representation, when clearDirty was last called
+	private Element<?>[] sent_nodes;
+	private LinkVisualizer[] sent_links;
+
 
 	/**
 	 *
@@ -482,38 +491,150 @@ public class GraphAdjList<K, E1, E2> extends DataStruct  {
 		}
 	}
 
+	// whether the graph is sent with the large graph visualization
+	private boolean isLargeVisualization() {
+		return forceLargeViz ||
+			(!forceSmallViz && this.vertices.size() > LARGE_GRAPH_VERT_SIZE && areAllVerticesLocated());
+	}
+
+	/**
+	 *	@brief Writes the vertices and the edges whose representation
+	 *	changed since the last call to clearDirty
+	 *
+	 *	Adding or removing vertices or edges, and the large graph
+	 *	visualization, need the whole representation.
+	 *
+	 *	@param out where to write the changes
+	 *	@return false if nothing was written
+	 *	@throws IOException if writing to out fails
+	 */
+	@Override
+	public boolean writeDeltaRepresentation(Writer out) throws IOException {
+		if (sent_nodes == null || vertices.size() != sent_nodes.length
+			|| isLargeVisualization())
+			return false;
+		// the vertices and edges must be the ones visualized, in the
+		// same order
+		int n = 0;
+		for (Element<E1> el : vertices.values()) {
+			if (el != sent_nodes[n++])
+				return false;
+		}
+		int l = 0;
+		for (SLelement<Edge<K, E2>> list : adj_list.values()) {
+			for (; list != null; list = list.getNext()) {
+				if (l == sent_links.length
+					|| list.getValue().getLinkVisualizer() != sent_links[l++])
+					return false;
+			}
+		}
+		if (l != sent_links.length)
+			return false;
+
+		HashMap<Element<E1>, Integer> node_map = new HashMap<Element<E1>, Integer>();
+		out.write(QUOTE + "nodes"  + QUOTE + COLON + OPEN_CURLY);
+		boolean first = true;
+		for (Element<E1> el : vertices.values()) {
+			int indx = node_map.size();
+			node_map.put(el, indx);
+			if (el.isDirty()) {
+				if (!first)
+					out.write(COMMA);
+				first = false;
+				out.write(QUOTE + indx + QUOTE + COLON + el.getElementRepresentation());
+			}
+		}
+		out.write(CLOSE_CURLY + COMMA);
+
+		out.write(QUOTE + "links" + QUOTE + COLON + OPEN_CURLY);
+		first = true;
+		l = 0;
+		for (Entry<K, SLelement<Edge<K, E2>>> a_list : adj_list.entrySet()) {
+			Integer src_indx = node_map.get(vertices.get(a_list.getKey()));
+			for (SLelement<Edge<K, E2>> list = a_list.getValue(); list != null;
+				list = list.getNext(), l++) {
+				Edge<K, E2> edge = list.getValue();
+				LinkVisualizer lv = edge.getLinkVisualizer();
+				if (!lv.isDirty())
+					continue;
+				Integer dest_indx = node_map.get(vertices.get(edge.getTo()));
+				if (!first)
+					out.write(COMMA);
+				first = false;
+				out.write(QUOTE + l + QUOTE + COLON + lv.getLinkRepresentation(
+						Integer.toString(src_indx), Integer.toString(dest_indx)));
+			}
+		}
+		out.write(CLOSE_CURLY + CLOSE_CURLY);
+		return true;
+	}
+
+	@Override
+	public void clearDirty() {
+		ArrayList<Element<E1>> nodes = new ArrayList<Element<E1>>(vertices.size());
+		for (Element<E1> el : vertices.values()) {
+			el.clearDirty();
+			nodes.add(el);
+		}
+		ArrayList<LinkVisualizer> links = new ArrayList<LinkVisualizer>();
+		for (SLelement<Edge<K, E2>> list : adj_list.values()) {
+			for (; list != null; list = list.getNext()) {
+				LinkVisualizer lv = list.getValue().getLinkVisualizer();
+				lv.clearDirty();
+				links.add(lv);
+			}
+		}
+		sent_nodes = nodes.toArray(new Element<?>[nodes.size()]);
+		sent_links = links.toArray(new LinkVisualizer[links.size()]);
+	}
+
 	/*
 	 *  @brief Constructs the JSON representation of the the data structure
 	 *
 	 *  @return the JSON (string) of the graph
 	 */
 	public String getDataStructureRepresentation() {
-		if (forceLargeViz ||
-			(!forceSmallViz && this.vertices.size() > LARGE_GRAPH_VERT_SIZE && areAllVerticesLocated())) {
-			return getDataStructureLargeGraph();
+		StringWriter out = new StringWriter();
+		try {
+			writeDataStructureRepresentation(out);
+		}
+		catch (IOException e) {
+			// a StringWriter does not fail
+			throw new UncheckedIOException(e);
+		}
+		return out.toString();
+	}
+
+	/**
+	 *	@brief Writes the JSON representation of the graph, node by node
+	 *	and link by link
+	 *
+	 *	@param out where to write the representation
+	 *	@throws IOException if writing to out fails
+	 */
+	@Override
+	public void writeDataStructureRepresentation(Writer out) throws IOException {
+		if (isLargeVisualization()) {
+			writeDataStructureLargeGraph(out);
+			return;
 		}
 		// map to reorder the nodes for building JSON
 		HashMap<Element<E1>, Integer> node_map = new HashMap<Element<E1>, Integer>();
-		// get teh list nodes
-		ArrayList<Element<E1> > nodes = new ArrayList<Element<E1>> ();
-
-		for (Entry<K, Element<E1>> element : vertices.entrySet())
-			nodes.add(element.getValue());
 
 		// remap  map these nodes to  0...MaxNodes-1
-		// and build the nodes JSON
-		StringBuilder nodes_JSON = new StringBuilder();
-		for (int k = 0; k < nodes.size(); k++) {
-			node_map.put(nodes.get(k), k);
-			nodes_JSON.append(nodes.get(k).getElementRepresentation());
-			nodes_JSON.append(COMMA);
-		}
-		// remove the last comma
-		if (nodes.size() != 0) 		// only if there is at least one node
-			nodes_JSON.setLength(nodes_JSON.length() - 1);
-
-		// build the links JSON - traverse the adj. lists
-		StringBuilder links_JSON = new StringBuilder();
+		// and write the nodes JSON
+		out.write(QUOTE + "nodes"  + QUOTE + COLON + OPEN_BOX);
+		for (Entry<K, Element<E1>> element : vertices.entrySet()) {
+			if (!node_map.isEmpty())
+				out.write(COMMA);
+			node_map.put(element.getValue(), node_map.size());
+			out.write(element.getValue().getElementRepresentation());
+		}
+		out.write(CLOSE_BOX + COMMA);
+
+		// write the links JSON - traverse the adj. lists
+		out.write(QUOTE + "links" + QUOTE + COLON + OPEN_BOX);
+		boolean first = true;
 		for (Entry<K, SLelement<Edge<K, E2>>> a_list : adj_list.entrySet()) {
 			SLelement<Edge<K, E2>> list = a_list.getValue();
 			// get the source vertex index for the JSON (int)
@@ -526,41 +647,28 @@ public class GraphAdjList<K, E1, E2> extends DataStruct  {
 				Integer dest_indx = node_map.get(dest_vert);
 				// get link representation
 				LinkVisualizer lv = edge.getLinkVisualizer();
-				links_JSON.append(lv.getLinkRepresentation(
-						Integer.toString(src_indx), Integer.toString(dest_indx))).append(COMMA);
+				if (!first)
+					out.write(COMMA);
+				first = false;
+				out.write(lv.getLinkRepresentation(
+						Integer.toString(src_indx), Integer.toString(dest_indx)));
 				list = list.getNext();
 			}
 		}
-		// remove the last comma
-		if (links_JSON.length() > 0) // if there is at least one link
-			links_JSON.setLength(links_JSON.length() - 1);
-
-
-		String json_str =
-			QUOTE + "nodes"  + QUOTE + COLON +
-			OPEN_BOX + nodes_JSON.toString()  + CLOSE_BOX + COMMA +
-			QUOTE + "links" + QUOTE + COLON +
-			OPEN_BOX + links_JSON.toString() + CLOSE_BOX +
-			CLOSE_CURLY;
-
-		return json_str;
-
+		out.write(CLOSE_BOX + CLOSE_CURLY);
 	}
 
-	private String getDataStructureLargeGraph() {
+	private void writeDataStructureLargeGraph(Writer out) throws IOException {
 		HashMap<Element<E1>, Integer> node_map = new HashMap<Element<E1>, Integer>();
-		// get the list nodes
-		ArrayList<Element<E1>> nodes = new ArrayList<Element<E1>>();
 
-		for (Entry<K, Element<E1>> element : vertices.entrySet())
-			nodes.add(element.getValue());
-
-		String nodes_JSON = "";
 		// remap  map these nodes to  0...MaxNodes-1
-		// and build the nodes JSON
-		for (int k = 0; k < nodes.size(); k++) {
-			node_map.put(nodes.get(k), k);
-			ElementVisualizer elvis = nodes.get(k).getVisualizer();
+		// and write the nodes JSON
+		out.write(QUOTE + "nodes"  + QUOTE + COLON + OPEN_BOX);
+		for (Entry<K, Element<E1>> element : vertices.entrySet()) {
+			if (!node_map.isEmpty())
+				out.write(COMMA);
+			node_map.put(element.getValue(), node_map.size());
+			ElementVisualizer elvis = element.getValue().getVisualizer();
 			String loc_str = "";
 			if (elvis.getLocationX() != Double.POSITIVE_INFINITY
 				&& elvis.getLocationY() != Double.POSITIVE_INFINITY) {
@@ -569,20 +677,16 @@ public class GraphAdjList<K, E1, E2> extends DataStruct  {
 					+ CLOSE_BOX + COMMA;
 			}
 			Color color = elvis.getColor();
-			nodes_JSON += OPEN_BOX + loc_str + OPEN_BOX +
+			out.write(OPEN_BOX + loc_str + OPEN_BOX +
 				color.getRed() + COMMA +
 				color.getGreen() + COMMA +
 				color.getBlue() + COMMA +
-				color.getAlpha() + CLOSE_BOX + CLOSE_BOX + COMMA;
-
+				color.getAlpha() + CLOSE_BOX + CLOSE_BOX);
 		}
+		out.write(CLOSE_BOX + COMMA);
 
-		if (nodes_JSON.length() > 0) {
-			nodes_JSON = nodes_JSON.substring(0, nodes_JSON.length() - 1);
-		}
-
-		String link_JSON = "";
-
+		out.write(QUOTE + "links" + QUOTE + COLON + OPEN_BOX);
+		boolean first = true;
 		for (Entry<K, SLelement<Edge<K, E2>>> a_list : adj_list.entrySet()) {
 			SLelement<Edge<K, E2>> list = a_list.getValue();
 			Element<E1> src_vert = vertices.get(a_list.getKey());
@@ -593,29 +697,20 @@ public class GraphAdjList<K, E1, E2> extends DataStruct  {
 				Integer dest_indx = node_map.get(dest_vert);
 				Color color = src_vert.getLinkVisualizer(dest_vert).getColor();
 
-				link_JSON += OPEN_BOX +
+				if (!first)
+					out.write(COMMA);
+				first = false;
+				out.write(OPEN_BOX +
 					src_indx + COMMA +
 					dest_indx + COMMA +
 					OPEN_BOX +
 					color.getRed() + COMMA +
 					color.getGreen() + COMMA +
 					color.getBlue() + COMMA +
-					color.getAlpha() + CLOSE_BOX + CLOSE_BOX + COMMA;
+					color.getAlpha() + CLOSE_BOX + CLOSE_BOX);
 				list = list.getNext();
 			}
 		}
-
-		if (link_JSON.length() > 0) {
-			link_JSON = link_JSON.substring(0, link_JSON.length() - 1);
-		}
-
-		String graph_alist_json =
-			QUOTE + "nodes"  + QUOTE + COLON +
-			OPEN_BOX + nodes_JSON + CLOSE_BOX + COMMA +
-			QUOTE + "links" + QUOTE + COLON +
-			OPEN_BOX + link_JSON + CLOSE_BOX +
-			CLOSE_CURLY;
-
-		return graph_alist_json;
+		out.write(CLOSE_BOX + CLOSE_CURLY);
 	}
 }
@@ -67,6 +67,11 @@ public class LinkVisualizer {
 	// link thickness
 	private double thickness;
 
+	// whether the properties changed since clearDirty; the color is
+	// compared with its value then, as it can be changed through getColor
+	private boolean dirty = true;
+	private Color sent_color;
+
 	public LinkVisualizer() {
 		super();
 		color = new Color(70, 130, 180, 1.0f);
@@ -91,6 +96,7 @@ public class LinkVisualizer {
 	public void setLabel(String label) {
 		//		this.label = arrangeLabel(label);
 		this.label = label;
+		dirty = true;
 	}
 
 	/**
@@ -102,6 +108,7 @@ public class LinkVisualizer {
 
 		Validation.validateThickness(th);
 		thickness  = th;
+		dirty = true;
 	}
 
 	/**
@@ -223,4 +230,22 @@ public class LinkVisualizer {
 			CLOSE_CURLY;
 	}
 
+	/**
+	 *  @brief Tells whether the link properties changed since the last
+	 *	call to clearDirty
+	 *
+	 *	@return true if they changed, or if clearDirty was never called
+	 */
+	public boolean isDirty() {
+		return dirty || sent_color == null || !sent_color.equals(color);
+	}
+
+	/**
+	 *  @brief Marks the current link properties as visualized
+	 */
+	public void clearDirty() {
+		dirty = false;
+		sent_color = new Color(color.getRed(), color.getGreen(), color.getBlue(),
+				color.getAlpha());
+	}
 }
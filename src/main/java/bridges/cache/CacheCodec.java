@@ -0,0 +1,66 @@
+package bridges.cache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Encodes the documents stored by SimpleCache, typically to compress them.
+ *
+ * SimpleCache records the name of the codec in the header of each
+ * document, so that a cache can read documents written with any known
+ * codec (or with none) whatever codec it currently writes with.
+ */
+public interface CacheCodec {
+    /**
+     * Stores documents as is.
+     */
+    CacheCodec NONE = new CacheCodec() {
+        @Override
+        public String getName() {
+            return "none";
+        }
+
+        @Override
+        public OutputStream encode(OutputStream out) {
+            return out;
+        }
+
+        @Override
+        public InputStream decode(InputStream in) {
+            return in;
+        }
+    };
+
+    /**
+     * GZIP compression from the JDK: small documents, slower to read and write.
+     */
+    CacheCodec GZIP = new GzipCodec();
+
+    /**
+     * LZ4 style compression: faster than GZIP but compresses less.
+     */
+    CacheCodec LZ = new LZCodec();
+
+    /**
+     * @return the name recorded in the documents encoded by this codec, at
+     *  most 255 ASCII characters; codecs with the same name must read each
+     *  other's documents
+     */
+    String getName();
+
+    /**
+     * @param out stream receiving the encoded document
+     * @return a stream encoding what is written to it, closing it
+     *  finishes the document and closes out
+     * @throws IOException if the encoding can not be started
+     */
+    OutputStream encode(OutputStream out) throws IOException;
+
+    /**
+     * @param in stream of an encoded document
+     * @return a stream of the decoded document
+     * @throws IOException if the document is not encoded with this codec
+     */
+    InputStream decode(InputStream in) throws IOException;
+}
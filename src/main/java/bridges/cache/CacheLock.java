@@ -0,0 +1,57 @@
+package bridges.cache;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An exclusive lock on a cache directory, held across threads and
+ * processes. File locks are held on behalf of the whole JVM, so threads
+ * of one JVM are serialized on a ReentrantLock before taking the file lock.
+ */
+final class CacheLock implements Closeable {
+    private static final ConcurrentHashMap<Path, ReentrantLock> jvmLocks = new ConcurrentHashMap<>();
+
+    private final ReentrantLock jvmLock;
+    private final FileChannel channel;
+    private final FileLock fileLock;
+
+    private CacheLock(ReentrantLock jvmLock, FileChannel channel, FileLock fileLock) {
+        this.jvmLock = jvmLock;
+        this.channel = channel;
+        this.fileLock = fileLock;
+    }
+
+    static CacheLock acquire(Path lockFile) throws IOException {
+        Path key = lockFile.toAbsolutePath().normalize();
+        ReentrantLock jvmLock = jvmLocks.computeIfAbsent(key, k -> new ReentrantLock());
+        jvmLock.lock();
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(key, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            return new CacheLock(jvmLock, channel, channel.lock());
+        }
+        catch (IOException | RuntimeException e) {
+            if (channel != null)
+                channel.close();
+            jvmLock.unlock();
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            fileLock.release();
+            channel.close();
+        }
+        finally {
+            jvmLock.unlock();
+        }
+    }
+}
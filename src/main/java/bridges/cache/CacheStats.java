@@ -0,0 +1,261 @@
+package bridges.cache;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counters of the activity of a cache: hits, misses, evictions, bytes
+ * read and written, bytes stored, and histograms of how long reads (on a
+ * hit) and loads (filling the cache on a miss) take.
+ *
+ * The time histograms have one bucket per power of two microseconds:
+ * bucket i counts the durations in [2^(i-1), 2^i) microseconds, bucket 0
+ * the durations under a microsecond.
+ *
+ * Stats can be registered under a name, to be listed, summed with
+ * total(), and exposed through JMX once enableJMX() is called.
+ */
+public class CacheStats implements CacheStatsMXBean {
+    public static final int HISTOGRAM_BUCKETS = 40;
+
+    private static final Map<String, CacheStats> registered = new LinkedHashMap<>();
+    private static boolean jmx = false;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private final AtomicLong bytesStored = new AtomicLong();
+    private final AtomicLong readTime = new AtomicLong();
+    private final AtomicLong loadTime = new AtomicLong();
+    private final AtomicLongArray readHistogram = new AtomicLongArray(HISTOGRAM_BUCKETS);
+    private final AtomicLongArray loadHistogram = new AtomicLongArray(HISTOGRAM_BUCKETS);
+
+    public void recordHit() {
+        hits.incrementAndGet();
+    }
+
+    public void recordMiss() {
+        misses.incrementAndGet();
+    }
+
+    public void recordEviction() {
+        evictions.incrementAndGet();
+    }
+
+    public void recordBytesRead(long bytes) {
+        bytesRead.addAndGet(bytes);
+    }
+
+    public void recordBytesWritten(long bytes) {
+        bytesWritten.addAndGet(bytes);
+    }
+
+    public void setBytesStored(long bytes) {
+        bytesStored.set(bytes);
+    }
+
+    /**
+     * @param nanos time taken to read an entry from the cache
+     */
+    public void recordRead(long nanos) {
+        readTime.addAndGet(nanos);
+        readHistogram.incrementAndGet(bucket(nanos));
+    }
+
+    /**
+     * @param nanos time taken to load an entry missing from the cache
+     */
+    public void recordLoad(long nanos) {
+        loadTime.addAndGet(nanos);
+        loadHistogram.incrementAndGet(bucket(nanos));
+    }
+
+    private static int bucket(long nanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+        int bucket = 64 - Long.numberOfLeadingZeros(micros);
+        return Math.min(bucket, HISTOGRAM_BUCKETS - 1);
+    }
+
+    @Override
+    public long getHits() {
+        return hits.get();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @Override
+    public double getHitRate() {
+        long h = getHits(), m = getMisses();
+        return h + m == 0 ? 0 : (double) h / (h + m);
+    }
+
+    @Override
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytesRead.get();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten.get();
+    }
+
+    @Override
+    public long getBytesStored() {
+        return bytesStored.get();
+    }
+
+    @Override
+    public long getReadCount() {
+        return sum(readHistogram);
+    }
+
+    @Override
+    public long getTotalReadTimeNanos() {
+        return readTime.get();
+    }
+
+    @Override
+    public long[] getReadTimeHistogram() {
+        return toArray(readHistogram);
+    }
+
+    @Override
+    public long getLoadCount() {
+        return sum(loadHistogram);
+    }
+
+    @Override
+    public long getTotalLoadTimeNanos() {
+        return loadTime.get();
+    }
+
+    @Override
+    public long[] getLoadTimeHistogram() {
+        return toArray(loadHistogram);
+    }
+
+    private static long sum(AtomicLongArray histogram) {
+        long total = 0;
+        for (int i = 0; i < histogram.length(); ++i)
+            total += histogram.get(i);
+        return total;
+    }
+
+    private static long[] toArray(AtomicLongArray histogram) {
+        long[] out = new long[histogram.length()];
+        for (int i = 0; i < out.length; ++i)
+            out[i] = histogram.get(i);
+        return out;
+    }
+
+    /**
+     * @return a new CacheStats holding the sum of these and other
+     */
+    public CacheStats plus(CacheStats other) {
+        CacheStats sum = new CacheStats();
+        for (CacheStats stats : new CacheStats[] {this, other}) {
+            sum.hits.addAndGet(stats.getHits());
+            sum.misses.addAndGet(stats.getMisses());
+            sum.evictions.addAndGet(stats.getEvictions());
+            sum.bytesRead.addAndGet(stats.getBytesRead());
+            sum.bytesWritten.addAndGet(stats.getBytesWritten());
+            sum.bytesStored.addAndGet(stats.getBytesStored());
+            sum.readTime.addAndGet(stats.getTotalReadTimeNanos());
+            sum.loadTime.addAndGet(stats.getTotalLoadTimeNanos());
+            for (int i = 0; i < HISTOGRAM_BUCKETS; ++i) {
+                sum.readHistogram.addAndGet(i, stats.readHistogram.get(i));
+                sum.loadHistogram.addAndGet(i, stats.loadHistogram.get(i));
+            }
+        }
+        return sum;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("hits=%d misses=%d hitRate=%.3f evictions=%d bytesRead=%d"
+                + " bytesWritten=%d bytesStored=%d reads=%d (%.3f ms avg) loads=%d (%.3f ms avg)",
+                getHits(), getMisses(), getHitRate(), getEvictions(), getBytesRead(),
+                getBytesWritten(), getBytesStored(),
+                getReadCount(), average(getTotalReadTimeNanos(), getReadCount()),
+                getLoadCount(), average(getTotalLoadTimeNanos(), getLoadCount()));
+    }
+
+    private static double average(long nanos, long count) {
+        return count == 0 ? 0 : nanos / 1e6 / count;
+    }
+
+    /**
+     * Registers stats under a name, replacing the stats registered under
+     * that name if any.
+     *
+     * @param name name of the cache
+     * @param stats stats of the cache
+     */
+    public static synchronized void register(String name, CacheStats stats) {
+        registered.put(name, stats);
+        if (jmx)
+            registerMBean(name, stats);
+    }
+
+    /**
+     * @return the registered stats, by name
+     */
+    public static synchronized Map<String, CacheStats> getRegistered() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(registered));
+    }
+
+    /**
+     * @return the sum of all registered stats
+     */
+    public static synchronized CacheStats total() {
+        CacheStats total = new CacheStats();
+        for (CacheStats stats : registered.values())
+            total = total.plus(stats);
+        return total;
+    }
+
+    /**
+     * Exposes the registered stats, and the ones registered later, as
+     * MBeans named "bridges.cache:type=CacheStats,name=<name>".
+     */
+    public static synchronized void enableJMX() {
+        if (jmx)
+            return;
+        jmx = true;
+        for (Map.Entry<String, CacheStats> entry : registered.entrySet())
+            registerMBean(entry.getKey(), entry.getValue());
+    }
+
+    private static void registerMBean(String name, CacheStats stats) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName("bridges.cache:type=CacheStats,name="
+                + ObjectName.quote(name));
+            if (server.isRegistered(objectName))
+                server.unregisterMBean(objectName);
+            server.registerMBean(stats, objectName);
+        }
+        catch (JMException e) {
+            System.err.println("Could not register cache stats " + name + ": " + e.getMessage());
+        }
+    }
+}
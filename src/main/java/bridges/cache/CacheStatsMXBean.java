@@ -0,0 +1,32 @@
+package bridges.cache;
+
+/**
+ * Management interface of CacheStats, see CacheStats.enableJMX().
+ */
+public interface CacheStatsMXBean {
+    long getHits();
+
+    long getMisses();
+
+    double getHitRate();
+
+    long getEvictions();
+
+    long getBytesRead();
+
+    long getBytesWritten();
+
+    long getBytesStored();
+
+    long getReadCount();
+
+    long getTotalReadTimeNanos();
+
+    long[] getReadTimeHistogram();
+
+    long getLoadCount();
+
+    long getTotalLoadTimeNanos();
+
+    long[] getLoadTimeHistogram();
+}
@@ -1,99 +1,560 @@
 package bridges.cache;
 
-import java.awt.*;
-import java.io.File;
+import java.io.FilterInputStream;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.util.*;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
+/**
+ * A cache on disk that evicts the least recently used documents once it
+ * holds more than maxCacheSize documents or more than maxBytes bytes
+ * (as measured by a Weigher). A limit that is not positive is not enforced.
+ *
+ * The recency order is kept in memory so that touching or evicting an
+ * entry is O(1). It is persisted in the "lru" document (comma separated,
+ * most recent first) and accesses since the last snapshot are appended to
+ * the "lru.journal" document. Accesses made by getDoc are buffered and
+ * written behind; putDoc, removeDoc and flush write them out.
+ *
+ * The cache can be used from several threads. When it is process safe,
+ * several processes can share the cache directory: changes to the index
+ * are made under a lock on the "lru.lock" file, after replaying the
+ * journal records written by the other processes. Documents themselves
+ * are read without any lock.
+ *
+ * getStats() counts as a miss each inCache call that does not find the
+ * document and each read of a document that was evicted in the meantime,
+ * and as a hit each successful read; peekDoc reads are not counted. The
+ * read time of a stream is recorded when it is closed.
+ */
 public class LRUCache extends Cache {
+    private static final String INDEX_DOC = "lru";
+    private static final String JOURNAL_DOC = "lru.journal";
+    private static final String LOCK_DOC = "lru.lock";
+    // buffered accesses before the journal is written
+    private static final int JOURNAL_FLUSH_RECORDS = 16;
+    // journal records before the index is rewritten and the journal dropped
+    private static final int JOURNAL_COMPACT_RECORDS = 512;
+
     int maxCacheSize;
-    ArrayList<String> lru = new ArrayList<String>();
+    long maxBytes;
+    Weigher weigher;
     SimpleCache cache;
+    boolean processSafe = false;
+
+    // access ordered, the least recently used entry comes first; maps
+    // each document to its weight
+    private final LinkedHashMap<String, Long> lru = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes = 0;
+    private final StringBuilder pending = new StringBuilder();
+    private int pendingRecords = 0;
+    private int journalRecords = 0;
+    // what was read of the index and journal, to notice changes made by
+    // other processes
+    private Object indexVersion = null;
+    private long journalOffset = 0;
+
+    public LRUCache(String cacheDir, int maxCacheSize, long maxBytes, Weigher weigher) {
+        this(new SimpleCache(cacheDir), maxCacheSize, maxBytes, weigher);
+    }
 
     public LRUCache(String cacheDir, int maxCacheSize) {
-        this.maxCacheSize = maxCacheSize;
-        this.cache = new SimpleCache(cacheDir);
+        this(cacheDir, maxCacheSize, 0, Weigher.STORED_BYTES);
     }
 
     public LRUCache(String cacheDir) {
         this(cacheDir, 30);
     }
 
+    public LRUCache(int maxCacheSize, long maxBytes, Weigher weigher) {
+        this(new SimpleCache(), maxCacheSize, maxBytes, weigher);
+    }
+
+    public LRUCache(int maxCacheSize, long maxBytes) {
+        this(maxCacheSize, maxBytes, Weigher.STORED_BYTES);
+    }
+
     public LRUCache(int maxCacheSize) {
-        this.maxCacheSize = maxCacheSize;
-        cache = new SimpleCache();
+        this(maxCacheSize, 0);
     }
 
     public LRUCache() {
         this(30);
     }
 
+    private LRUCache(SimpleCache cache, int maxCacheSize, long maxBytes, Weigher weigher) {
+        this.cache = cache;
+        this.maxCacheSize = maxCacheSize;
+        this.maxBytes = maxBytes;
+        this.weigher = weigher;
+        try {
+            loadLRU();
+        }
+        catch (IOException e) {
+            System.err.println("Error reading the cache index: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Makes the cache safe to share with other processes (off by default).
+     *
+     * @param processSafe whether changes to the index are made under a
+     *  file lock
+     * @throws IOException if the index can not be read
+     */
+    public synchronized void setProcessSafe(boolean processSafe) throws IOException {
+        this.processSafe = processSafe;
+        CacheLock lock = lockIndex();
+        try {
+            loadLRU();
+        }
+        finally {
+            unlock(lock);
+        }
+    }
+
     @Override
     public boolean inCache(String docName) {
-        return cache.inCache(docName);
+        boolean found = cache.inCache(docName);
+        if (!found)
+            getStats().recordMiss();
+        return found;
     }
 
+    /**
+     * @return the document, or null if it was evicted by another thread or
+     *  process since inCache was checked
+     */
     @Override
     public String getDoc(String docName) throws IOException {
-        String content = null;
-        getLRU();
-        content = cache.getDoc(docName);
-        updateLRU(docName);
-        saveLRU();
+        return read(docName, cache::getDoc, true);
+    }
+
+    /**
+     * Opens a document for reading, decoding it as it is read.
+     *
+     * @return the document, or null if it was evicted by another thread or
+     *  process since inCache was checked
+     */
+    public InputStream getDocStream(String docName) throws IOException {
+        return read(docName, name -> {
+            long start = System.nanoTime();
+            return new TimedInputStream(cache.getDocStream(name), start);
+        }, true);
+    }
 
+    /**
+     * Reads a document without counting it in getStats(), for the
+     * bookkeeping documents stored next to the data.
+     *
+     * @return the document, or null if it is not in the cache
+     */
+    public String peekDoc(String docName) throws IOException {
+        if (!cache.inCache(docName))
+            return null;
+        return read(docName, cache::getDoc, false);
+    }
+
+    private interface DocReader<T> {
+        T read(String docName) throws IOException;
+    }
+
+    // reads a document and marks it as recently used; a read that is
+    // counted is a hit, or a miss if the document is gone. Streams record
+    // their read time once closed
+    private <T> T read(String docName, DocReader<T> reader, boolean counted)
+        throws IOException {
+        T content;
+        long start = System.nanoTime();
+        try {
+            content = reader.read(docName);
+        }
+        catch (NoSuchFileException e) {
+            if (counted)
+                getStats().recordMiss();
+            synchronized (this) {
+                forget(docName);
+            }
+            return null;
+        }
+        if (counted) {
+            getStats().recordHit();
+            if (content instanceof TimedInputStream)
+                ((TimedInputStream) content).stats = getStats();
+            else
+                getStats().recordRead(System.nanoTime() - start);
+        }
+
+        synchronized (this) {
+            touch(docName);
+            if (pendingRecords >= JOURNAL_FLUSH_RECORDS)
+                flushJournal();
+        }
         return content;
     }
 
+    // records the time spent opening and reading a document when it is
+    // closed, leaving out the time the reader spends between reads
+    private static class TimedInputStream extends FilterInputStream {
+        CacheStats stats;
+        private long nanos;
+
+        TimedInputStream(InputStream in, long start) {
+            super(in);
+            nanos = System.nanoTime() - start;
+        }
+
+        @Override
+        public int read() throws IOException {
+            long start = System.nanoTime();
+            try {
+                return super.read();
+            }
+            finally {
+                nanos += System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            long start = System.nanoTime();
+            try {
+                return super.read(b, off, len);
+            }
+            finally {
+                nanos += System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long start = System.nanoTime();
+            try {
+                return super.skip(n);
+            }
+            finally {
+                nanos += System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            super.close();
+            if (stats != null) {
+                stats.recordRead(nanos);
+                stats = null;
+            }
+        }
+    }
+
     @Override
     public void putDoc(String docName, String content) throws IOException {
-        getLRU();
         cache.putDoc(docName, content);
-        updateLRU(docName);
+        added(docName);
+    }
 
-        if (lru.size() > maxCacheSize) {
-            cache.removeDoc(lru.get(lru.size() - 1));
-            lru.remove(lru.size() - 1);
+    // accounts for a document just written, evicting others if needed
+    private synchronized void added(String docName) throws IOException {
+        CacheLock lock = lockIndex();
+        try {
+            setWeight(docName, weigh(docName));
+            record('+', docName);
+
+            evict(docName);
+            writeJournal();
+        }
+        finally {
+            unlock(lock);
         }
-        saveLRU();
+    }
+
+    /**
+     * Maps a document stored by putBytes in memory.
+     *
+     * @return a read only view of the document, or null if it was evicted
+     *  by another thread or process since inCache was checked
+     */
+    public ByteBuffer mapDoc(String docName) throws IOException {
+        return read(docName, cache::mapDoc, true);
+    }
+
+    /**
+     * Stores binary content as is, to be read back with mapDoc.
+     *
+     * @param docName name of the document
+     * @param content content of the document, from its position to its limit
+     * @throws IOException if the document can not be written
+     */
+    public void putBytes(String docName, ByteBuffer content) throws IOException {
+        cache.putBytes(docName, content);
+        added(docName);
     }
 
     @Override
     void removeDoc(String docName) throws IOException {
-        getLRU();
-        cache.removeDoc(docName);
-        lru.remove(docName);
-        saveLRU();
+        synchronized (this) {
+            CacheLock lock = lockIndex();
+            try {
+                if (cache.inCache(docName))
+                    cache.removeDoc(docName);
+                forget(docName);
+                record('-', docName);
+                writeJournal();
+            }
+            finally {
+                unlock(lock);
+            }
+        }
     }
 
-    private void getLRU() throws IOException {
-        lru.clear();
-        if (cache.inCache("lru")) {
-            String lruString = cache.getDoc("lru");
-            // push all entries to lru
-            lru.addAll(Arrays.asList(lruString.split(",")));
+    /**
+     * Writes out the accesses that have not been persisted yet.
+     *
+     * @throws IOException if the journal can not be written
+     */
+    public synchronized void flush() throws IOException {
+        flushJournal();
+    }
+
+    /**
+     * @param codec codec used to write documents from now on, documents
+     *  already in the cache are still readable
+     */
+    public void setCodec(CacheCodec codec) {
+        cache.setCodec(codec);
+    }
+
+    /**
+     * @return the statistics of the cache; the bytes stored are the total
+     *  weight of the documents
+     */
+    public CacheStats getStats() {
+        return cache.getStats();
+    }
+
+    /**
+     * @return the number of documents in the cache
+     */
+    public synchronized int size() {
+        return lru.size();
+    }
+
+    /**
+     * @return the total weight of the documents in the cache, in bytes
+     *  with the default Weigher
+     */
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * @return the maximum number of documents, not enforced if not positive
+     */
+    public int getMaxCacheSize() {
+        return maxCacheSize;
+    }
+
+    /**
+     * @return the maximum total weight, not enforced if not positive
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    // takes the lock on the index and catches up with the changes made by
+    // other processes; null when the cache is not process safe
+    private CacheLock lockIndex() throws IOException {
+        if (!processSafe)
+            return null;
+        CacheLock lock = CacheLock.acquire(cache.pathOf(LOCK_DOC));
+        try {
+            syncLRU();
         }
+        catch (IOException | RuntimeException e) {
+            lock.close();
+            throw e;
+        }
+        return lock;
     }
 
-    private void updateLRU(String docName) {
-        //remove doc from lru and push to front
-        lru.remove(docName);
-        lru.add(0, docName);
+    private static void unlock(CacheLock lock) throws IOException {
+        if (lock != null)
+            lock.close();
     }
 
-    private void saveLRU() throws IOException {
-        StringBuilder out = null;
-        boolean first = true;
-        for (String entry : lru) {
-            if (first) {
-                out = new StringBuilder(entry);
-                first = false;
-            } else {
-                out.append(",").append(entry);
+    private boolean overBudget() {
+        return (maxCacheSize > 0 && lru.size() > maxCacheSize)
+            || (maxBytes > 0 && totalBytes > maxBytes);
+    }
+
+    // evicts least recently used documents, except keep, until the cache
+    // is within its limits
+    private void evict(String keep) throws IOException {
+        Iterator<Map.Entry<String, Long>> eldest = lru.entrySet().iterator();
+        while (overBudget() && eldest.hasNext()) {
+            Map.Entry<String, Long> victim = eldest.next();
+            if (victim.getKey().equals(keep))
+                continue;
+            if (cache.inCache(victim.getKey()))
+                cache.removeDoc(victim.getKey());
+            totalBytes -= victim.getValue();
+            eldest.remove();
+            record('-', victim.getKey());
+            getStats().recordEviction();
+        }
+        getStats().setBytesStored(totalBytes);
+    }
+
+    private long weigh(String docName) throws IOException {
+        return weigher.weigh(docName, cache.sizeOf(docName));
+    }
+
+    private void touch(String docName) throws IOException {
+        if (lru.get(docName) == null) {
+            try {
+                setWeight(docName, weigh(docName));
+            }
+            catch (NoSuchFileException e) {
+                return;
+            }
+        }
+        record('+', docName);
+    }
+
+    private void setWeight(String docName, long weight) {
+        Long old = lru.put(docName, weight);
+        totalBytes += weight - (old == null ? 0 : old);
+        getStats().setBytesStored(totalBytes);
+    }
+
+    private void forget(String docName) {
+        Long old = lru.remove(docName);
+        if (old != null)
+            totalBytes -= old;
+        getStats().setBytesStored(totalBytes);
+    }
+
+    private void record(char op, String docName) {
+        pending.append(op).append(docName).append('\n');
+        pendingRecords++;
+    }
+
+    private void flushJournal() throws IOException {
+        if (pendingRecords == 0)
+            return;
+        CacheLock lock = lockIndex();
+        try {
+            writeJournal();
+        }
+        finally {
+            unlock(lock);
+        }
+    }
+
+    // must hold the index lock when process safe
+    private void writeJournal() throws IOException {
+        if (pendingRecords == 0)
+            return;
+        String records = pending.toString();
+        cache.appendDoc(JOURNAL_DOC, records);
+        journalOffset += records.getBytes(StandardCharsets.UTF_8).length;
+        journalRecords += pendingRecords;
+        pending.setLength(0);
+        pendingRecords = 0;
+
+        if (journalRecords >= JOURNAL_COMPACT_RECORDS)
+            saveLRU();
+    }
+
+    // applies journal records to the in-memory index
+    private void replay(String records) {
+        for (String line : records.split("\n")) {
+            if (line.length() < 2)
+                continue;
+            String docName = line.substring(1);
+            if (line.charAt(0) == '-')
+                forget(docName);
+            else if (lru.get(docName) == null && cache.inCache(docName)) {
+                try {
+                    setWeight(docName, weigh(docName));
+                }
+                catch (IOException e) {
+                    // removed in the meantime
+                }
             }
+            journalRecords++;
+        }
+    }
+
+    // must hold the index lock when process safe
+    private void syncLRU() throws IOException {
+        boolean replaced = !Objects.equals(indexVersion, cache.versionOf(INDEX_DOC));
+        boolean truncated = cache.inCache(JOURNAL_DOC)
+            ? cache.sizeOf(JOURNAL_DOC) < journalOffset
+            : journalOffset > 0;
+        if (replaced || truncated) {
+            loadLRU();
+            // accesses of this process that are not written yet still count
+            int records = journalRecords;
+            replay(pending.toString());
+            journalRecords = records;
+        }
+        else if (cache.inCache(JOURNAL_DOC)) {
+            String records = cache.getDocFrom(JOURNAL_DOC, journalOffset);
+            journalOffset += records.getBytes(StandardCharsets.UTF_8).length;
+            replay(records);
+        }
+    }
+
+    private void loadLRU() throws IOException {
+        lru.clear();
+        totalBytes = 0;
+        getStats().setBytesStored(0);
+        journalRecords = 0;
+        journalOffset = 0;
+        indexVersion = cache.versionOf(INDEX_DOC);
+
+        if (cache.inCache(INDEX_DOC)) {
+            String[] entries = cache.getDoc(INDEX_DOC).split(",");
+            // the index is stored most recent first
+            StringBuilder records = new StringBuilder();
+            for (int i = entries.length - 1; i >= 0; --i)
+                records.append('+').append(entries[i]).append('\n');
+            replay(records.toString());
+            journalRecords = 0;
+        }
+        if (cache.inCache(JOURNAL_DOC)) {
+            String records = cache.getDocFrom(JOURNAL_DOC, 0);
+            journalOffset = records.getBytes(StandardCharsets.UTF_8).length;
+            replay(records);
+        }
+        if (journalRecords >= JOURNAL_COMPACT_RECORDS)
+            saveLRU();
+    }
+
+    // must hold the index lock when process safe
+    private void saveLRU() throws IOException {
+        List<String> entries = new ArrayList<>(lru.keySet());
+        StringBuilder out = new StringBuilder();
+        for (int i = entries.size() - 1; i >= 0; --i) {
+            if (out.length() > 0)
+                out.append(",");
+            out.append(entries.get(i));
         }
-        if (out != null)
-            cache.putDoc("lru", out.toString());
+        // the index is kept readable by older versions of BRIDGES
+        cache.putPlainDoc(INDEX_DOC, out.toString());
+        if (cache.inCache(JOURNAL_DOC))
+            cache.removeDoc(JOURNAL_DOC);
+        indexVersion = cache.versionOf(INDEX_DOC);
+        journalRecords = 0;
+        journalOffset = 0;
     }
 }
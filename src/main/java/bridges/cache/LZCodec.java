@@ -0,0 +1,332 @@
+package bridges.cache;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A byte oriented LZ77 codec in the spirit of LZ4, in pure Java.
+ *
+ * The stream is 4 magic bytes followed by blocks of at most BLOCK_SIZE
+ * bytes of the document. Each block is a type byte, the decoded length
+ * and the stored length (both ints), then the stored bytes. Blocks that do
+ * not compress are stored as is; a block of type END ends the stream.
+ *
+ * Compressed blocks are sequences made of a token (literal count in the
+ * high 4 bits, match length - 4 in the low 4 bits, 15 meaning more length
+ * bytes follow), the literals, then the 2 byte little endian offset of the
+ * match. The last sequence only has literals.
+ */
+class LZCodec implements CacheCodec {
+    private static final byte[] MAGIC = {'B', 'L', 'Z', '1'};
+    private static final int BLOCK_SIZE = 64 * 1024;
+    private static final int END = 0, STORED = 1, COMPRESSED = 2;
+
+    private static final int MIN_MATCH = 4;
+    private static final int MAX_OFFSET = 65535;
+    // the last bytes of a block are always literals
+    private static final int LAST_LITERALS = 5;
+    private static final int MATCH_LIMIT = 12;
+    private static final int HASH_LOG = 14;
+
+    @Override
+    public String getName() {
+        return "lz";
+    }
+
+    @Override
+    public OutputStream encode(OutputStream out) throws IOException {
+        out.write(MAGIC);
+        return new LZOutputStream(out);
+    }
+
+    @Override
+    public InputStream decode(InputStream in) throws IOException {
+        byte[] magic = new byte[MAGIC.length];
+        new DataInputStream(in).readFully(magic);
+        for (int i = 0; i < MAGIC.length; ++i) {
+            if (magic[i] != MAGIC[i])
+                throw new IOException("Not an LZ encoded document");
+        }
+        return new LZInputStream(in);
+    }
+
+    static int maxCompressedLength(int length) {
+        return length + length / 255 + 16;
+    }
+
+    private static int readInt(byte[] buf, int pos) {
+        return (buf[pos] & 0xff) | (buf[pos + 1] & 0xff) << 8
+            | (buf[pos + 2] & 0xff) << 16 | (buf[pos + 3] & 0xff) << 24;
+    }
+
+    private static int hash(int seq) {
+        return (seq * -1640531535) >>> (32 - HASH_LOG);
+    }
+
+    private static int writeLength(byte[] dst, int op, int length) {
+        while (length >= 255) {
+            dst[op++] = (byte) 255;
+            length -= 255;
+        }
+        dst[op++] = (byte) length;
+        return op;
+    }
+
+    private static int writeSequence(byte[] dst, int op, byte[] src, int literalStart,
+        int literals, int offset, int matchLength) {
+        int token = op++;
+        int literalBits = Math.min(literals, 15);
+        if (literals >= 15)
+            op = writeLength(dst, op, literals - 15);
+        System.arraycopy(src, literalStart, dst, op, literals);
+        op += literals;
+        if (matchLength == 0) {
+            dst[token] = (byte) (literalBits << 4);
+            return op;
+        }
+        dst[op++] = (byte) offset;
+        dst[op++] = (byte) (offset >>> 8);
+        int matchBits = Math.min(matchLength - MIN_MATCH, 15);
+        if (matchLength - MIN_MATCH >= 15)
+            op = writeLength(dst, op, matchLength - MIN_MATCH - 15);
+        dst[token] = (byte) (literalBits << 4 | matchBits);
+        return op;
+    }
+
+    /**
+     * Compresses src[0..length) into dst, which must hold at least
+     * maxCompressedLength(length) bytes.
+     *
+     * @return the number of bytes written in dst
+     */
+    static int compress(byte[] src, int length, byte[] dst, int[] table) {
+        java.util.Arrays.fill(table, -1);
+        int anchor = 0, ip = 0, op = 0;
+        while (ip < length - MATCH_LIMIT) {
+            int seq = readInt(src, ip);
+            int h = hash(seq);
+            int ref = table[h];
+            table[h] = ip;
+            if (ref < 0 || ip - ref > MAX_OFFSET || readInt(src, ref) != seq) {
+                ip++;
+                continue;
+            }
+            int matchLength = MIN_MATCH;
+            while (ip + matchLength < length - LAST_LITERALS
+                && src[ref + matchLength] == src[ip + matchLength])
+                matchLength++;
+            op = writeSequence(dst, op, src, anchor, ip - anchor, ip - ref, matchLength);
+            ip += matchLength;
+            anchor = ip;
+        }
+        return writeSequence(dst, op, src, anchor, length - anchor, 0, 0);
+    }
+
+    /**
+     * Decompresses src[0..length) into dst, which must hold exactly the
+     * decoded length.
+     *
+     * @throws IOException if src is not a valid compressed block for dst
+     */
+    static void decompress(byte[] src, int length, byte[] dst) throws IOException {
+        int ip = 0, op = 0;
+        try {
+            while (true) {
+                int token = src[ip++] & 0xff;
+                int literals = token >>> 4;
+                if (literals == 15) {
+                    int b;
+                    do {
+                        b = src[ip++] & 0xff;
+                        literals += b;
+                    } while (b == 255);
+                }
+                System.arraycopy(src, ip, dst, op, literals);
+                ip += literals;
+                op += literals;
+                if (ip == length)
+                    break;
+
+                int offset = (src[ip] & 0xff) | (src[ip + 1] & 0xff) << 8;
+                ip += 2;
+                int matchLength = (token & 0x0f) + MIN_MATCH;
+                if ((token & 0x0f) == 15) {
+                    int b;
+                    do {
+                        b = src[ip++] & 0xff;
+                        matchLength += b;
+                    } while (b == 255);
+                }
+                int ref = op - offset;
+                if (offset == 0 || ref < 0 || op + matchLength > dst.length)
+                    throw new IOException("Corrupted LZ block");
+                // byte by byte: the match may overlap what it produces
+                for (int i = 0; i < matchLength; ++i)
+                    dst[op++] = dst[ref++];
+            }
+        }
+        catch (IndexOutOfBoundsException e) {
+            throw new IOException("Corrupted LZ block");
+        }
+        if (op != dst.length)
+            throw new IOException("Corrupted LZ block");
+    }
+
+    private static class LZOutputStream extends FilterOutputStream {
+        private final DataOutputStream data;
+        private final byte[] block = new byte[BLOCK_SIZE];
+        private final byte[] compressed = new byte[maxCompressedLength(BLOCK_SIZE)];
+        private final int[] table = new int[1 << HASH_LOG];
+        private int count = 0;
+        private boolean closed = false;
+
+        LZOutputStream(OutputStream out) {
+            super(out);
+            data = new DataOutputStream(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (count == block.length)
+                writeBlock();
+            block[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (count == block.length)
+                    writeBlock();
+                int n = Math.min(len, block.length - count);
+                System.arraycopy(b, off, block, count, n);
+                count += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        private void writeBlock() throws IOException {
+            if (count == 0)
+                return;
+            int length = compress(block, count, compressed, table);
+            if (length < count) {
+                data.writeByte(COMPRESSED);
+                data.writeInt(count);
+                data.writeInt(length);
+                data.write(compressed, 0, length);
+            }
+            else {
+                data.writeByte(STORED);
+                data.writeInt(count);
+                data.writeInt(count);
+                data.write(block, 0, count);
+            }
+            count = 0;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            writeBlock();
+            data.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed)
+                return;
+            closed = true;
+            try {
+                writeBlock();
+                data.writeByte(END);
+                data.flush();
+            }
+            finally {
+                out.close();
+            }
+        }
+    }
+
+    private static class LZInputStream extends InputStream {
+        private final DataInputStream in;
+        private byte[] block = new byte[0];
+        private byte[] compressed = new byte[0];
+        private int pos = 0;
+        private boolean ended = false;
+
+        LZInputStream(InputStream in) {
+            this.in = new DataInputStream(in);
+        }
+
+        // false at the end of the stream
+        private boolean fill() throws IOException {
+            while (pos == block.length) {
+                if (ended)
+                    return false;
+                int type = in.readByte();
+                if (type == END) {
+                    ended = true;
+                    return false;
+                }
+                int length = in.readInt();
+                int stored = in.readInt();
+                if (length < 0 || length > BLOCK_SIZE || stored < 0
+                    || stored > maxCompressedLength(length) || (type != STORED && type != COMPRESSED))
+                    throw new IOException("Corrupted LZ stream");
+                if (block.length != length)
+                    block = new byte[length];
+                if (type == STORED) {
+                    if (stored != length)
+                        throw new IOException("Corrupted LZ stream");
+                    in.readFully(block);
+                }
+                else {
+                    if (compressed.length < stored)
+                        compressed = new byte[maxCompressedLength(BLOCK_SIZE)];
+                    in.readFully(compressed, 0, stored);
+                    decompress(compressed, stored, block);
+                }
+                pos = 0;
+            }
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            try {
+                if (!fill())
+                    return -1;
+            }
+            catch (EOFException e) {
+                throw new IOException("Truncated LZ stream");
+            }
+            return block[pos++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0)
+                return 0;
+            try {
+                if (!fill())
+                    return -1;
+            }
+            catch (EOFException e) {
+                throw new IOException("Truncated LZ stream");
+            }
+            int n = Math.min(len, block.length - pos);
+            System.arraycopy(block, pos, b, off, n);
+            pos += n;
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
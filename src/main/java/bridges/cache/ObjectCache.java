@@ -0,0 +1,170 @@
+package bridges.cache;
+
+import java.lang.ref.SoftReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.function.ToLongFunction;
+
+/**
+ * A cache in memory of objects built from datasets, so that asking for
+ * the same dataset again does not read and parse it again.
+ *
+ * It holds at most maxEntries objects, whose weights (roughly the bytes
+ * they take, as computed by the weigher given to the constructor) add up
+ * to at most maxWeight, evicting the least recently used ones first. An
+ * object heavier than maxWeight is not kept. Objects are softly
+ * referenced, so the garbage collector reclaims them when memory runs
+ * low. The cache can be used from several threads.
+ *
+ * The cached objects are shared by everyone asking for them.
+ */
+public class ObjectCache<V> {
+    private static class Entry<V> {
+        final SoftReference<V> ref;
+        final long weight;
+
+        Entry(V value, long weight) {
+            this.ref = new SoftReference<>(value);
+            this.weight = weight;
+        }
+    }
+
+    private final LinkedHashMap<String, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final ToLongFunction<? super V> weigher;
+    private int maxEntries;
+    private long maxWeight;
+    private long weight = 0;
+    private final CacheStats stats = new CacheStats();
+
+    /**
+     * A cache bounded by its number of objects only.
+     *
+     * @param maxEntries maximum number of cached objects
+     */
+    public ObjectCache(int maxEntries) {
+        this(maxEntries, Long.MAX_VALUE, value -> 0);
+    }
+
+    /**
+     * @param maxEntries maximum number of cached objects
+     * @param maxWeight maximum total weight of the cached objects
+     * @param weigher computes the weight of an object, must not be
+     *  negative nor change while the object is cached
+     */
+    public ObjectCache(int maxEntries, long maxWeight, ToLongFunction<? super V> weigher) {
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+    }
+
+    /**
+     * @param key key of the object
+     * @return the object, or null if it is not cached or was reclaimed
+     */
+    public synchronized V get(String key) {
+        Entry<V> entry = entries.get(key);
+        V value = entry == null ? null : entry.ref.get();
+        if (value == null) {
+            if (entry != null)
+                remove(key);
+            stats.recordMiss();
+            return null;
+        }
+        stats.recordHit();
+        return value;
+    }
+
+    /**
+     * @param key key of the object
+     * @param value object to cache
+     */
+    public synchronized void put(String key, V value) {
+        remove(key);
+        Entry<V> entry = new Entry<>(value, weigher.applyAsLong(value));
+        entries.put(key, entry);
+        weight += entry.weight;
+        trim();
+    }
+
+    public synchronized void remove(String key) {
+        Entry<V> entry = entries.remove(key);
+        if (entry != null)
+            weight -= entry.weight;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        weight = 0;
+    }
+
+    /**
+     * @param maxEntries maximum number of cached objects
+     */
+    public synchronized void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+        trim();
+    }
+
+    public synchronized int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * @param maxWeight maximum total weight of the cached objects
+     */
+    public synchronized void setMaxWeight(long maxWeight) {
+        this.maxWeight = maxWeight;
+        trim();
+    }
+
+    public synchronized long getMaxWeight() {
+        return maxWeight;
+    }
+
+    /**
+     * @return the total weight of the cached objects, including the ones
+     *  that were reclaimed but not noticed yet
+     */
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    /**
+     * @return the number of cached objects, including the ones that were
+     *  reclaimed but not noticed yet
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return the number of times get found the object
+     */
+    public long getHits() {
+        return stats.getHits();
+    }
+
+    /**
+     * @return the number of times get did not find the object
+     */
+    public long getMisses() {
+        return stats.getMisses();
+    }
+
+    /**
+     * @return the statistics of the cache; evictions only count the
+     *  objects evicted to stay within maxEntries and maxWeight
+     */
+    public CacheStats getStats() {
+        return stats;
+    }
+
+    private void trim() {
+        Iterator<Entry<V>> eldest = entries.values().iterator();
+        while ((entries.size() > maxEntries || weight > maxWeight) && eldest.hasNext()) {
+            weight -= eldest.next().weight;
+            eldest.remove();
+            stats.recordEviction();
+        }
+    }
+}
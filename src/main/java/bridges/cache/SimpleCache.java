@@ -1,12 +1,64 @@
 package bridges.cache;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
 
+/**
+ * Stores each document in its own file of a cache directory.
+ *
+ * Documents are written to a temporary file that is then renamed over the
+ * document, so readers in other threads or processes never see a
+ * partially written document.
+ *
+ * Documents are encoded with the cache's CacheCodec (none by default).
+ * Each document starts with a header naming its codec, so documents
+ * written with the current codec or any of the built-in ones are decoded
+ * when read. Documents without the header, written by older versions of
+ * BRIDGES, are read as is.
+ *
+ * The bytes read from and written to the cache directory are counted in
+ * the cache's CacheStats.
+ */
 public class SimpleCache extends Cache {
+    private static final CacheCodec[] KNOWN_CODECS = {CacheCodec.NONE, CacheCodec.GZIP, CacheCodec.LZ};
+    // starts the header, followed by the length of the codec name and the
+    // name; text documents of older versions never start with a NUL
+    private static final byte[] HEADER = {0, 'B', 'R', 'C'};
+    private static final int BUFFER_SIZE = 64 * 1024;
+
     private String cacheDir;
+    private CacheCodec codec = CacheCodec.NONE;
+    private final CacheStats stats = new CacheStats();
+
+    /**
+     * @param codec codec used to write documents from now on
+     */
+    public void setCodec(CacheCodec codec) {
+        this.codec = codec;
+    }
+
+    public CacheCodec getCodec() {
+        return codec;
+    }
+
+    public CacheStats getStats() {
+        return stats;
+    }
 
     @Override
     public boolean inCache(String docName) {
@@ -16,12 +68,199 @@ public class SimpleCache extends Cache {
 
     @Override
     public String getDoc(String docName) throws IOException {
-        return new String(Files.readAllBytes(Paths.get(getFileName(docName))));
+        try (InputStream in = getDocStream(docName)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buf = new byte[BUFFER_SIZE];
+            int n;
+            while ((n = in.read(buf)) >= 0)
+                out.write(buf, 0, n);
+            return out.toString();
+        }
+    }
+
+    /**
+     * Opens a document for reading, decoding it as it is read.
+     *
+     * @param docName name of the document
+     * @return the decoded content of the document
+     * @throws IOException if the document can not be opened
+     */
+    public InputStream getDocStream(String docName) throws IOException {
+        InputStream in = new BufferedInputStream(new CountingInputStream(
+            Files.newInputStream(Paths.get(getFileName(docName)))), BUFFER_SIZE);
+        try {
+            CacheCodec used = codecOf(docName, in);
+            return used == CacheCodec.NONE ? in : used.decode(in);
+        }
+        catch (IOException | RuntimeException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    // reads the header of a document and returns its codec, in must
+    // support mark; documents without header are left unread
+    private CacheCodec codecOf(String docName, InputStream in) throws IOException {
+        in.mark(HEADER.length);
+        for (int i = 0; i < HEADER.length; ++i) {
+            if (in.read() != HEADER[i]) {
+                in.reset();
+                return CacheCodec.NONE;
+            }
+        }
+        int length = in.read();
+        byte[] name = new byte[Math.max(length, 0)];
+        int n = 0, r;
+        while (n < name.length && (r = in.read(name, n, name.length - n)) > 0)
+            n += r;
+        if (length < 0 || n < name.length)
+            throw new IOException("Truncated header of cached document " + docName);
+
+        String codecName = new String(name, StandardCharsets.US_ASCII);
+        if (codec.getName().equals(codecName))
+            return codec;
+        for (CacheCodec known : KNOWN_CODECS) {
+            if (known.getName().equals(codecName))
+                return known;
+        }
+        throw new IOException("Unknown codec " + codecName + " of cached document " + docName);
     }
 
     @Override
     public void putDoc(String docName, String content) throws IOException {
-        Files.write(Paths.get(getFileName(docName)), content.getBytes());
+        CacheCodec docCodec = codec;
+        byte[] name = docCodec.getName().getBytes(StandardCharsets.US_ASCII);
+        if (name.length > 255)
+            throw new IOException("Codec name too long: " + docCodec.getName());
+        Path tmp = createTemp(docName);
+        try {
+            OutputStream file = Files.newOutputStream(tmp);
+            try {
+                file.write(HEADER);
+                file.write(name.length);
+                file.write(name);
+            }
+            catch (IOException e) {
+                file.close();
+                throw e;
+            }
+            try (OutputStream out = docCodec.encode(file)) {
+                out.write(content.getBytes());
+            }
+            stats.recordBytesWritten(Files.size(tmp));
+            commit(tmp, docName);
+        }
+        finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    // writes a document without header, readable by older versions of
+    // BRIDGES; the content must not start with a NUL
+    void putPlainDoc(String docName, String content) throws IOException {
+        Path tmp = createTemp(docName);
+        try {
+            byte[] bytes = content.getBytes();
+            Files.write(tmp, bytes);
+            stats.recordBytesWritten(bytes.length);
+            commit(tmp, docName);
+        }
+        finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Stores binary content as is, to be read back with mapDoc.
+     *
+     * @param docName name of the document
+     * @param content content of the document, from its position to its limit
+     * @throws IOException if the document can not be written
+     */
+    public void putBytes(String docName, ByteBuffer content) throws IOException {
+        Path tmp = createTemp(docName);
+        try {
+            stats.recordBytesWritten(content.remaining());
+            try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                while (content.hasRemaining())
+                    out.write(content);
+            }
+            commit(tmp, docName);
+        }
+        finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Maps a document stored by putBytes in memory.
+     *
+     * @param docName name of the document
+     * @return a read only view of the document
+     * @throws IOException if the document can not be mapped
+     */
+    public ByteBuffer mapDoc(String docName) throws IOException {
+        try (FileChannel in = FileChannel.open(Paths.get(getFileName(docName)))) {
+            long size = in.size();
+            stats.recordBytesRead(size);
+            return in.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+    }
+
+    private Path createTemp(String docName) throws IOException {
+        return Files.createTempFile(Paths.get(getFileName(docName)).getParent(), "." + docName, ".tmp");
+    }
+
+    // atomically replaces the document by tmp
+    private void commit(Path tmp, String docName) throws IOException {
+        Path target = Paths.get(getFileName(docName));
+        try {
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    long sizeOf(String docName) throws IOException {
+        return Files.size(Paths.get(getFileName(docName)));
+    }
+
+    // the content of the document after its first offset bytes
+    String getDocFrom(String docName, long offset) throws IOException {
+        try (FileChannel in = FileChannel.open(Paths.get(getFileName(docName)))) {
+            long size = in.size();
+            if (offset >= size)
+                return "";
+            ByteBuffer buf = ByteBuffer.allocate((int) (size - offset));
+            while (buf.hasRemaining() && in.read(buf, offset + buf.position()) >= 0)
+                ;
+            stats.recordBytesRead(buf.position());
+            return new String(buf.array(), 0, buf.position());
+        }
+    }
+
+    // identifies a version of the document: it changes when the document is
+    // replaced, or null if the document does not exist
+    Object versionOf(String docName) throws IOException {
+        Path path = Paths.get(getFileName(docName));
+        if (!Files.exists(path))
+            return null;
+        BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        Object key = attrs.fileKey();
+        return (key != null ? key.toString() : "") + "@" + attrs.lastModifiedTime().toMillis();
+    }
+
+    Path pathOf(String docName) {
+        return Paths.get(getFileName(docName));
+    }
+
+    void appendDoc(String docName, String content) throws IOException {
+        byte[] bytes = content.getBytes();
+        Files.write(Paths.get(getFileName(docName)), bytes,
+            StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        stats.recordBytesWritten(bytes.length);
     }
 
     @Override
@@ -33,6 +272,36 @@ public class SimpleCache extends Cache {
         return this.cacheDir + docName;
     }
 
+    // counts the bytes read from a document file
+    private class CountingInputStream extends FilterInputStream {
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0)
+                stats.recordBytesRead(1);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0)
+                stats.recordBytesRead(n);
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            stats.recordBytesRead(skipped);
+            return skipped;
+        }
+    }
+
     public SimpleCache(String cacheDir) {
         this.cacheDir = cacheDir;
         File dir = new File(this.cacheDir);
@@ -0,0 +1,36 @@
+package bridges.cache;
+
+/**
+ * Computes the weight of a cached document, which LRUCache counts against
+ * its byte budget.
+ */
+public interface Weigher {
+    /**
+     * The weight of a document is the number of bytes it takes on disk.
+     */
+    Weigher STORED_BYTES = new Weigher() {
+        @Override
+        public long weigh(String docName, long storedBytes) {
+            return storedBytes;
+        }
+    };
+
+    /**
+     * The weight of a document is the number of bytes it takes on disk,
+     * but at least minBytes, so that a byte budget also bounds the number
+     * of documents (to maxBytes / minBytes).
+     *
+     * @param minBytes smallest weight of a document
+     * @return the weigher
+     */
+    static Weigher atLeast(long minBytes) {
+        return (docName, storedBytes) -> Math.max(storedBytes, minBytes);
+    }
+
+    /**
+     * @param docName name of the document
+     * @param storedBytes number of bytes the document takes on disk
+     * @return the weight of the document, must not be negative
+     */
+    long weigh(String docName, long storedBytes);
+}
@@ -1,11 +1,25 @@
 package bridges.connect;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.lang.reflect.InvocationTargetException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.apache.http.entity.ContentType;
 import org.json.simple.JSONValue;
 
 import bridges.base.*;
@@ -55,6 +69,8 @@ public class Bridges {
 	private static boolean json_flag = false;
 	private static boolean post_link_url_flag = true;
 	private static int assignment;
+	// the next subassignment; uploads of visualizeAsync increment it from
+	// their own thread, so it is only used under the Bridges.class lock
 	private static int assignment_part;
 	private static String key;
 	private static Boolean debug_flag = false;   // debug mode
@@ -71,6 +87,25 @@ public class Bridges {
 
 	private DataStruct ds_handle = null;		// data structure handle
 
+	// uploads of visualizeAsync, sent one at a time in order, with at
+	// most UPLOAD_QUEUE_SIZE of them waiting; at exit, the uploads still
+	// waiting get UPLOAD_EXIT_WAIT seconds to be sent
+	private static final int UPLOAD_QUEUE_SIZE = 4;
+	private static final int UPLOAD_EXIT_WAIT = 60;
+	private static final Semaphore upload_slots = new Semaphore(UPLOAD_QUEUE_SIZE);
+	private static ExecutorService uploader;
+	private static Future<?> last_upload;
+
+	// where visualizations go instead of the server, see setVisualizationSink
+	private static VisualizationSink sink = null;
+
+	// deltas sent to the sink, see setDeltaVisualization: the data
+	// structure whose state was last sent, and the subassignment it was
+	// sent as
+	private static boolean delta_flag = false;
+	private static DataStruct delta_base = null;
+	private static String delta_base_assignment = null;
+
 	//  string constants  for use in constructing JSON
 	//  representation of the data structure
 
@@ -101,7 +136,9 @@ public class Bridges {
 	public Bridges() {
 		super();
 		connector = new Connector();
-		assignment_part = 0;
+		synchronized (Bridges.class) {
+			assignment_part = 0;
+		}
 		init(0, "", "");
 	}
 
@@ -212,6 +249,21 @@ public class Bridges {
 		connector.setServer(server);
 	}
 
+	/**
+	 *  @brief  turns gzip compression of the uploaded visualizations on or
+	 *	off (off by default)
+	 *
+	 *	Large visualizations (64KB or more) are then compressed as they are
+	 *	sent, which is much faster on slow connections. If the server does
+	 *	not accept a compressed upload, it is sent again uncompressed and
+	 *	compression is turned off.
+	 *
+	 * 	@param  flag  whether to compress large uploads
+	 */
+	public void setCompressedUpload(boolean flag) {
+		connector.setCompression(flag);
+	}
+
 	/**
 	 *  @brief  sets a debug flag, used for debugging BRIDGES
 	 *
@@ -364,7 +416,7 @@ public class Bridges {
 	 *  @return assignment as a string
 	 *
 	 */
-	public static String getAssignment() {
+	public static synchronized String getAssignment() {
 		return (assignment_part < 10)
 			? String.valueOf(assignment) + ".0" +
 			String.valueOf(assignment_part)
@@ -389,7 +441,7 @@ public class Bridges {
 	 * @param assignment number (int)
 	 *
 	 **/
-	public static void setAssignment(int assignment) {
+	public static synchronized void setAssignment(int assignment) {
 		if (assignment  <  0)
 			throw new IllegalArgumentException(
 				"\n Assignment value must be >=  0.\n");
@@ -501,22 +553,298 @@ public class Bridges {
 	 * @throws IOException
 	 */
 	public void visualize()  throws IOException, RateLimitException {
-		String[] nodes_links = new String[2];
-		String response = "";
+		// pending uploads of visualizeAsync go first
+		flush();
+
+		String assignment_id = getAssignment();
+		DataStruct ds = this.ds_handle;
+		String delta = getDeltaJSON(ds);
+
+		// send the data structure to the server and visualize
+		String response;
+		if (delta != null || json_flag) {
+			String ds_json = delta != null ? delta
+				: getJSONHeader() + ds.getDataStructureRepresentation();
+			if (json_flag)		// print the JSON (mostly for debugging)
+				System.out.println("\nJSON String:\n" + ds_json);
+			response = upload(() -> send(assignment_id, out -> out.write(ds_json)));
+		}
+		else {
+			// the JSON goes straight to the connection, large data
+			// structures are never held as one String
+			response = upload(() -> send(assignment_id, out -> {
+				out.write(getJSONHeader());
+				ds.writeDataStructureRepresentation(out);
+			}));
+		}
+		if (response.length() > 0 && isDeltaVisualization()) {
+			// the next delta is against what was just sent
+			ds.clearDirty();
+			synchronized (Bridges.class) {
+				delta_base = ds;
+				delta_base_assignment = assignment_id;
+			}
+		}
+		uploaded(response);
+	}
+
+	/**
+	 *
+	 * Sends only what changed since the previous visualization, when the
+	 * visualizations go to a sink (see setVisualizationSink) and the data
+	 * structure is the one visualized last.
+	 *
+	 * A delta has the header of a full visualization, a "delta_of" field
+	 * with the subassignment it changes, and in place of the data
+	 * structure the nodes and links whose representation changed, as
+	 * "nodes" and "links" objects from their index in the full
+	 * visualization to their JSON. Data structures send a full
+	 * visualization when their structure changed (nodes or links added
+	 * or removed), or when they do not support deltas; so far arrays and
+	 * graphs (except with the large graph visualization) do.
+	 *
+	 * The BRIDGES server does not read deltas, so visualizations sent to
+	 * it are always full. visualizeAsync() always sends full
+	 * visualizations too, which later deltas can be based on.
+	 *
+	 * @param flag true to send deltas to the sink
+	 */
+	public void setDeltaVisualization(boolean flag) {
+		flush();
+		synchronized (Bridges.class) {
+			delta_flag = flag;
+			delta_base = null;
+			delta_base_assignment = null;
+		}
+	}
 
-		String nodes_links_str = this.ds_handle.getDataStructureRepresentation();
+	/**
+	 * @return whether deltas are sent to the sink, see setDeltaVisualization
+	 */
+	public boolean getDeltaVisualization() {
+		return delta_flag;
+	}
 
-		String json_hdr = getJSONHeader();
+	// whether the states sent are tracked, as the base of deltas
+	private static synchronized boolean isDeltaVisualization() {
+		return delta_flag && sink != null;
+	}
+
+	// the JSON of the changes to ds since the last visualization sent to
+	// the sink; null when the whole data structure has to be sent
+	private String getDeltaJSON(DataStruct ds) throws IOException {
+		String base_assignment;
+		synchronized (Bridges.class) {
+			// no base until the upload of visualizeAsync is sent
+			if (!isDeltaVisualization() || ds == null || ds != delta_base
+				|| delta_base_assignment == null)
+				return null;
+			base_assignment = delta_base_assignment;
+		}
+		StringWriter delta = new StringWriter();
+		if (!ds.writeDeltaRepresentation(delta))
+			return null;
+		return getJSONHeader() +
+			QUOTE + "delta_of" + QUOTE + COLON + QUOTE + base_assignment + QUOTE + COMMA +
+			delta;
+	}
 
+	/**
+	 *
+	 * Sends the visualizations to a sink rather than to the BRIDGES
+	 * server, for instance a DirectorySink to write them to files, or a
+	 * MemorySink to keep them in memory. Visualizations sent to a sink
+	 * get subassignment numbers as they would on the server.
+	 *
+	 * @param sink where to send the visualizations, null for the server
+	 *	(the default)
+	 */
+	public void setVisualizationSink(VisualizationSink sink) {
+		flush();
+		synchronized (Bridges.class) {
+			Bridges.sink = sink;
+			// deltas are against what the sink got
+			delta_base = null;
+			delta_base_assignment = null;
+		}
+	}
 
-		String ds_json =  json_hdr + nodes_links_str;
+	/**
+	 * @return where the visualizations are sent, null for the server
+	 */
+	public VisualizationSink getVisualizationSink() {
+		return sink;
+	}
 
+	// sends a visualization to the sink, or to the server; returns the
+	// response of the server, or the assignment number for a sink
+	private String send(String assignment_id, VisualizationSink.Payload payload)
+	throws IOException, RateLimitException {
+		VisualizationSink to = sink;
+		if (to != null) {
+			to.send(assignment_id, payload);
+			return assignment_id;
+		}
+		return connector.post("/assignments/" + assignment_id, out -> {
+			Writer writer = new BufferedWriter(new OutputStreamWriter(out,
+						ContentType.TEXT_PLAIN.getCharset()));
+			payload.writeTo(writer);
+			writer.flush();
+		});
+	}
+
+	/**
+	 *
+	 * Like visualize(), but the upload happens in the background, so
+	 * that the program goes on while the visualization is sent.
+	 *
+	 * The JSON of the data structure is generated right away, so the data
+	 * structure can be changed as soon as this returns. Uploads are sent
+	 * one at a time, in the order of the calls, and each gets the next
+	 * subassignment as with visualize(). When several uploads are already
+	 * waiting, this waits for one of them to be sent. Errors are reported
+	 * on the console as with visualize().
+	 *
+	 * Use flush() to wait for the uploads to be done. Uploads still waiting
+	 * when the program exits get up to a minute to be sent.
+	 */
+	public void visualizeAsync() {
+		// the JSON is the snapshot of the data structure: data structures
+		// can not be copied, and copying their elements would cost as much
+		// as generating their JSON. Only the upload is left to the thread
+		DataStruct ds = this.ds_handle;
+		StringWriter snapshot = new StringWriter();
+		snapshot.write(getJSONHeader());
+		try {
+			ds.writeDataStructureRepresentation(snapshot);
+		}
+		catch (IOException e) {
+			// a StringWriter does not fail
+			throw new UncheckedIOException(e);
+		}
+		String ds_json = snapshot.toString();
 		if (json_flag)		// print the JSON (mostly for debugging)
 			System.out.println("\nJSON String:\n" + ds_json);
+		// the snapshot is the base of the next delta once it is sent
+		boolean delta_tracked = isDeltaVisualization();
+		if (delta_tracked) {
+			ds.clearDirty();
+			synchronized (Bridges.class) {
+				delta_base = ds;
+				delta_base_assignment = null;
+			}
+		}
 
-		// send the data structure to the server and visualize
 		try {
-			response = connector.post("/assignments/" + getAssignment(), ds_json);
+			upload_slots.acquire();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			System.err.println("Interrupted, the visualization was not sent.");
+			return;
+		}
+		synchronized (Bridges.class) {
+			if (uploader == null) {
+				// the thread ends once idle; it does not keep the program
+				// alive, the uploads left are waited for at exit
+				uploader = new ThreadPoolExecutor(0, 1, 1, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<Runnable>(), r -> {
+						Thread t = new Thread(r, "bridges-upload");
+						t.setDaemon(true);
+						return t;
+					});
+				Runtime.getRuntime().addShutdownHook(new Thread(
+						Bridges::awaitUploads, "bridges-upload-exit"));
+			}
+			last_upload = uploader.submit(() -> {
+				try {
+					// the subassignment is taken when the upload is sent, so
+					// failed uploads do not use one
+					String assignment_id = getAssignment();
+					String response;
+					try {
+						response = upload(() -> send(assignment_id, out -> out.write(ds_json)));
+					}
+					catch (RuntimeException e) {
+						// visualize() throws these; there is no caller to
+						// throw them to here
+						System.err.println("There was a problem sending the visualization"
+							+ " representation to the server. \n" + e);
+						response = "";
+					}
+					if (delta_tracked) {
+						synchronized (Bridges.class) {
+							// a later snapshot may be the base already
+							if (delta_base == ds && response.length() > 0)
+								delta_base_assignment = assignment_id;
+							else if (response.length() == 0)
+								delta_base = null;
+						}
+					}
+					uploaded(response);
+				}
+				finally {
+					upload_slots.release();
+				}
+			});
+		}
+	}
+
+	/**
+	 *
+	 * Waits for the uploads of visualizeAsync() to be done.
+	 */
+	public void flush() {
+		Future<?> last;
+		synchronized (Bridges.class) {
+			last = last_upload;
+		}
+		if (last == null)
+			return;
+		try {
+			last.get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		catch (ExecutionException e) {
+			// uploads report their exceptions themselves, not errors
+			System.err.println("The visualization could not be sent: " + e.getCause());
+		}
+	}
+
+	// waits for the uploads of visualizeAsync, at most UPLOAD_EXIT_WAIT
+	// seconds, as the program exits
+	private static void awaitUploads() {
+		Future<?> last;
+		synchronized (Bridges.class) {
+			last = last_upload;
+		}
+		try {
+			last.get(UPLOAD_EXIT_WAIT, TimeUnit.SECONDS);
+		}
+		catch (TimeoutException e) {
+			System.err.println("Gave up waiting for the visualizations still"
+				+ " being sent.");
+		}
+		catch (ExecutionException e) {
+			// uploads report their exceptions themselves, not errors
+			System.err.println("The visualization could not be sent: " + e.getCause());
+		}
+		catch (InterruptedException e) {
+			// the program is exiting anyway
+		}
+	}
+
+	private interface Upload {
+		String send() throws IOException, RateLimitException;
+	}
+
+	// sends a visualization, reporting errors on the console; returns the
+	// response of the server, empty if the upload failed
+	private String upload(Upload upload) {
+		try {
+			return upload.send();
 		}
 		catch (IOException e) {
 			System.err.println("There was a problem sending the visualization"
@@ -529,18 +857,23 @@ public class Bridges {
 				+ " an impossible 'RateLimitException'. "
 				+ e.getMessage());
 		}
+		return "";
+	}
 
+	private void uploaded(String response) {
 		// Only print a url and increment assignment part when a successful upload has completed
 		if (response.length() > 0) {
 			// Return a URL to the user
-			if (post_link_url_flag) {
+			if (post_link_url_flag && sink == null) {
 				System.out.println("\nCheck Your Visualization at the following link:\n\n" +
 					connector.getServerURL() + "/assignments/" + assignment + "/"
 					+ userName + "\n\n");
 			}
 
 			// Increment the subassignment counter
-			assignment_part++;
+			synchronized (Bridges.class) {
+				assignment_part++;
+			}
 		}
 	}
 	String getJSONHeader() {
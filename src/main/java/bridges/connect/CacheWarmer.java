@@ -0,0 +1,272 @@
+package bridges.connect;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+/**
+ *	@brief Fills the dataset cache ahead of time, so that later runs (for
+ *	instance with DataSource.setOffline(true)) find everything they need
+ *	in the cache.
+ *
+ *	The queries to run are read from a manifest, a JSON array of objects
+ *	with a "dataset" field and the parameters of the matching DataSource
+ *	getter:
+ *
+ *	<pre>
+ *	[
+ *	  {"dataset": "osm", "location": "Charlotte, North Carolina", "level": "default"},
+ *	  {"dataset": "osm", "minLat": 35.2, "minLon": -80.9, "maxLat": 35.3, "maxLon": -80.8},
+ *	  {"dataset": "elevation", "minLat": 35.2, "minLon": -80.9, "maxLat": 35.3, "maxLon": -80.8, "res": 0.02},
+ *	  {"dataset": "amenity", "location": "Charlotte, North Carolina", "amenity": "food"},
+ *	  {"dataset": "wikidata", "begin": 1990, "end": 2000},
+ *	  {"dataset": "songs", "title": "Delicate", "artist": "Taylor Swift"}
+ *	]
+ *	</pre>
+ *
+ *	"level" defaults to "default" and "artist" to none. WikiData ranges are
+ *	fetched one year at a time, like DataSource does. A query that fails
+ *	is reported by warm() with its error. Queries run in parallel; queries whose
+ *	dataset is cached and fresh do not reach the server.
+ *
+ *	It can be run from the command line:
+ *	java bridges.connect.CacheWarmer manifest.json [threads]
+ */
+public class CacheWarmer {
+	private static final int DEFAULT_THREADS = 4;
+
+	private final int threads;
+	private final DataSource ds;
+
+	/**
+	 *	@brief A dataset request of a manifest
+	 */
+	public static class Query {
+		private final String description;
+		private final Fetch fetch;
+
+		private Query(String description, Fetch fetch) {
+			this.description = description;
+			this.fetch = fetch;
+		}
+
+		@Override
+		public String toString() {
+			return description;
+		}
+	}
+
+	private interface Fetch {
+		void run(DataSource ds) throws IOException;
+	}
+
+	public CacheWarmer() {
+		this(DEFAULT_THREADS);
+	}
+
+	/**
+	 *	@param threads number of queries run at the same time
+	 */
+	public CacheWarmer(int threads) {
+		this(new DataSource(), threads);
+	}
+
+	CacheWarmer(DataSource ds, int threads) {
+		this.ds = ds;
+		this.threads = Math.max(1, threads);
+	}
+
+	/**
+	 *	@brief Runs the queries of a manifest
+	 *
+	 *	@param manifest queries to run
+	 *	@return the queries that failed, with their error; empty if all
+	 *	succeeded
+	 */
+	public Map<Query, Exception> warm(List<Query> manifest) {
+		Map<Query, Exception> failures = new LinkedHashMap<>();
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			Map<Query, Future<?>> running = new LinkedHashMap<>();
+			for (Query query : manifest) {
+				running.put(query, pool.submit(() -> {
+					query.fetch.run(ds);
+					return null;
+				}));
+			}
+			for (Map.Entry<Query, Future<?>> entry : running.entrySet()) {
+				try {
+					entry.getValue().get();
+				}
+				catch (ExecutionException e) {
+					Throwable cause = e.getCause();
+					failures.put(entry.getKey(), cause instanceof Exception
+						? (Exception) cause : e);
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					failures.put(entry.getKey(), e);
+				}
+			}
+		}
+		finally {
+			pool.shutdownNow();
+		}
+		return failures;
+	}
+
+	/**
+	 *	@brief Reads a manifest
+	 *
+	 *	@param in JSON manifest, see the class description
+	 *	@return the queries of the manifest
+	 *	@throws IOException if the manifest can not be read or is malformed
+	 */
+	public static List<Query> readManifest(Reader in) throws IOException {
+		Object root;
+		try {
+			root = new JSONParser().parse(in);
+		}
+		catch (ParseException e) {
+			throw new IOException("Malformed manifest: " + e);
+		}
+		if (!(root instanceof JSONArray))
+			throw new IOException("Malformed manifest: expected an array of queries");
+
+		List<Query> queries = new ArrayList<>();
+		for (Object item : (JSONArray) root) {
+			if (!(item instanceof JSONObject))
+				throw new IOException("Malformed manifest: not a query: " + item);
+			addQueries((JSONObject) item, queries);
+		}
+		return queries;
+	}
+
+	private static void addQueries(JSONObject item, List<Query> queries)
+	throws IOException {
+		String dataset = getString(item, "dataset", null);
+		if (dataset == null)
+			throw new IOException("Malformed manifest: no dataset in " + item);
+
+		switch (dataset) {
+			case "osm": {
+				String level = getString(item, "level", "default");
+				if (item.containsKey("location")) {
+					String location = getString(item, "location", null);
+					queries.add(new Query(item.toJSONString(),
+							ds -> ds.getOsmData(location, level)));
+				}
+				else {
+					double[] box = getBox(item);
+					queries.add(new Query(item.toJSONString(),
+							ds -> ds.getOsmData(box[0], box[1], box[2], box[3], level)));
+				}
+				break;
+			}
+			case "elevation": {
+				double[] box = getBox(item);
+				double res = getDouble(item, "res", Double.NaN);
+				queries.add(new Query(item.toJSONString(),
+						ds -> ds.getElevationData(box[0], box[1], box[2], box[3], res)));
+				break;
+			}
+			case "amenity": {
+				String amenity = getString(item, "amenity", null);
+				if (amenity == null)
+					throw new IOException("Malformed manifest: no amenity in " + item);
+				if (item.containsKey("location")) {
+					String location = getString(item, "location", null);
+					queries.add(new Query(item.toJSONString(),
+							ds -> ds.getAmenityData(location, amenity)));
+				}
+				else {
+					double[] box = getBox(item);
+					queries.add(new Query(item.toJSONString(),
+							ds -> ds.getAmenityData(box[0], box[1], box[2], box[3], amenity)));
+				}
+				break;
+			}
+			case "wikidata": {
+				int begin = (int) getDouble(item, "begin", Double.NaN);
+				int end = (int) getDouble(item, "end", begin);
+				for (int year = begin; year <= end; ++year) {
+					int y = year;
+					queries.add(new Query("{\"dataset\":\"wikidata\",\"year\":" + y + "}",
+							ds -> ds.getWikidataActorMovie(y, y)));
+				}
+				break;
+			}
+			case "songs": {
+				String title = getString(item, "title", null);
+				if (title == null || title.isEmpty())
+					throw new IOException("Malformed manifest: no title in " + item);
+				String artist = getString(item, "artist", "");
+				queries.add(new Query(item.toJSONString(),
+						ds -> ds.getSong(title, artist)));
+				break;
+			}
+			default:
+				throw new IOException("Malformed manifest: unknown dataset " + dataset);
+		}
+	}
+
+	private static String getString(JSONObject item, String key, String def) {
+		Object value = item.get(key);
+		return value == null ? def : value.toString();
+	}
+
+	private static double getDouble(JSONObject item, String key, double def)
+	throws IOException {
+		Object value = item.get(key);
+		if (value == null) {
+			if (Double.isNaN(def))
+				throw new IOException("Malformed manifest: no " + key + " in " + item);
+			return def;
+		}
+		if (!(value instanceof Number))
+			throw new IOException("Malformed manifest: " + key + " is not a number in " + item);
+		return ((Number) value).doubleValue();
+	}
+
+	// minLat, minLon, maxLat, maxLon
+	private static double[] getBox(JSONObject item) throws IOException {
+		return new double[] {
+			getDouble(item, "minLat", Double.NaN),
+			getDouble(item, "minLon", Double.NaN),
+			getDouble(item, "maxLat", Double.NaN),
+			getDouble(item, "maxLon", Double.NaN)
+		};
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1 || args.length > 2) {
+			System.err.println("usage: java bridges.connect.CacheWarmer manifest.json [threads]");
+			System.exit(2);
+		}
+		List<Query> manifest;
+		try (Reader in = new FileReader(args[0])) {
+			manifest = readManifest(in);
+		}
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_THREADS;
+
+		Map<Query, Exception> failures = new CacheWarmer(threads).warm(manifest);
+		for (Map.Entry<Query, Exception> failure : failures.entrySet())
+			System.err.println("Failed " + failure.getKey() + ": " + failure.getValue());
+		System.err.println((manifest.size() - failures.size()) + " of "
+			+ manifest.size() + " queries cached");
+		System.exit(failures.isEmpty() ? 0 : 1);
+	}
+}
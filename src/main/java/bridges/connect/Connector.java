@@ -1,6 +1,10 @@
 package bridges.connect;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.regex.Matcher;
@@ -9,12 +13,20 @@ import java.util.List;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.Collections;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
+import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.HttpResponseException;
+import org.apache.http.client.entity.GzipCompressingEntity;
 import org.apache.http.client.fluent.*;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentProducer;
 import org.apache.http.entity.ContentType;
+import org.apache.http.entity.EntityTemplate;
+import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.client.LaxRedirectStrategy;
 import org.apache.http.util.EntityUtils;
@@ -52,6 +64,11 @@ public class Connector {
 
 	Executor http_connection;
 	int pattern_found = 0; //semaphor
+
+	// gzip compression of uploads, see setCompression; uploads of
+	// Bridges.visualizeAsync run on their own thread, and may turn it off
+	volatile boolean compress = false;
+	volatile int compress_threshold = 64 * 1024;
 	protected Connector() {
 
 		http_connection = Executor.newInstance(
@@ -116,6 +133,28 @@ public class Connector {
 			this.server_url = server_url;
 	}
 
+	/**
+	 * Turn gzip compression of uploads on or off (off by default). Bodies
+	 * of at least the compression threshold (in bytes) are then
+	 * compressed as they are sent. If the server rejects a compressed body
+	 * (HTTP 415, or 400), it is sent again uncompressed and, if that is
+	 * accepted, compression is turned off. Other failures are not retried.
+	 *
+	 * @param flag  whether to compress large uploads
+	 */
+	public void setCompression(boolean flag) {
+		this.compress = flag;
+	}
+
+	/**
+	 * Set the size from which uploads are compressed, 64KB by default
+	 *
+	 * @param bytes  smallest body compressed, as sent
+	 */
+	public void setCompressionThreshold(int bytes) {
+		this.compress_threshold = bytes;
+	}
+
 	/**
 	 * This reformats the coordinates in Earthwuake tweet such that there will be
 	 * no arrays present when casting to the JSONObject. for  the reasons described below
@@ -493,33 +532,40 @@ public class Connector {
 		 *   (String) ...execute(request).returnResponse().getEntity()
 		 *   	won't cast
 		 */
-		//	this will output the server error as well as
-		// 	parsed from the error message
-		String err = asJSONObject(EntityUtils.toString(
-					response.getEntity())).keySet().toString();
+		int status = response.getStatusLine().getStatusCode();
 		String text = EntityUtils.toString(response.getEntity());
-		if (response.getStatusLine().getStatusCode() == 503) {
+		if (status == 503) {
 			throw new RateLimitException("Server responds Service Temporarily"
 				+ " Unavailable. You have probably reached your quota."
 				+ " Try again after waiting at least 15 minutes.");
 		}
-		else if (response.getStatusLine().getStatusCode() >= 400) {
+		else if (status >= 400) {
 			// The request succeeded but the server threw an error
 			System.err.println("Server returned error response: HTTP " +
-				response.getStatusLine().getStatusCode() + " while"
+				status + " while"
 				+ " processing the request " + request);
 
 			/* By convention, the server responds {"error": "message"} */
 
 			// Parsing it as an object will throw if the server gave an error.
-			// asJSONObject(text);
-
-			// But otherwise, throw something less helpful.
-			throw new IOException("Server errored, but gave an invalid"
+			// But otherwise, throw something less helpful. The status is
+			// kept, callers may act on it.
+			String message = "Server errored, but gave an invalid"
 				+ " report: " + text + ". Consider filing a bug report"
-				+ " about this at http://github.com/SeanTater/bridges.");
+				+ " about this at http://github.com/SeanTater/bridges.";
+			try {
+				asJSONObject(text);
+			}
+			catch (IOException e) {
+				message = e.getMessage();
+			}
+			throw new HttpResponseException(status, message);
 		}
 
+		//	this will output the server error as well as
+		// 	parsed from the error message
+		asJSONObject(text);
+
 		// Handle empty responses
 		if (text == null || text.isEmpty())
 			throw new IOException("Server returned empty response for '"
@@ -593,8 +639,128 @@ public class Connector {
 			System.err.println("Connector.post-StringString(" + url + ", " + data + ")");
 			System.err.println("prepare(url)=" + prepare(url));
 		}
-		return executeHTTPRequest(Request.Post(prepare(url))
-				.bodyString(data, ContentType.TEXT_PLAIN));
+		StringEntity entity = new StringEntity(data, ContentType.TEXT_PLAIN);
+		return post(url, entity, entity.getContentLength() >= compress_threshold
+				? new GzipCompressingEntity(entity) : null);
+	}
+
+	/**
+	 *	Execute a POST request with relative paths, whose body is written
+	 *	to the connection by body as the request is sent instead of being
+	 *	built in memory first. With compression on, body is written once
+	 *	into memory instead: its beginning as is, and once it reaches the
+	 *	compression threshold, the whole of it compressed.
+	 */
+	public String post(String url, ContentProducer body) throws IOException,
+		RateLimitException {
+		if (Bridges.getDebugFlag()) {
+			System.err.println("Connector.post-Streaming(" + url + ")");
+			System.err.println("prepare(url)=" + prepare(url));
+		}
+		if (compress) {
+			// one pass over the body: it is sent as is if it ends before
+			// the threshold, compressed otherwise
+			ThresholdGzipOutputStream out = new ThresholdGzipOutputStream(compress_threshold);
+			try {
+				body.writeTo(out);
+			}
+			finally {
+				out.close();
+			}
+			if (!out.isCompressed()) {
+				return post(url, new ByteArrayEntity(out.toByteArray(),
+							ContentType.TEXT_PLAIN), null);
+			}
+			byte[] gzipped = out.toByteArray();
+			ByteArrayEntity compressed = new ByteArrayEntity(gzipped, ContentType.TEXT_PLAIN);
+			compressed.setContentEncoding("gzip");
+			// if the server rejects it, the body is uncompressed as it is
+			// sent again rather than written again
+			EntityTemplate entity = new EntityTemplate(plain -> {
+				try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped))) {
+					byte[] buffer = new byte[8192];
+					int n;
+					while ((n = in.read(buffer)) > 0)
+						plain.write(buffer, 0, n);
+				}
+			});
+			entity.setContentType(ContentType.TEXT_PLAIN.toString());
+			return post(url, entity, compressed);
+		}
+		EntityTemplate entity = new EntityTemplate(body);
+		entity.setContentType(ContentType.TEXT_PLAIN.toString());
+		return post(url, entity, null);
+	}
+
+	// sends the compressed body if compression is on and there is one
+	// (for large bodies), the body as is otherwise or if the server
+	// rejected the compressed body (415 Unsupported Media Type, or 400 Bad
+	// Request from servers that can not read it); any other failure is
+	// the caller's
+	private String post(String url, HttpEntity entity, HttpEntity compressed)
+	throws IOException, RateLimitException {
+		if (compress && compressed != null) {
+			try {
+				return executeHTTPRequest(Request.Post(prepare(url)).body(compressed));
+			}
+			catch (HttpResponseException e) {
+				if (e.getStatusCode() != 415 && e.getStatusCode() != 400)
+					throw e;
+				if (Bridges.getDebugFlag())
+					System.err.println("Compressed upload rejected, sending it"
+						+ " uncompressed: " + e.getMessage());
+			}
+			String response = executeHTTPRequest(Request.Post(prepare(url)).body(entity));
+			// the server took the body, but not compressed
+			compress = false;
+			return response;
+		}
+		return executeHTTPRequest(Request.Post(prepare(url)).body(entity));
+	}
+
+	// keeps what is written as is until limit bytes were written, then
+	// gzips all of it; close finishes the compressed data
+	private static class ThresholdGzipOutputStream extends OutputStream {
+		private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		private final int limit;
+		private GZIPOutputStream gzip = null;
+
+		ThresholdGzipOutputStream(int limit) {
+			this.limit = limit;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] {(byte) b}, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			if (gzip == null && buffer.size() + len >= limit) {
+				byte[] head = buffer.toByteArray();
+				buffer.reset();
+				gzip = new GZIPOutputStream(buffer, 8192);
+				gzip.write(head);
+			}
+			if (gzip != null)
+				gzip.write(b, off, len);
+			else
+				buffer.write(b, off, len);
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (gzip != null)
+				gzip.finish();
+		}
+
+		boolean isCompressed() {
+			return gzip != null;
+		}
+
+		byte[] toByteArray() {
+			return buffer.toByteArray();
+		}
 	}
 
 	/**
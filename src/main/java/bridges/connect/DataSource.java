@@ -2,29 +2,54 @@ package bridges.connect;
 
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Vector;
-import java.util.HashMap;
 import java.util.Iterator;
-
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import java.io.Closeable;
 import java.io.File;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 
 // exception related
 import java.io.IOException;
 import java.lang.Exception;
 import com.google.gson.JsonParseException;
 import org.apache.http.client.ClientProtocolException;
-import com.google.gson.JsonParseException;
 
 
 // parser related
 import com.google.common.net.UrlEscapers;
 import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import org.json.simple.parser.JSONParser;
 
 
 // encoder related
 import java.net.URLEncoder;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
 
 
@@ -34,18 +59,26 @@ import org.json.simple.JSONObject;
 import org.json.simple.JSONValue;
 
 // HTTP related
+import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.HttpResponseException;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
-import org.apache.http.client.HttpClient;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.util.EntityUtils;
 import org.apache.commons.codec.binary.Base64;
 
 import bridges.base.*;
 import bridges.data_src_dependent.*;
 import bridges.validation.*;
+import bridges.cache.CacheCodec;
+import bridges.cache.CacheStats;
 import bridges.cache.LRUCache;
+import bridges.cache.ObjectCache;
+import bridges.cache.Weigher;
 import bridges.connect.*;
 
 /**
@@ -62,8 +95,84 @@ import bridges.connect.*;
  *  previously built data structures is also provided.
  */
 public class DataSource {
+	// limit of the dataset cache; datasets vary from a few hundred bytes
+	// (songs, cache meta data) to hundreds of MB so the cache is bounded
+	// by size only, each document weighing at least CACHE_MIN_WEIGHT so
+	// that the number of files stays bounded too
+	private static final long CACHE_MAX_BYTES = 2L * 1024 * 1024 * 1024;
+	private static final long CACHE_MIN_WEIGHT = 16 * 1024;
+
+	// binary snapshots of parsed maps are cached next to their JSON
+	private static final String OSM_SNAPSHOT_SUFFIX = ".osmbin";
+	private static final int OSM_SNAPSHOT_MAGIC = 0x424f534d;
+	private static final int OSM_SNAPSHOT_VERSION = 1;
+
+	// elevation tiles, see setTiledElevation: level k of the pyramid has
+	// cells of ELEVATION_BASE_RES * 2^k degrees, grouped in square tiles
+	// of ELEVATION_TILE_CELLS cells aligned on multiples of their size
+	private static final double ELEVATION_BASE_RES = 1.0 / 3600;
+	private static final int ELEVATION_MAX_LEVEL = 16;
+	private static final int ELEVATION_TILE_CELLS = 256;
+
+	// map tiles, see setTiledOsm: squares of OSM_TILE_SIZE degrees
+	private static final double OSM_TILE_SIZE = 0.05;
+
+	// parsed datasets kept in memory, in front of the cache on disk: at
+	// most a quarter of the heap, as weighed by objectWeight, and many
+	// entries so that the small tiles of setTiledOsm and
+	// setTiledElevation do not push the maps out
+	private static final int OBJECT_CACHE_ENTRIES = 1024;
+	private static final long OBJECT_CACHE_WEIGHT = Runtime.getRuntime().maxMemory() / 4;
+
+	// how long cached datasets are used without checking with the server
+	private static final long DEFAULT_CACHE_TTL = 24L * 60 * 60 * 1000;
+	private static final Map<String, Long> cache_ttls = new ConcurrentHashMap<>();
+	private static volatile long default_cache_ttl = DEFAULT_CACHE_TTL;
+	private static volatile boolean background_revalidation = false;
+	private static volatile boolean offline = false;
+	private static volatile boolean tiled_elevation = false;
+	private static volatile boolean tiled_osm = false;
+
+	// shared HTTP client, see setHttpConnectionLimits and setHttpTimeouts
+	private static CloseableHttpClient http_client;
+	private static int http_max_connections = 20;
+	private static int http_max_connections_per_route = 8;
+	private static int http_connect_timeout = 10 * 1000;
+	private static int http_socket_timeout = 2 * 60 * 1000;
+
+	// runs the asynchronous getters, see setAsyncExecutor
+	private static final int ASYNC_THREADS = 4;
+	private static Executor async_executor;
+	private static final Set<String> revalidating = ConcurrentHashMap.newKeySet();
+	private static final ExecutorService revalidator =
+		Executors.newSingleThreadExecutor(r -> {
+			Thread t = new Thread(r, "bridges-cache-revalidation");
+			t.setDaemon(true);
+			return t;
+		});
+
+	// parsed WikiData years kept in memory, a benchmark sweep uses dozens
+	private static final int WIKIDATA_YEAR_ENTRIES = 150;
+	private static final ObjectCache<List<ActorMovieWikidata>> wikidata_years =
+		new ObjectCache<>(WIKIDATA_YEAR_ENTRIES);
+
+	// getSongs: songs requested at the same time, and retries of failed
+	// requests, the n-th after SONG_RETRY_DELAY * 2^n ms
+	private static final int SONG_BATCH_CONCURRENCY = 8;
+	private static final int SONG_RETRIES = 2;
+	private static final long SONG_RETRY_DELAY = 500;
+
+	// datasets of bridgesdata.herokuapp.com that have a lazy version
+	private static final String CANCER_URL =
+		"https://bridgesdata.herokuapp.com/api/cancer/withlocations";
+	private static final String IMDB2_URL = "https://bridgesdata.herokuapp.com/api/imdb2";
+	private static final String BOOKS_URL = "https://bridgesdata.herokuapp.com/api/books";
+	private static final String SONGS_URL = "https://bridgesdata.herokuapp.com/api/songs";
+
 	private Bridges bridges;
 	private static LRUCache lru;
+	private static final ObjectCache<Object> objects =
+		new ObjectCache<>(OBJECT_CACHE_ENTRIES, OBJECT_CACHE_WEIGHT, DataSource::objectWeight);
 	private boolean debug = false;
 
 	private String getOSMBaseURL() {
@@ -86,13 +195,100 @@ public class DataSource {
 
 	DataSource() {
 		if (lru == null)
-			lru = new LRUCache(30);
+			lru = openCache();
 	}
 
 	DataSource(Bridges b) {
 		bridges = b;
 		if (lru == null)
-			lru = new LRUCache(30);
+			lru = openCache();
+	}
+
+	/**
+	 *	@brief Get the cache in memory of the datasets already parsed by
+	 *	this program
+	 *
+	 *	OSM maps, elevation maps and amenities are kept (softly referenced)
+	 *	in this cache, keyed by the hash of their dataset. Asking for them
+	 *	again checks that the dataset is fresh (see setCacheTTL), and
+	 *	returns a copy of the cached object, without reading or parsing
+	 *	the dataset; datasets the server has no hash for are not kept.
+	 *	The cache is bounded by the number of objects and by their weight,
+	 *	roughly the bytes they take, a quarter of the heap by default.
+	 *	The cached objects themselves are never handed
+	 *	out, so callers can change what they get. The cache can be resized
+	 *	or cleared, and counts hits and misses.
+	 *
+	 *	@return the cache of parsed datasets
+	 */
+	public static ObjectCache<Object> getObjectCache() {
+		return objects;
+	}
+
+	// roughly the bytes a parsed dataset takes in the object cache
+	private static long objectWeight(Object o) {
+		if (o instanceof OsmData) {
+			OsmData map = (OsmData) o;
+			return 16L * map.getVertexCount() + 16L * map.getEdgeCount();
+		}
+		if (o instanceof OsmColumns) {
+			OsmColumns tile = (OsmColumns) o;
+			return 24L * tile.ids.length + 24L * tile.from_ids.length;
+		}
+		if (o instanceof ElevationData) {
+			ElevationData elevation = (ElevationData) o;
+			return 4L * elevation.getCols() * elevation.getRows();
+		}
+		if (o instanceof int[])
+			return 4L * ((int[]) o).length;
+		if (o instanceof AmenityData)
+			return 64L * ((AmenityData) o).getAmenities().size();
+		return 0;
+	}
+
+	// replaces the dataset cache and drops the datasets parsed from the
+	// previous one; for tests
+	static synchronized void setCache(LRUCache cache) {
+		lru = cache;
+		objects.clear();
+		wikidata_years.clear();
+	}
+
+	// the cache directory is shared by every BRIDGES program of the user,
+	// possibly running at the same time; datasets are mostly JSON and
+	// ASCII grids which compress well. The statistics of the caches are
+	// registered in CacheStats as "datasets", "objects" and "wikidata".
+	private static LRUCache openCache() {
+		LRUCache cache = new LRUCache(0, CACHE_MAX_BYTES, Weigher.atLeast(CACHE_MIN_WEIGHT));
+		CacheStats.register("datasets", cache.getStats());
+		CacheStats.register("objects", objects.getStats());
+		CacheStats.register("wikidata", wikidata_years.getStats());
+		cache.setCodec(CacheCodec.GZIP);
+		try {
+			cache.setProcessSafe(true);
+		}
+		catch (IOException e) {
+			System.err.println("Could not lock the dataset cache: " + e.getMessage());
+		}
+		return cache;
+	}
+
+	// parse an earthquake record -- for internal use only
+	private EarthquakeUSGS parseEarthquakeUSGS(JSONObject item) {
+		JSONObject props = (JSONObject)item.get("properties");
+		JSONArray coords = (JSONArray)
+			((JSONObject)item.get("geometry")).get("coordinates");
+
+		EarthquakeUSGS eq = new EarthquakeUSGS();
+
+		eq.setMagnitude(((Number)props.get("mag")).doubleValue());
+		eq.setLatit(((Number)coords.get(1)).doubleValue());
+		eq.setLongit(((Number)coords.get(0)).doubleValue());
+		eq.setLocation((String)props.get("place"));
+		eq.setTitle((String)props.get("title"));
+		eq.setUrl((String)props.get("url"));
+		eq.setTime ((String)props.get("time"));
+		return eq;
 	}
 
 	/**
@@ -116,30 +312,10 @@ public class DataSource {
 		int status = response.getStatusLine().getStatusCode();
 
 		if (status == 200) 	{
-			JSONArray json = unwrapJSONArray(response, "Earthquakes");
-
-			ArrayList<EarthquakeUSGS> eq_list =
-				new ArrayList<EarthquakeUSGS>(json.size());
-			for (int i = 0; i < json.size(); i++) {
-				JSONObject item = (JSONObject)json.get(i);
-				JSONObject props = (JSONObject)item.get("properties");
-				JSONArray coords = (JSONArray)
-					((JSONObject)item.get("geometry")).get("coordinates");
-
-				EarthquakeUSGS eq = new EarthquakeUSGS();
-
-				eq.setMagnitude(((Number)props.get("mag")).doubleValue());
-				eq.setLatit(((Number)coords.get(1)).doubleValue());
-				eq.setLongit(((Number)coords.get(0)).doubleValue());
-				eq.setLocation((String)props.get("place"));
-				eq.setTitle((String)props.get("title"));
-				eq.setUrl((String)props.get("url"));
-				eq.setTime ((String)props.get("time"));
-				eq_list.add(eq);
-			}
-			return eq_list;
+			return readJSONRecords(response, "Earthquakes", this::parseEarthquakeUSGS);
 		}
 		else {
+			EntityUtils.consumeQuietly(response.getEntity());
 			throw new HttpResponseException(status, "HTTP Request Failed. Error Code: " + status);
 		}
 	}
@@ -162,6 +338,16 @@ public class DataSource {
 	public  List<Shakespeare> getShakespeareData() throws Exception {
 		return getShakespeareData("");
 	}
+	// parse a Shakespeare work -- for internal use only
+	private Shakespeare parseShakespeare(JSONObject item) {
+		Shakespeare shksp = new Shakespeare();
+
+		shksp.setTitle((String) item.get("title"));
+		shksp.setType((String) item.get("type"));
+		shksp.setText((String) item.get("text"));
+		return shksp;
+	}
+
 	/**
 	 *  @brief This function provides access to a collection of Shakespeare plays,
 	 * 	poems and plays.
@@ -196,23 +382,10 @@ public class DataSource {
 		int status = response.getStatusLine().getStatusCode();
 
 		if (status == 200) 	{
-			JSONArray json = unwrapJSONArray(response);
-
-			List<Shakespeare> shksp_list =
-				new ArrayList<Shakespeare>(json.size());
-			for (int i = 0; i < json.size(); i++) {
-				JSONObject item = (JSONObject)json.get(i);
-
-				Shakespeare shksp = new Shakespeare();
-
-				shksp.setTitle((String) item.get("title"));
-				shksp.setType((String) item.get("type"));
-				shksp.setText((String) item.get("text"));
-				shksp_list.add(shksp);
-			}
-			return shksp_list;
+			return readJSONRecords(response, "data", this::parseShakespeare);
 		}
 		else {
+			EntityUtils.consumeQuietly(response.getEntity());
 			throw new HttpResponseException(status, "HTTP Request Failed. Error Code: " + status);
 		}
 	}
@@ -221,6 +394,36 @@ public class DataSource {
 	return getShakespeareData(works, false);
     }
     
+	// parse a cancer incidence record -- for internal use only
+	private CancerIncidence parseCancerIncidence(JSONObject item) {
+		CancerIncidence c = new CancerIncidence();
+
+		JSONObject age = (JSONObject) item.get("Age");
+		c.setAgeAdjustedRate(((Number)
+				age.get("Age Adjusted Rate")).doubleValue());
+		c.setAgeAdjustedCI_Lower(((Number)
+				age.get("Age Adjusted CI Lower")).doubleValue());
+		c.setAgeAdjustedCI_Upper(((Number)
+				age.get("Age Adjusted CI Upper")).doubleValue());
+
+		JSONObject data = (JSONObject) item.get("Data");
+		c.setCrudeRate(((Number) data.get("Crude Rate")).doubleValue());
+		c.setCrudeRate_CI_Lower(
+			((Number) data.get("Crude CI Lower")).doubleValue());
+		c.setCrudeRate_CI_Upper(
+			((Number) data.get("Crude CI Upper")).doubleValue());
+		c.setRace((String) data.get("Race"));
+		c.setGender((String) data.get("Sex"));
+		c.setYear(((Number) item.get("Year")).intValue());
+		c.setEventType((String) data.get("Event Type"));
+		c.setPopulation(((Number) data.get("Population")).intValue());
+		c.setAffectedArea((String) item.get("Area"));
+		JSONArray loc = (JSONArray) item.get("loc");
+		c.setLocationX (((Number) loc.get(0)).doubleValue());
+		c.setLocationY (((Number) loc.get(1)).doubleValue());
+		return c;
+	}
+
 	/**
 	 *  This helper function provides access to a cancer dataset from CDC
 	 *  https://www.cdc.gov/cancer/npcr/uscs/download_data.htm and curated
@@ -238,50 +441,16 @@ public class DataSource {
 	 *  @return a list of Cancer incidence objects.
 	 */
 	public List<CancerIncidence> getCancerIncidenceData() throws Exception {
-		String url = "https://bridgesdata.herokuapp.com/api/cancer/withlocations";
+		String url = CANCER_URL;
 		HttpResponse response = makeRequest(url);
 
 		int status = response.getStatusLine().getStatusCode();
 
 		if (status == 200) 	{
-			JSONArray json = unwrapJSONArray(response);
-
-			List<CancerIncidence> canc_objs =
-				new ArrayList<CancerIncidence>(json.size());
-			for (int i = 0; i < json.size(); i++) {
-				JSONObject item = (JSONObject) json.get(i);
-
-				CancerIncidence c = new CancerIncidence();
-
-				JSONObject age = (JSONObject) item.get("Age");
-				c.setAgeAdjustedRate(((Number)
-						age.get("Age Adjusted Rate")).doubleValue());
-				c.setAgeAdjustedCI_Lower(((Number)
-						age.get("Age Adjusted CI Lower")).doubleValue());
-				c.setAgeAdjustedCI_Upper(((Number)
-						age.get("Age Adjusted CI Upper")).doubleValue());
-
-				JSONObject data = (JSONObject) item.get("Data");
-				c.setCrudeRate(((Number) data.get("Crude Rate")).doubleValue());
-				c.setCrudeRate_CI_Lower(
-					((Number) data.get("Crude CI Lower")).doubleValue());
-				c.setCrudeRate_CI_Upper(
-					((Number) data.get("Crude CI Upper")).doubleValue());
-				c.setRace((String) data.get("Race"));
-				c.setGender((String) data.get("Sex"));
-				c.setYear(((Number) item.get("Year")).intValue());
-				c.setEventType((String) data.get("Event Type"));
-				c.setPopulation(((Number) data.get("Population")).intValue());
-				c.setAffectedArea((String) item.get("Area"));
-				JSONArray loc = (JSONArray) item.get("loc");
-				c.setLocationX (((Number) loc.get(0)).doubleValue());
-				c.setLocationY (((Number) loc.get(1)).doubleValue());
-
-				canc_objs.add(c);
-			}
-			return canc_objs;
+			return readJSONRecords(response, "data", this::parseCancerIncidence);
 		}
 		else {
+			EntityUtils.consumeQuietly(response.getEntity());
 			throw new HttpResponseException(status, "HTTP Request Failed. Error Code: " + status);
 		}
 	}
@@ -290,6 +459,8 @@ public class DataSource {
 	/**
 	 * Generates Open Street Map URL request for a given location at general level of details and returns the map data
 	 * @param location name of city or area that the server supports
+	 * Each call returns its own OsmData, changing it does not change
+	 * what later calls return.
 	 * @return OsmData vertices and edges of Open Street Map data
 	 * @throws IOException If there is an error parsing response from server or is an invalid location name
 	 */
@@ -300,6 +471,8 @@ public class DataSource {
 	* Generates Open Street Map URL request for a given location and returns the map data
 	 * @param location name of city or area that the server supports
 	 * @param level level of road detail on requested map
+	 * Each call returns its own OsmData, changing it does not change
+	 * what later calls return.
 	 * @return OsmData vertices and edges of Open Street Map data
 	 * @throws IOException If there is an error parsing response from server or is an invalid location name
 	 */
@@ -314,6 +487,8 @@ public class DataSource {
 	 * @param minLon minimum longitude value for the area requested
 	 * @param maxLat maximum latitude value for the area requested
 	 * @param maxLon maximum longitude value for the area requested
+	 * Each call returns its own OsmData, changing it does not change
+	 * what later calls return.
 	 * @return OsmData vertices and edges of Open Street Map data
 	 * @throws IOException If there is an error parsing response from server or is an invalid location name
 	 */
@@ -329,6 +504,8 @@ public class DataSource {
 	 * @param maxLon maximum longitude value for the area requested
 	 * @param level resolution at which the data is to be retrieved
 	 *
+	 * Each call returns its own OsmData, changing it does not change
+	 * what later calls return.
 	 * @return OsmData vertices and edges of Open Street Map data
 	 * @throws IOException If there is an error parsing response from server or is an invalid location name
 	 */
@@ -338,21 +515,120 @@ public class DataSource {
 	}
 
 
+	/**
+	 *	Requests a URL with the shared client; the entity of the response
+	 *	must be consumed, even on errors, for the connection to go back to
+	 *	the pool.
+	 */
 	private HttpResponse makeRequest(String url) throws ClientProtocolException,
 		IOException {
-		HttpClient client = HttpClientBuilder.create().build();
+		checkOnline(url);
 		HttpGet request = new HttpGet(url);
-		return client.execute(request);
+		return execute(request);
+	}
+
+	// every request goes through here; tests override it to answer
+	// without a server
+	HttpResponse execute(HttpGet request) throws IOException {
+		return getHttpClient().execute(request);
+	}
+
+	// the client is built on first use, and again after it is reconfigured
+	private static synchronized CloseableHttpClient getHttpClient() {
+		if (http_client == null) {
+			PoolingHttpClientConnectionManager pool =
+				new PoolingHttpClientConnectionManager();
+			pool.setMaxTotal(http_max_connections);
+			pool.setDefaultMaxPerRoute(http_max_connections_per_route);
+
+			RequestConfig config = RequestConfig.custom()
+				.setConnectTimeout(http_connect_timeout)
+				.setConnectionRequestTimeout(http_connect_timeout)
+				.setSocketTimeout(http_socket_timeout)
+				.build();
+
+			http_client = HttpClientBuilder.create()
+				.setConnectionManager(pool)
+				.setDefaultRequestConfig(config)
+				.build();
+		}
+		return http_client;
+	}
+
+	private static synchronized void resetHttpClient() {
+		if (http_client == null)
+			return;
+		try {
+			http_client.close();
+		}
+		catch (IOException e) {
+			System.err.println("Error closing the HTTP client: " + e.getMessage());
+		}
+		http_client = null;
+	}
+
+	/**
+	 *	@brief Sets how many connections to the data servers are kept open
+	 *
+	 *	All the requests of DataSource, from every thread, go through one
+	 *	client that keeps connections alive and reuses them. This is best
+	 *	called before any request: requests in progress when the client is
+	 *	reconfigured may fail.
+	 *
+	 *	@param maxConnections maximum number of connections (20 by default)
+	 *	@param maxConnectionsPerRoute maximum number of connections to one
+	 *	server (8 by default)
+	 */
+	public static synchronized void setHttpConnectionLimits(int maxConnections,
+		int maxConnectionsPerRoute) {
+		http_max_connections = maxConnections;
+		http_max_connections_per_route = maxConnectionsPerRoute;
+		resetHttpClient();
+	}
+
+	/**
+	 *	@brief Sets the timeouts of the requests to the data servers
+	 *
+	 *	This is best called before any request: requests in progress when
+	 *	the client is reconfigured may fail.
+	 *
+	 *	@param connectTimeout time to wait for a connection, in milliseconds
+	 *	(10 seconds by default); 0 waits forever
+	 *	@param socketTimeout longest time without receiving data, in
+	 *	milliseconds (2 minutes by default); 0 waits forever
+	 */
+	public static synchronized void setHttpTimeouts(int connectTimeout,
+		int socketTimeout) {
+		http_connect_timeout = connectTimeout;
+		http_socket_timeout = socketTimeout;
+		resetHttpClient();
 	}
 
-	private JSONArray unwrapJSONArray(HttpResponse response, String get) throws IOException {
-		String result = EntityUtils.toString(response.getEntity());
-		JSONObject full = (JSONObject)JSONValue.parse(result);
-		return (JSONArray)full.get(get);
+	/**
+	 *	Reads the records of the JSON array held by the field key of the
+	 *	response, as they arrive, rather than the whole response at once.
+	 */
+	private <T> ArrayList<T> readJSONRecords(HttpResponse response, String key,
+		JSONRecordReader.RecordParser<T> parser) throws IOException {
+		ArrayList<T> records = new ArrayList<>();
+		try (JSONRecordReader<T> reader = openJSONRecords(response, key, parser)) {
+			while (reader.hasNext())
+				records.add(reader.next());
+		}
+		catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		return records;
 	}
 
-	private JSONArray unwrapJSONArray(HttpResponse response) throws IOException {
-		return	unwrapJSONArray(response, "data");
+	private <T> JSONRecordReader<T> openJSONRecords(HttpResponse response,
+		String key, JSONRecordReader.RecordParser<T> parser) throws IOException {
+		HttpEntity entity = response.getEntity();
+		Charset charset = ContentType.getOrDefault(entity).getCharset();
+		Reader in = new InputStreamReader(entity.getContent(),
+			charset != null ? charset : StandardCharsets.UTF_8);
+		return new JSONRecordReader<>(in, key, parser,
+			response instanceof Closeable ? (Closeable) response : null);
 	}
 	private ActorMovieIMDB parseActorMovieIMDB(JSONObject item) {
 		ActorMovieIMDB am_pair = new ActorMovieIMDB();
@@ -388,22 +664,26 @@ public class DataSource {
 		int status = response.getStatusLine().getStatusCode();
 
 		if (status == 200) 	{
-			JSONArray json = unwrapJSONArray(response, "data");
-
-			List<ActorMovieIMDB> am_list =
-				new ArrayList<ActorMovieIMDB>(json.size());
-			for (int i = 0; i < json.size(); i++) {
-				JSONObject item = (JSONObject)json.get(i);
-
-				ActorMovieIMDB am_pair = parseActorMovieIMDB(item);
-				am_list.add(am_pair);
-			}
-			return am_list;
+			return readJSONRecords(response, "data", this::parseActorMovieIMDB);
 		}
 		else {
+			EntityUtils.consumeQuietly(response.getEntity());
 			throw new HttpResponseException(status, "HTTP Request Failed. Error Code: " + status);
 		}
 	}
+	// parse a record of the second IMDB dataset -- for internal use only
+	private ActorMovieIMDB parseActorMovieIMDB2(JSONObject item) {
+		ActorMovieIMDB am_pair = parseActorMovieIMDB(item);
+		am_pair.setMovieRating(((Number) item.get("rating")).doubleValue());
+		JSONArray genre = (JSONArray) item.get("genres");
+
+		Vector<String> v = new Vector<String>();
+		for (int k = 0; k < genre.size(); k++)
+			v.add((String)genre.get(k));
+		am_pair.setGenres(v);
+		return am_pair;
+	}
+
 	/**
 	 *  This helper function provides access to a second curated IMDB
 	 *	dataset; the data is retrieved, formatted into a list of
@@ -421,36 +701,57 @@ public class DataSource {
 	public List<ActorMovieIMDB> getActorMovieIMDBData2 ()
 	throws IOException {
 
-		String url = "https://bridgesdata.herokuapp.com/api/imdb2";
+		String url = IMDB2_URL;
 		HttpResponse response = makeRequest(url);
 
 		int status = response.getStatusLine().getStatusCode();
 
 		if (status == 200) 	{
-			JSONArray json = unwrapJSONArray(response);
-
-			List<ActorMovieIMDB> am_list =
-				new ArrayList<ActorMovieIMDB>(json.size());
-			for (int i = 0; i < json.size(); i++) {
-				JSONObject item = (JSONObject)json.get(i);
-
-				ActorMovieIMDB am_pair = parseActorMovieIMDB(item);
-				am_pair.setMovieRating(((Number) item.get("rating")).doubleValue());
-				JSONArray genre = (JSONArray) item.get("genres");
-
-				Vector<String> v = new Vector<String>();
-				for (int k = 0; k < genre.size(); k++)
-					v.add((String)genre.get(k));
-				am_pair.setGenres(v);
-				am_list.add(am_pair);
-			}
-			return am_list;
+			return readJSONRecords(response, "data", this::parseActorMovieIMDB2);
 		}
 		else {
+			EntityUtils.consumeQuietly(response.getEntity());
 			throw new HttpResponseException(status, "HTTP Request Failed. Error Code: " + status);
 		}
 	}
 
+	// parse a GutenbergBook -- for internal use only
+	private GutenbergBook parseGutenbergBook(JSONObject item) {
+		JSONObject author = (JSONObject)item.get("author");
+		JSONObject metrics = (JSONObject)item.get("metrics");
+		JSONArray lang = (JSONArray) item.get("languages");
+		JSONArray genres = (JSONArray)item.get("genres");
+		JSONArray subjects = (JSONArray)item.get("subjects");
+		Vector<String> gb_tmp = new Vector<String>(100);;
+
+		GutenbergBook gb = new GutenbergBook();
+
+		gb.setAuthorName ((String) author.get("name"));
+		gb.setAuthorBirth(((Number) (author.get("birth"))).intValue());
+		gb.setAuthorDeath(((Number) (author.get("death"))).intValue());
+		gb.setTitle((String) item.get("title"));
+		gb.setURL((String) item.get("url"));
+		gb.setNumDownloads(((Number) item.get("downloads")).intValue());
+		for (int k = 0; k < lang.size(); k++) {
+			gb_tmp.add((String)lang.get(k));
+		}
+		gb.setLanguages(gb_tmp);
+		gb_tmp.clear();
+
+		gb.setNumChars(((Number) (metrics.get("characters"))).intValue());
+		gb.setNumWords(((Number) (metrics.get("words"))).intValue());
+		gb.setNumSentences(((Number) (metrics.get("sentences"))).intValue());
+		gb.setNumDifficultWords(((Number) (metrics.get("difficultWords"))).intValue());
+		for (int k = 0; k < genres.size(); k++)
+			gb_tmp.add((String)genres.get(k));
+		gb.setGenres(gb_tmp);
+		gb_tmp.clear();
+		for (int k = 0; k < subjects.size(); k++)
+			gb_tmp.add((String)subjects.get(k));
+		gb.setSubjects(gb_tmp);
+		return gb;
+	}
+
 	/**
 	 *  This helper function provides access to the meta-data of the Gutenberg book
 	 *	collection (about 1000 books); the data is retrieved, formatted into a
@@ -470,60 +771,35 @@ public class DataSource {
 	public List<GutenbergBook> getGutenbergBookMetaData ()
 	throws IOException {
 
-		String url = "https://bridgesdata.herokuapp.com/api/books";
+		String url = BOOKS_URL;
 		HttpResponse response = makeRequest(url);
 
 		int status = response.getStatusLine().getStatusCode();
 
 		if (status == 200) 	{
-			JSONArray json = unwrapJSONArray(response);
-
-			List<GutenbergBook> gb_list =
-				new ArrayList<GutenbergBook>(json.size());
-			for (int i = 0; i < json.size(); i++) {
-				JSONObject item = (JSONObject)json.get(i);
-				JSONObject author = (JSONObject)item.get("author");
-				JSONObject metrics = (JSONObject)item.get("metrics");
-				JSONArray lang = (JSONArray) item.get("languages");
-				JSONArray genres = (JSONArray)item.get("genres");
-				JSONArray subjects = (JSONArray)item.get("subjects");
-				Vector<String> gb_tmp = new Vector<String>(100);;
-
-				GutenbergBook gb = new GutenbergBook();
-
-				gb.setAuthorName ((String) author.get("name"));
-				gb.setAuthorBirth(((Number) (author.get("birth"))).intValue());
-				gb.setAuthorDeath(((Number) (author.get("death"))).intValue());
-				gb.setTitle((String) item.get("title"));
-				gb.setURL((String) item.get("url"));
-				gb.setNumDownloads(((Number) item.get("downloads")).intValue());
-				for (int k = 0; k < lang.size(); k++) {
-					gb_tmp.add((String)lang.get(k));
-				}
-				gb.setLanguages(gb_tmp);
-				gb_tmp.clear();
-
-				gb.setNumChars(((Number) (metrics.get("characters"))).intValue());
-				gb.setNumWords(((Number) (metrics.get("words"))).intValue());
-				gb.setNumSentences(((Number) (metrics.get("sentences"))).intValue());
-				gb.setNumDifficultWords(((Number) (metrics.get("difficultWords"))).intValue());
-				for (int k = 0; k < genres.size(); k++)
-					gb_tmp.add((String)genres.get(k));
-				gb.setGenres(gb_tmp);
-				gb_tmp.clear();
-				for (int k = 0; k < subjects.size(); k++)
-					gb_tmp.add((String)subjects.get(k));
-				gb.setSubjects(gb_tmp);
-				gb_tmp.clear();
-
-				gb_list.add(gb);
-			}
-			return gb_list;
+			return readJSONRecords(response, "data", this::parseGutenbergBook);
 		}
 		else {
+			EntityUtils.consumeQuietly(response.getEntity());
 			throw new HttpResponseException(status, "HTTP Request Failed. Error Code: " + status);
 		}
 	}
+	// parse a Game -- for internal use only
+	private Game parseGame(JSONObject item) {
+		Game game = new Game();
+
+		game.setTitle((String) item.get("game"));
+		game.setPlatformType((String) item.get("platform"));
+		game.setRating(((Number) item.get("rating")).doubleValue());
+		JSONArray genre = (JSONArray) item.get("genre");
+
+		Vector<String> v = new Vector<String>();
+		for (int k = 0; k < genre.size(); k++)
+			v.add((String)genre.get(k));
+		game.setGenre(v);
+		return game;
+	}
+
 	/**
 	 *  This helper function provides access to the meta-data of the video game
 	 *	collection.
@@ -545,31 +821,10 @@ public class DataSource {
 		int status = response.getStatusLine().getStatusCode();
 
 		if (status == 200) 	{
-			JSONArray json = unwrapJSONArray(response);
-
-			ArrayList<Game> game_list =
-				new ArrayList<Game>(json.size());
-			for (int i = 0; i < json.size(); i++) {
-				JSONObject item = (JSONObject)json.get(i);
-
-				Game game = new Game();
-
-				game.setTitle((String) item.get("game"));
-				game.setPlatformType((String) item.get("platform"));
-				game.setRating(((Number) item.get("rating")).doubleValue());
-				JSONArray genre = (JSONArray) item.get("genre");
-
-				Vector<String> v = new Vector<String>();
-				for (int k = 0; k < genre.size(); k++)
-					v.add((String)genre.get(k));
-				game.setGenre(v);
-
-				game_list.add(game);
-
-			}
-			return game_list;
+			return readJSONRecords(response, "data", this::parseGame);
 		}
 		else {
+			EntityUtils.consumeQuietly(response.getEntity());
 			throw new HttpResponseException(status, "HTTP Request Failed. Error Code: " + status);
 		}
 	}
@@ -601,26 +856,16 @@ public class DataSource {
 	 */
 	public ArrayList<Song> getSongData() throws IOException {
 
-		String url = "https://bridgesdata.herokuapp.com/api/songs";
+		String url = SONGS_URL;
 		HttpResponse response = makeRequest(url);
 
 		int status = response.getStatusLine().getStatusCode();
 
 		if (status == 200) 	{
-			JSONArray json = unwrapJSONArray(response);
-
-			ArrayList<Song> song_list =
-				new ArrayList<Song>(json.size());
-			for (int i = 0; i < json.size(); i++) {
-				JSONObject item = (JSONObject)json.get(i);
-				Song song = parseSong(item);
-
-				song_list.add(song);
-
-			}
-			return song_list;
+			return readJSONRecords(response, "data", this::parseSong);
 		}
 		else {
+			EntityUtils.consumeQuietly(response.getEntity());
 			throw new HttpResponseException(status, "HTTP Request Failed. Error Code: " + status);
 		}
 	}
@@ -632,6 +877,12 @@ public class DataSource {
 	 *	and to look at the data, refer to <p>
 	 *	&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;https://bridgesdata.herokuapp.com/api/datasets/songs <p>
 	 *
+	 *  Songs are cached by title and artist, and a cached song is used
+	 *  without asking the server again for the time to live of "songs"
+	 *  (see setCacheTTL, a day by default), so changes made to a song on
+	 *  the server are only seen once that time has passed. Use
+	 *  setCacheTTL("songs", 0) to always get the song from the server.
+	 *
 	 *  @param songTitle  title of song (string)
 	 *  @param artistName  name of artist (string), empty string for unspecified
 	 *  @throws Exception if the request fails
@@ -639,6 +890,19 @@ public class DataSource {
 	 *  @return a Song object.
 	 */
 	public Song getSong(String songTitle, String artistName)
+	throws IOException {
+		String url = getSongURL(songTitle, artistName);
+
+		// Get the song, from the cache if it was already requested
+		String result = getUnhashedDataSetJSON("songs", url);
+
+		JSONObject songJSON = (JSONObject)JSONValue.parse(result);
+		Song song = parseSong(songJSON);
+
+		return song;
+	}
+
+	private String getSongURL(String songTitle, String artistName)
 	throws IOException {
 		String url = "https://bridgesdata.herokuapp.com/api/songs/find/";
 
@@ -654,23 +918,9 @@ public class DataSource {
 			url += "?artistName=" +
 				URLEncoder.encode(artistName, StandardCharsets.UTF_8.name());
 		}
-
-		// Create and execute the HTTP request
-		HttpResponse response = makeRequest(url);
-
-		int status = response.getStatusLine().getStatusCode();
-		String result = EntityUtils.toString(response.getEntity());
-
-		if (status == 200) 	{
-			JSONObject songJSON = (JSONObject)JSONValue.parse(result);
-			Song song = parseSong(songJSON);
-
-			return song;
-		}
-		else {
-			throw new HttpResponseException(status, "HTTP Request Failed. Error Code: " + status + ". Message: " + result);
-		}
+		return url;
 	}
+
 	/**
 	 *  These helper functions provides access to a particular song.
 	 *
@@ -679,6 +929,8 @@ public class DataSource {
 	 *	and to look at the data, refer to <p>
 	 *	&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;https://bridgesdata.herokuapp.com/api/datasets/songs <p>
 	 *
+	 *  Songs are cached like with getSong(String, String).
+	 *
 	 *  @param songTitle  title of song (string)
 	 *  @throws Exception if the request fails
 	 *
@@ -689,6 +941,182 @@ public class DataSource {
 	    return getSong(songTitle, "");
 	}
 
+	/**
+	 *  @brief A song to look up with getSongs
+	 */
+	public static class SongQuery {
+		private final String title;
+		private final String artist;
+
+		/**
+		 *  @param title  title of song (string)
+		 *  @param artist  name of artist (string), empty string for unspecified
+		 */
+		public SongQuery(String title, String artist) {
+			this.title = title;
+			this.artist = artist == null ? "" : artist;
+		}
+
+		/**
+		 *  @param title  title of song (string)
+		 */
+		public SongQuery(String title) {
+			this(title, "");
+		}
+
+		public String getTitle() {
+			return title;
+		}
+
+		public String getArtist() {
+			return artist;
+		}
+
+		@Override
+		public String toString() {
+			return artist.isEmpty() ? title : title + " by " + artist;
+		}
+	}
+
+	/**
+	 *  @brief Gets many songs at once, see getSongs(List, int)
+	 *
+	 *  At most 8 songs are requested at the same time.
+	 *
+	 *  @param queries  songs to get
+	 *  @throws IOException if any of the songs could not be obtained
+	 *  @return the songs, in the order of the queries
+	 */
+	public List<Song> getSongs(List<SongQuery> queries) throws IOException {
+		return getSongs(queries, SONG_BATCH_CONCURRENCY);
+	}
+
+	/**
+	 *  @brief Gets many songs at once
+	 *
+	 *  The songs are requested in parallel, at most concurrency at a time,
+	 *  by the calling thread and the executor of the asynchronous getters
+	 *  (see setAsyncExecutor). Identical queries are requested once, each
+	 *  getting its own Song, and songs already requested are read from the
+	 *  cache (like other datasets, see setCacheTTL with "songs"). Requests
+	 *  failing with a network error or a server error (HTTP 5xx or 429)
+	 *  are retried twice, after 0.5s then 1s.
+	 *
+	 *  @param queries  songs to get
+	 *  @param concurrency  maximum number of songs requested at the same
+	 *		time
+	 *  @throws IOException if any of the songs could not be obtained; the
+	 *		errors of the other songs are attached as suppressed exceptions
+	 *  @return the songs, in the order of the queries
+	 */
+	public List<Song> getSongs(List<SongQuery> queries, int concurrency)
+	throws IOException {
+		// identical queries are requested once
+		Map<String, Integer> requested = new HashMap<>();
+		List<SongQuery> requests = new ArrayList<>();
+		int[] request_of = new int[queries.size()];
+		for (int i = 0; i < queries.size(); ++i) {
+			SongQuery query = queries.get(i);
+			String url = getSongURL(query.getTitle(), query.getArtist());
+			Integer request = requested.get(url);
+			if (request == null) {
+				request = requests.size();
+				requested.put(url, request);
+				requests.add(query);
+			}
+			request_of[i] = request;
+		}
+
+		List<CompletableFuture<Song>> songs = new ArrayList<>(requests.size());
+		for (int r = 0; r < requests.size(); ++r)
+			songs.add(new CompletableFuture<>());
+		AtomicInteger next = new AtomicInteger();
+		Runnable worker = () -> {
+			int r;
+			while ((r = next.getAndIncrement()) < requests.size()) {
+				try {
+					songs.get(r).complete(getSongWithRetries(requests.get(r)));
+				}
+				catch (Throwable e) {
+					songs.get(r).completeExceptionally(e);
+				}
+			}
+		};
+		// the calling thread requests songs too, so the batch completes
+		// even if the executor is busy, or is running the caller itself
+		for (int w = 1; w < Math.min(concurrency, requests.size()); ++w) {
+			try {
+				getAsyncExecutor().execute(worker);
+			}
+			catch (RejectedExecutionException e) {
+				break;
+			}
+		}
+		worker.run();
+
+		Song[] results = new Song[requests.size()];
+		IOException failure = null;
+		for (int r = 0; r < requests.size(); ++r) {
+			try {
+				results[r] = songs.get(r).get();
+			}
+			catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				IOException error = cause instanceof IOException ? (IOException) cause
+					: new IOException(cause);
+				if (failure == null)
+					failure = error;
+				else
+					failure.addSuppressed(error);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				next.set(requests.size());
+				throw new InterruptedIOException("Interrupted while getting songs");
+			}
+		}
+
+		List<Song> ret = new ArrayList<>(queries.size());
+		boolean[] handed_out = new boolean[requests.size()];
+		int failed = 0;
+		for (int r : request_of) {
+			Song song = results[r];
+			if (song == null)
+				failed++;
+			else if (handed_out[r])
+				song = new Song(song.getArtist(), song.getSongTitle(), song.getAlbumTitle(),
+						song.getLyrics(), song.getReleaseDate());
+			handed_out[r] = true;
+			ret.add(song);
+		}
+		if (failure != null)
+			throw new IOException("Could not get " + failed + " of " + queries.size()
+				+ " songs: " + failure.getMessage(), failure);
+		return ret;
+	}
+
+	private Song getSongWithRetries(SongQuery query) throws IOException {
+		for (int attempt = 0; ; ++attempt) {
+			try {
+				return getSong(query.getTitle(), query.getArtist());
+			}
+			catch (IOException e) {
+				boolean transient_error = !offline && (!(e instanceof HttpResponseException)
+					|| ((HttpResponseException) e).getStatusCode() >= 500
+					|| ((HttpResponseException) e).getStatusCode() == 429);
+				if (!transient_error || attempt == SONG_RETRIES)
+					throw e;
+			}
+			try {
+				Thread.sleep(SONG_RETRY_DELAY << attempt);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while getting " + query);
+			}
+		}
+	}
+
     
 	/**
 	 * @brief Generates Open Street Map URL request for a given location and returns the map data
@@ -726,24 +1154,190 @@ public class DataSource {
 	private OsmData getOsmDataDS(double minLat, double minLon,
 		double maxLat, double maxLon, String level) throws IOException {
 
+		if (tiled_osm)
+			return getTiledOsmData(minLat, minLon, maxLat, maxLon, level);
+
 		// URL to request map
-		String osm_url = getOSMBaseURL() +
-			"coords?minLon=" + URLEncoder.encode(Double.toString(minLon), StandardCharsets.UTF_8.name()) +
-			"&minLat=" + URLEncoder.encode(Double.toString(minLat), StandardCharsets.UTF_8.name()) +
-			"&maxLon=" + URLEncoder.encode(Double.toString(maxLon), StandardCharsets.UTF_8.name()) +
-			"&maxLat=" + URLEncoder.encode(Double.toString(maxLat), StandardCharsets.UTF_8.name()) +
-			"&level="  + URLEncoder.encode(level, StandardCharsets.UTF_8.name());
+		String osm_url = getOsmURL("coords", minLat, minLon, maxLat, maxLon, level);
 
 		// URL to get hash code
-		String hash_url = getOSMBaseURL() +
-			"hash?minLon=" + URLEncoder.encode(Double.toString(minLon), StandardCharsets.UTF_8.name()) +
+		String hash_url = getOsmURL("hash", minLat, minLon, maxLat, maxLon, level);
+
+		return (parseOSMData(osm_url, hash_url));
+	}
+
+	private String getOsmURL(String endpoint, double minLat, double minLon,
+		double maxLat, double maxLon, String level) throws IOException {
+		return getOSMBaseURL() + endpoint +
+			"?minLon=" + URLEncoder.encode(Double.toString(minLon), StandardCharsets.UTF_8.name()) +
 			"&minLat=" + URLEncoder.encode(Double.toString(minLat), StandardCharsets.UTF_8.name()) +
 			"&maxLon=" + URLEncoder.encode(Double.toString(maxLon), StandardCharsets.UTF_8.name()) +
 			"&maxLat=" + URLEncoder.encode(Double.toString(maxLat), StandardCharsets.UTF_8.name()) +
 			"&level="  + URLEncoder.encode(level, StandardCharsets.UTF_8.name());
+	}
 
+	/**
+	 *	@brief Turns tiled map retrieval on or off (off by default)
+	 *
+	 *	When it is on, getOsmData with a bounding box gets the region as
+	 *	square tiles of 0.05 degrees aligned on multiples of their size.
+	 *	Tiles are cached like other datasets, and the returned map is
+	 *	stitched from them, so requests for growing or overlapping boxes
+	 *	only download the tiles they do not share. Vertices are merged by
+	 *	node id, and vertices outside the box are dropped.
+	 *
+	 *	Edges are resolved once the vertices of all the tiles are merged,
+	 *	so a road segment whose ends are returned with different tiles is
+	 *	kept. So are the segments crossing the edge of the box, along with
+	 *	their end outside of it.
+	 *
+	 *	@param flag whether to get maps by tiles
+	 */
+	public static void setTiledOsm(boolean flag) {
+		tiled_osm = flag;
+	}
 
-		return (parseOSMData(osm_url, hash_url));
+	// stitches the tiles covering the box: vertices are merged by node
+	// id, then edges with an end in the box are resolved against the
+	// vertices of all the tiles and merged by their ends
+	private OsmData getTiledOsmData(double minLat, double minLon,
+		double maxLat, double maxLon, String level) throws IOException {
+		long tx0 = (long) Math.floor(minLon / OSM_TILE_SIZE);
+		long tx1 = Math.max(tx0, (long) Math.ceil(maxLon / OSM_TILE_SIZE) - 1);
+		long ty0 = (long) Math.floor(minLat / OSM_TILE_SIZE);
+		long ty1 = Math.max(ty0, (long) Math.ceil(maxLat / OSM_TILE_SIZE) - 1);
+
+		List<OsmColumns> tiles = new ArrayList<>();
+		for (long ty = ty0; ty <= ty1; ++ty)
+			for (long tx = tx0; tx <= tx1; ++tx)
+				tiles.add(getOsmTile(level, tx, ty));
+
+		// every node of the tiles, as its tile and its index in the tile
+		int nb_nodes = 0;
+		for (OsmColumns tile : tiles)
+			nb_nodes += tile.ids.length;
+		LongIntMap node_map = new LongIntMap(nb_nodes, -1);
+		int[] node_tile = new int[nb_nodes];
+		int[] node_index = new int[nb_nodes];
+		int n = 0;
+		for (int k = 0; k < tiles.size(); ++k) {
+			OsmColumns tile = tiles.get(k);
+			for (int i = 0; i < tile.ids.length; ++i) {
+				if (node_map.get(tile.ids[i]) >= 0)
+					continue;
+				node_map.put(tile.ids[i], n);
+				node_tile[n] = k;
+				node_index[n] = i;
+				n++;
+			}
+		}
+
+		// the vertices in the box come first, in the order of the tiles
+		int nb_vertices = 0;
+		double[] lat = new double[1024];
+		double[] lon = new double[1024];
+		LongIntMap vert_map = new LongIntMap(1024, -1);
+		for (int node = 0; node < n; ++node) {
+			OsmColumns tile = tiles.get(node_tile[node]);
+			int i = node_index[node];
+			if (tile.lat[i] < minLat || tile.lat[i] > maxLat
+				|| tile.lon[i] < minLon || tile.lon[i] > maxLon)
+				continue;
+			if (nb_vertices == lat.length) {
+				lat = Arrays.copyOf(lat, 2 * nb_vertices);
+				lon = Arrays.copyOf(lon, 2 * nb_vertices);
+			}
+			vert_map.put(tile.ids[i], nb_vertices);
+			lat[nb_vertices] = tile.lat[i];
+			lon[nb_vertices] = tile.lon[i];
+			nb_vertices++;
+		}
+		int nb_inside = nb_vertices;
+
+		int nb_edges = 0;
+		int[] from = new int[1024];
+		int[] to = new int[1024];
+		double[] dist = new double[1024];
+		LongIntMap edge_map = new LongIntMap(1024, -1);
+		for (OsmColumns tile : tiles) {
+			for (int j = 0; j < tile.from_ids.length; ++j) {
+				long from_id = tile.from_ids[j], to_id = tile.to_ids[j];
+				int f = vert_map.get(from_id);
+				int t = vert_map.get(to_id);
+				// an edge needs an end in the box, and both ends in a tile
+				if ((f < 0 || f >= nb_inside) && (t < 0 || t >= nb_inside))
+					continue;
+				if ((f < 0 && node_map.get(from_id) < 0)
+					|| (t < 0 && node_map.get(to_id) < 0))
+					continue;
+				for (int end = 0; end < 2; ++end) {
+					long id = end == 0 ? from_id : to_id;
+					if (vert_map.get(id) >= 0)
+						continue;
+					int node = node_map.get(id);
+					OsmColumns owner = tiles.get(node_tile[node]);
+					if (nb_vertices == lat.length) {
+						lat = Arrays.copyOf(lat, 2 * nb_vertices);
+						lon = Arrays.copyOf(lon, 2 * nb_vertices);
+					}
+					vert_map.put(id, nb_vertices);
+					lat[nb_vertices] = owner.lat[node_index[node]];
+					lon[nb_vertices] = owner.lon[node_index[node]];
+					nb_vertices++;
+				}
+				f = vert_map.get(from_id);
+				t = vert_map.get(to_id);
+				long key = ((long) f << 32) | t;
+				if (edge_map.get(key) >= 0)
+					continue;
+				if (nb_edges == from.length) {
+					from = Arrays.copyOf(from, 2 * nb_edges);
+					to = Arrays.copyOf(to, 2 * nb_edges);
+					dist = Arrays.copyOf(dist, 2 * nb_edges);
+				}
+				edge_map.put(key, nb_edges);
+				from[nb_edges] = f;
+				to[nb_edges] = t;
+				dist[nb_edges] = tile.dist[j];
+				nb_edges++;
+			}
+		}
+
+		String name = tiles.get(0).name;
+		return new OsmData(Arrays.copyOf(lat, nb_vertices), Arrays.copyOf(lon, nb_vertices),
+				Arrays.copyOf(from, nb_edges), Arrays.copyOf(to, nb_edges),
+				Arrays.copyOf(dist, nb_edges), name);
+	}
+
+	private OsmColumns getOsmTile(String level, long tx, long ty) throws IOException {
+		double minLat = ty * OSM_TILE_SIZE, minLon = tx * OSM_TILE_SIZE;
+		double maxLat = (ty + 1) * OSM_TILE_SIZE, maxLon = (tx + 1) * OSM_TILE_SIZE;
+		String osm_url = getOsmURL("coords", minLat, minLon, maxLat, maxLon, level);
+		String hash_url = getOsmURL("hash", minLat, minLon, maxLat, maxLon, level);
+
+		String hash = resolveDataSetHash("osm", osm_url, hash_url);
+		Object cached = hash == null ? null : objects.get(objectKey("osm-tile", hash));
+		if (cached instanceof OsmColumns)
+			return (OsmColumns) cached;
+
+		DataSet osm_data = getDataSet(osm_url, hash_url, hash);
+		OsmColumns tile;
+		try {
+			tile = readOsmColumns(new StringReader(osm_data.json));
+		}
+		catch (IOException | IllegalStateException | NumberFormatException e) {
+			throw new JsonParseException("Malformed JSON: Unable to Parse");
+		}
+		if (osm_data.hash != null)
+			objects.put(objectKey("osm-tile", osm_data.hash), tile);
+		return tile;
+	}
+
+	// the key of a parsed dataset in the object cache: the dataset is
+	// only looked up once its hash is known to be fresh, and a dataset
+	// that changed gets a new key
+	private static String objectKey(String kind, String hash) {
+		return kind + ":" + hash;
 	}
 
 	/**
@@ -760,39 +1354,257 @@ public class DataSource {
 	private OsmData parseOSMData(String osm_url, String hash_url)
 	throws IOException {
 
-		String osm_json = getDataSetJSON(osm_url, hash_url);
+		// the cached maps are copied, callers may change theirs
+		String hash = resolveDataSetHash("osm", osm_url, hash_url);
+		if (hash != null) {
+			Object cached = objects.get(objectKey("osm", hash));
+			if (cached instanceof OsmData)
+				return new OsmData((OsmData) cached);
+
+			// a binary snapshot of the parsed map saves parsing the JSON again
+			OsmData snapshot = readOsmSnapshot(hash + OSM_SNAPSHOT_SUFFIX);
+			if (snapshot != null) {
+				objects.put(objectKey("osm", hash), snapshot);
+				return new OsmData(snapshot);
+			}
+		}
+
+		DataSet osm_data = getDataSet(osm_url, hash_url, hash);
 
 		// parse that data
-		Gson gson = new Gson();
-		OsmServerResponse respObject;
+		OsmData ret_data;
 		try {
-			respObject = gson.fromJson(osm_json, OsmServerResponse.class);
+			ret_data = parseOsmJson(new StringReader(osm_data.json));
 		}
-		catch (Exception e) {
+		catch (IOException | IllegalStateException | NumberFormatException e) {
 			throw new JsonParseException("Malformed JSON: Unable to Parse");
 		}
 
-		// vertex list
-		OsmVertex[] vertices = new OsmVertex[respObject.nodes.length];
-		HashMap<Double, Integer> vert_map = new HashMap<>();
-		for (int i = 0; i < vertices.length; ++i) {
-			Double[] node = respObject.nodes[i];
-			vert_map.put(node[0], i);
-			vertices[i] = new OsmVertex(node[1], node[2]);
+		if (osm_data.hash != null) {
+			writeOsmSnapshot(osm_data.hash + OSM_SNAPSHOT_SUFFIX, ret_data);
+			objects.put(objectKey("osm", osm_data.hash), ret_data);
 		}
+		return new OsmData(ret_data);
+	}
 
-		// edge list
-		OsmEdge[] edges = new OsmEdge[respObject.edges.length];
-		for (int i = 0; i < edges.length; ++i) {
-			Double[] edge = respObject.edges[i];
-			Double id_from = edge[0];
-			Double id_to = edge[1];
-			Double dist = edge[2];
-			edges[i] = new OsmEdge(vert_map.get(id_from), vert_map.get(id_to), dist);
+	/**
+	 * @brief Parses the JSON of a map into columns
+	 *
+	 * The map is {"nodes": [[id, lat, lon], ...], "edges": [[from, to,
+	 * dist], ...], "meta": {"name": ...}}. Node ids are read as longs and
+	 * mapped to vertex indices without boxing. Edges may come before the
+	 * nodes, their ends are resolved once the whole map is read.
+	 */
+	private OsmData parseOsmJson(Reader json) throws IOException {
+		OsmColumns map = readOsmColumns(json);
+
+		LongIntMap vert_map = new LongIntMap(map.ids.length, -1);
+		for (int i = 0; i < map.ids.length; ++i)
+			vert_map.put(map.ids[i], i);
+
+		int[] from = new int[map.from_ids.length];
+		int[] to = new int[map.to_ids.length];
+		for (int i = 0; i < from.length; ++i) {
+			from[i] = vert_map.get(map.from_ids[i]);
+			to[i] = vert_map.get(map.to_ids[i]);
+			if (from[i] < 0 || to[i] < 0)
+				throw new JsonParseException("Malformed JSON: edge to unknown node "
+					+ (from[i] < 0 ? map.from_ids[i] : map.to_ids[i]));
 		}
 
-		OsmData ret_data = new OsmData(vertices, edges, respObject.meta.name);
-		return ret_data;
+		return new OsmData(map.lat, map.lon, from, to, map.dist, map.name);
+	}
+
+	// a map as read from its JSON, edges referring to node ids
+	private static class OsmColumns {
+		long[] ids;
+		double[] lat, lon;
+		long[] from_ids, to_ids;
+		double[] dist;
+		String name;
+	}
+
+	private static OsmColumns readOsmColumns(Reader json) throws IOException {
+		JsonReader reader = new JsonReader(json);
+
+		int nb_vertices = 0;
+		long[] ids = new long[1024];
+		double[] lat = new double[1024];
+		double[] lon = new double[1024];
+
+		int nb_edges = 0;
+		long[] from_ids = new long[1024];
+		long[] to_ids = new long[1024];
+		double[] dist = new double[1024];
+
+		String name = null;
+
+		reader.beginObject();
+		while (reader.hasNext()) {
+			switch (reader.nextName()) {
+				case "nodes":
+					reader.beginArray();
+					while (reader.hasNext()) {
+						if (nb_vertices == ids.length) {
+							ids = Arrays.copyOf(ids, 2 * nb_vertices);
+							lat = Arrays.copyOf(lat, 2 * nb_vertices);
+							lon = Arrays.copyOf(lon, 2 * nb_vertices);
+						}
+						reader.beginArray();
+						ids[nb_vertices] = reader.nextLong();
+						lat[nb_vertices] = reader.nextDouble();
+						lon[nb_vertices] = reader.nextDouble();
+						while (reader.hasNext())
+							reader.skipValue();
+						reader.endArray();
+						nb_vertices++;
+					}
+					reader.endArray();
+					break;
+				case "edges":
+					reader.beginArray();
+					while (reader.hasNext()) {
+						if (nb_edges == from_ids.length) {
+							from_ids = Arrays.copyOf(from_ids, 2 * nb_edges);
+							to_ids = Arrays.copyOf(to_ids, 2 * nb_edges);
+							dist = Arrays.copyOf(dist, 2 * nb_edges);
+						}
+						reader.beginArray();
+						from_ids[nb_edges] = reader.nextLong();
+						to_ids[nb_edges] = reader.nextLong();
+						dist[nb_edges] = reader.nextDouble();
+						while (reader.hasNext())
+							reader.skipValue();
+						reader.endArray();
+						nb_edges++;
+					}
+					reader.endArray();
+					break;
+				case "meta":
+					reader.beginObject();
+					while (reader.hasNext()) {
+						if (reader.nextName().equals("name") && reader.peek() != JsonToken.NULL)
+							name = reader.nextString();
+						else
+							reader.skipValue();
+					}
+					reader.endObject();
+					break;
+				default:
+					reader.skipValue();
+			}
+		}
+		reader.endObject();
+
+		OsmColumns map = new OsmColumns();
+		map.ids = Arrays.copyOf(ids, nb_vertices);
+		map.lat = Arrays.copyOf(lat, nb_vertices);
+		map.lon = Arrays.copyOf(lon, nb_vertices);
+		map.from_ids = Arrays.copyOf(from_ids, nb_edges);
+		map.to_ids = Arrays.copyOf(to_ids, nb_edges);
+		map.dist = Arrays.copyOf(dist, nb_edges);
+		map.name = name;
+		return map;
+	}
+
+	/**
+	 * @brief Stores a binary snapshot of a map in the cache
+	 *
+	 * The snapshot holds the name, the vertex coordinates and the edges
+	 * as flat arrays of primitives, so it can be loaded without parsing.
+	 * Failing to store it is not an error.
+	 */
+	private void writeOsmSnapshot(String docName, OsmData data) {
+		int nb_vertices = data.getVertexCount();
+		int nb_edges = data.getEdgeCount();
+		byte[] name = data.getName() == null ? null
+			: data.getName().getBytes(StandardCharsets.UTF_8);
+
+		ByteBuffer buf = ByteBuffer.allocate(5 * 4 + (name == null ? 0 : name.length)
+				+ 16 * nb_vertices + 16 * nb_edges);
+		buf.putInt(OSM_SNAPSHOT_MAGIC);
+		buf.putInt(OSM_SNAPSHOT_VERSION);
+		buf.putInt(name == null ? -1 : name.length);
+		if (name != null)
+			buf.put(name);
+		buf.putInt(nb_vertices);
+		buf.putInt(nb_edges);
+		for (int i = 0; i < nb_vertices; ++i)
+			buf.putDouble(data.getLatitude(i));
+		for (int i = 0; i < nb_vertices; ++i)
+			buf.putDouble(data.getLongitude(i));
+		for (int j = 0; j < nb_edges; ++j)
+			buf.putInt(data.getEdgeSource(j));
+		for (int j = 0; j < nb_edges; ++j)
+			buf.putInt(data.getEdgeDestination(j));
+		for (int j = 0; j < nb_edges; ++j)
+			buf.putDouble(data.getEdgeDistance(j));
+		buf.flip();
+
+		try {
+			lru.putBytes(docName, buf);
+		}
+		catch (IOException e) {
+			System.err.println("Could not cache the map snapshot: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * @brief Loads a binary snapshot of a map from the cache
+	 *
+	 * @return the map, or null if there is no valid snapshot
+	 */
+	private OsmData readOsmSnapshot(String docName) throws IOException {
+		if (!lru.inCache(docName))
+			return null;
+		ByteBuffer buf = lru.mapDoc(docName);
+		if (buf == null)
+			return null;
+
+		try {
+			if (buf.getInt() != OSM_SNAPSHOT_MAGIC || buf.getInt() != OSM_SNAPSHOT_VERSION)
+				return null;
+			int name_length = buf.getInt();
+			String name = null;
+			if (name_length >= 0) {
+				byte[] name_bytes = new byte[name_length];
+				buf.get(name_bytes);
+				name = new String(name_bytes, StandardCharsets.UTF_8);
+			}
+			int nb_vertices = buf.getInt();
+			int nb_edges = buf.getInt();
+			// checked before allocating the columns
+			if (nb_vertices < 0 || nb_edges < 0
+				|| buf.remaining() != 16L * nb_vertices + 16L * nb_edges) {
+				if (debug)
+					System.err.println("Ignoring truncated map snapshot " + docName);
+				return null;
+			}
+
+			double[] lat = new double[nb_vertices];
+			double[] lon = new double[nb_vertices];
+			buf.asDoubleBuffer().get(lat);
+			buf.position(buf.position() + 8 * nb_vertices);
+			buf.asDoubleBuffer().get(lon);
+			buf.position(buf.position() + 8 * nb_vertices);
+
+			int[] from = new int[nb_edges];
+			int[] to = new int[nb_edges];
+			double[] dist = new double[nb_edges];
+			buf.asIntBuffer().get(from);
+			buf.position(buf.position() + 4 * nb_edges);
+			buf.asIntBuffer().get(to);
+			buf.position(buf.position() + 4 * nb_edges);
+			buf.asDoubleBuffer().get(dist);
+
+			return new OsmData(lat, lon, from, to, dist, name);
+		}
+		catch (BufferUnderflowException | IllegalArgumentException
+				| NegativeArraySizeException e) {
+			if (debug)
+				System.err.println("Ignoring corrupted map snapshot " + docName);
+			return null;
+		}
 	}
 
 	/**
@@ -802,6 +1614,8 @@ public class DataSource {
 	 *	@param location city/town from where amenity data is sought
 	 *	@param amenity  amenity type
 	 *	@throws exception
+	 *
+	 *	Each call returns its own AmenityData and Amenities.
 	 */
 	public AmenityData getAmenityData(String location, String amenity)
 	throws IOException {
@@ -827,6 +1641,8 @@ public class DataSource {
 	 *	@param maxLon  maximum longitude
 	 *	@param amenity  amenity type
 	 *	@throws exception
+	 *
+	 *	Each call returns its own AmenityData and Amenities.
 	 */
 	public AmenityData getAmenityData(double minLat, double minLon, double
 		maxLat, double maxLon, String amenity) throws IOException {
@@ -862,8 +1678,15 @@ public class DataSource {
 	private AmenityData parseAmenityData(String amenity_url, String hash_url)
 	throws IOException {
 
+		// the cached amenities are copied, callers may change theirs
+		String hash = resolveDataSetHash("amenity", amenity_url, hash_url);
+		Object cached = hash == null ? null : objects.get(objectKey("amenity", hash));
+		if (cached instanceof AmenityData)
+			return new AmenityData((AmenityData) cached);
+
 		// get the JSON of the amenity data
-		String amenity_json = getDataSetJSON(amenity_url, hash_url);
+		DataSet amenity_set = getDataSet(amenity_url, hash_url, hash);
+		String amenity_json = amenity_set.json;
 
 		// Parse Data into object
 		AmenityData amenity_data = new AmenityData();
@@ -893,91 +1716,343 @@ public class DataSource {
 
 				amenity_data.addAmenities(amen);
 			}
+			if (amenity_set.hash != null)
+				objects.put(objectKey("amenity", amenity_set.hash), new AmenityData(amenity_data));
 		}
 		catch (Exception e) {
-			System.out.println("Error Parsing Amenity Json: " + e);
+			if (debug)
+				System.err.println("Error Parsing Amenity Json: " + e);
 		}
 
 		return amenity_data;
 	}
+
 	/**
-	 * @brief This method takes in both a dataset url and a hash url
-	 *  and returns the JSON string of the external dataset based on the query
-	 *
-	 *  This method is a utility function that supports retrieving
-	 *  external dataset given a url to the dataset's server as well
-	 *  as a url to extract a hashcode for the dataset; the latter is
-	 *  is to suppor local caching. The dataset is only retrieved
-	 *  the server if a local copy is not available
+	 *  @brief Gets a dataset the server has no hash for, from the cache
+	 *  while it is fresh, from the server otherwise
 	 *
-	 *  Currently this function works with elevation, OpenStreet maps and
-	 *  Amenity datasets
+	 *  The dataset is cached under a name derived from its URL.
 	 *
+	 *  @param dataset kind of dataset, for its cache time to live
 	 */
-	private String getDataSetJSON(String data_url, String hash_url)
+	private String getUnhashedDataSetJSON(String dataset, String data_url)
 	throws IOException {
+		String name = cacheName("doc-", data_url);
+		CacheMeta meta = readCacheMeta(data_url);
+		if (meta != null && lru.inCache(name)) {
+			long ttl = getCacheTTL(dataset);
+			if (offline || ttl < 0 || System.currentTimeMillis() - meta.checked < ttl) {
+				String json = lru.getDoc(name);
+				if (json != null)
+					return json;
+			}
+		}
 
-		// look for dataset in cache
-		String data_content = null;
-		String hash = null;
+		long start = System.nanoTime();
+		String json = downloadDataSet(data_url);
+		lru.getStats().recordLoad(System.nanoTime() - start);
+		lru.putDoc(name, json);
+		writeCacheMeta(data_url, name);
+		return json;
+	}
 
-		if (debug)
-			System.err.println("Hitting hash URL: " + hash_url);
+	// a dataset and its hash, which is null if the server could not
+	// provide one
+	private static class DataSet {
+		String hash;
+		String json;
+	}
 
-		// get the hash code of the dataset
-		HttpResponse hashResp = makeRequest(hash_url);
+	/**
+	 * @brief Retrieves the hash code of a dataset
+	 *
+	 * @param hash_url url to request the hash code from
+	 * @return the hash code, or null if the server does not have one
+	 */
+	private String getDataSetHash(String hash_url) throws IOException {
+		if (debug)
+			System.err.println("Hitting hash URL: " + hash_url);
+
+		HttpResponse hashResp = makeRequest(hash_url);
 		int hashStatus = hashResp.getStatusLine().getStatusCode();
-		hash = EntityUtils.toString(hashResp.getEntity());
+		String hash = EntityUtils.toString(hashResp.getEntity());
 
 		if (debug)
 			System.err.println("Hash is: " + hash);
 
-		if (!hash.equals("false") && hashStatus == 200 && lru.inCache(hash) == true) {
+		if (hashStatus != 200 || hash.equals("false"))
+			return null;
+		return hash;
+	}
+
+	/**
+	 * @brief Finds the hash code of a dataset, without asking the server
+	 *  while the cached copy of the dataset is fresh
+	 *
+	 * A cached copy is fresh for the time to live of its kind of dataset
+	 * after it was downloaded or last checked against the server. A stale
+	 * copy is checked against the server, or returned as is while it is
+	 * checked in the background if background revalidation is on.
+	 *
+	 * @param dataset kind of dataset
+	 * @param data_url url to request the dataset from
+	 * @param hash_url url to request the hash code from
+	 * @return the hash code, or null if the server does not have one
+	 */
+	private String resolveDataSetHash(String dataset, String data_url,
+		String hash_url) throws IOException {
+		CacheMeta meta = readCacheMeta(data_url);
+		if (offline) {
+			// whatever its age, the cached copy is all there is
+			if (meta == null || !lru.inCache(meta.hash))
+				throw new IOException("Not in cache and offline: " + data_url);
+			return meta.hash;
+		}
+		if (meta != null && lru.inCache(meta.hash)) {
+			long ttl = getCacheTTL(dataset);
+			if (ttl < 0 || System.currentTimeMillis() - meta.checked < ttl) {
+				if (debug)
+					System.err.println("cached dataset is fresh: " + data_url);
+				return meta.hash;
+			}
+			if (background_revalidation) {
+				revalidateInBackground(data_url, hash_url);
+				return meta.hash;
+			}
+		}
+
+		String hash = getDataSetHash(hash_url);
+		if (hash != null && lru.inCache(hash))
+			writeCacheMeta(data_url, hash);
+		return hash;
+	}
+
+	/**
+	 * @brief Returns a dataset from the cache if its hash is known and
+	 *  cached, from the server otherwise
+	 *
+	 * @param data_url url to request the dataset from
+	 * @param hash_url url to request the hash code from
+	 * @param hash hash code of the dataset, null if unknown
+	 */
+	private DataSet getDataSet(String data_url, String hash_url, String hash)
+	throws IOException {
+		DataSet data = new DataSet();
+		data.hash = hash;
+
+		// look for dataset in cache
+		if (hash != null && lru.inCache(hash)) {
 			if (debug)
 				System.err.println("hash is in cache");
 
-			data_content = lru.getDoc(hash);
+			data.json = lru.getDoc(hash);
 		}
 
 		// if not in cache, hit server for data
-		if (data_content == null) {
+		if (data.json == null) {
 			if (debug)
 				System.err.println("hash is not in cache");
 
-			if (debug)
-				System.err.println("Hitting data URL: " + data_url);
+			long start = System.nanoTime();
+			data.json = downloadDataSet(data_url);
+			lru.getStats().recordLoad(System.nanoTime() - start);
 
-			HttpResponse resp = makeRequest(data_url);
+			// the server may only compute the hash once the data was requested
+			if (data.hash == null)
+				data.hash = getDataSetHash(hash_url);
 
-			int status = resp.getStatusLine().getStatusCode();
+			//Checks to see if valid hash is generated
+			if (data.hash != null) {
+				lru.putDoc(data.hash, data.json);
+				writeCacheMeta(data_url, data.hash);
+			}
+		}
+		return data;
+	}
+
+	private String downloadDataSet(String data_url) throws IOException {
+		if (debug)
+			System.err.println("Hitting data URL: " + data_url);
+
+		HttpResponse resp = makeRequest(data_url);
+
+		int status = resp.getStatusLine().getStatusCode();
+		if (debug)
 			System.err.println("[Data request:] Status code:" + status);
 
-			if (status != 200) {
-				throw new HttpResponseException(status, "Http Request Failed. Error Code:"
-					+ status + ". Message:" + data_content);
-			}
+		if (status != 200) {
+			throw new HttpResponseException(status, "Http Request Failed. Error Code:"
+				+ status + ". Message:" + EntityUtils.toString(resp.getEntity()));
+		}
 
-			data_content = EntityUtils.toString(resp.getEntity());
+		return EntityUtils.toString(resp.getEntity());
+	}
 
-			if (debug)
-				System.err.println("Hitting hash URL: " + hash_url);
+	// what the cache knows about the dataset of a request: its hash and
+	// when that hash was last obtained from the server
+	private static class CacheMeta {
+		String hash;
+		long checked;
+	}
 
-			// get hash code of dataset
-			hashResp = makeRequest(hash_url);
+	private static String cacheMetaName(String data_url) {
+		return cacheName("meta-", data_url);
+	}
 
-			hash = EntityUtils.toString(hashResp.getEntity());
+	private static String cacheName(String prefix, String data_url) {
+		try {
+			MessageDigest md = MessageDigest.getInstance("SHA-1");
+			byte[] digest = md.digest(data_url.getBytes(StandardCharsets.UTF_8));
+			StringBuilder name = new StringBuilder(prefix);
+			for (byte b : digest)
+				name.append(String.format("%02x", b));
+			return name.toString();
+		}
+		catch (NoSuchAlgorithmException e) {
+			// every Java platform is required to support SHA-1
+			throw new IllegalStateException(e);
+		}
+	}
 
-			if (debug) {
-				System.err.println("[Hash Request:] Status code:" + resp.getStatusLine().getStatusCode());
-				System.err.println("Hash is: " + hash);
-			}
+	private CacheMeta readCacheMeta(String data_url) throws IOException {
+		// the meta data is bookkeeping, not counted in the cache stats
+		String content = lru.peekDoc(cacheMetaName(data_url));
+		if (content == null)
+			return null;
+		String[] fields = content.split("\n");
+		try {
+			CacheMeta meta = new CacheMeta();
+			meta.hash = fields[0];
+			meta.checked = Long.parseLong(fields[1].trim());
+			return meta;
+		}
+		catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+			return null;
+		}
+	}
 
-			//Checks to see if valid hash is generated
-			if (!hash.equals("false")) {
-				lru.putDoc(hash, data_content);
+	private void writeCacheMeta(String data_url, String hash) throws IOException {
+		lru.putDoc(cacheMetaName(data_url), hash + "\n" + System.currentTimeMillis());
+	}
+
+	// checks a stale dataset against the server, downloading it again if
+	// it changed
+	private void revalidateInBackground(String data_url, String hash_url) {
+		if (!revalidating.add(data_url))
+			return;
+		revalidator.execute(() -> {
+			try {
+				String hash = getDataSetHash(hash_url);
+				if (hash != null && lru.inCache(hash))
+					writeCacheMeta(data_url, hash);
+				else if (hash != null)
+					getDataSet(data_url, hash_url, hash);
 			}
-		}
-		return data_content;
+			catch (IOException e) {
+				if (debug)
+					System.err.println("Could not revalidate " + data_url + ": " + e);
+			}
+			finally {
+				revalidating.remove(data_url);
+			}
+		});
+	}
+
+	/**
+	 *	@brief Turns offline mode on or off (off by default)
+	 *
+	 *	In offline mode, datasets are only served from the cache, whatever
+	 *	their time to live, and requests that need the network fail right
+	 *	away with an IOException instead of contacting a server. The cache
+	 *	can be filled beforehand with CacheWarmer.
+	 *
+	 *	@param flag whether to stay off the network
+	 */
+	public static void setOffline(boolean flag) {
+		offline = flag;
+	}
+
+	/**
+	 *	@return whether offline mode is on
+	 */
+	public static boolean isOffline() {
+		return offline;
+	}
+
+	private static void checkOnline(String url) throws IOException {
+		if (offline)
+			throw new IOException("Not in cache and offline: " + url);
+	}
+
+	/**
+	 *	@brief Sets how long a cached dataset of a given kind is used without
+	 *	checking with the server whether it changed
+	 *
+	 *	The kinds are "osm" (getOsmData), "elevation" (getElevationData),
+	 *	"amenity" (getAmenityData) and "songs" (getSong and getSongs). The
+	 *	default time to live of every kind is a day, see
+	 *	setCacheTTL(long).
+	 *
+	 *	@param dataset kind of dataset: "osm", "elevation", "amenity" or
+	 *	"songs"
+	 *	@param ttl time to live in milliseconds; 0 to always check, negative
+	 *	to never check
+	 */
+	public static void setCacheTTL(String dataset, long ttl) {
+		cache_ttls.put(dataset, ttl);
+	}
+
+	/**
+	 *	@brief Sets how long any cached dataset is used without checking
+	 *	with the server whether it changed, a day by default; the times to
+	 *	live set for some kinds of datasets are forgotten
+	 *
+	 *	@param ttl time to live in milliseconds; 0 to always check, negative
+	 *	to never check
+	 */
+	public static void setCacheTTL(long ttl) {
+		cache_ttls.clear();
+		default_cache_ttl = ttl;
+	}
+
+	/**
+	 *	@param dataset kind of dataset: "osm", "elevation", "amenity" or
+	 *	"songs"
+	 *	@return the time to live of cached datasets of that kind, in
+	 *	milliseconds
+	 */
+	public static long getCacheTTL(String dataset) {
+		Long ttl = cache_ttls.get(dataset);
+		return ttl != null ? ttl : default_cache_ttl;
+	}
+
+	/**
+	 *	@brief Turns background revalidation on or off (off by default)
+	 *
+	 *	When it is on, a cached dataset past its time to live is returned
+	 *	right away, and checked against the server in the background for
+	 *	the next requests.
+	 *
+	 *	@param flag whether to revalidate in the background
+	 */
+	public static void setBackgroundRevalidation(boolean flag) {
+		background_revalidation = flag;
+	}
+
+	/**
+	 *	@brief Turns tiled elevation retrieval on or off (off by default)
+	 *
+	 *	When it is on, getElevationData rounds the resolution down to a
+	 *	level of a pyramid (1 arc second times a power of two) and gets the
+	 *	region as tiles of 256x256 cells of that level. Tiles are cached
+	 *	like other datasets, and the returned map is assembled from them,
+	 *	so requests for overlapping or nearby regions only download the
+	 *	tiles they do not share.
+	 *
+	 *	@param flag whether to get elevation maps by tiles
+	 */
+	public static void setTiledElevation(boolean flag) {
+		tiled_elevation = flag;
 	}
 
 	/**
@@ -985,11 +2060,16 @@ public class DataSource {
 	 * range (bounding box) and resolution level
 	 * Note that the ElevationData that is returned
 	 * may have slightly different location and resolution.
+	 * With setTiledElevation(true), it covers the cells of the pyramid
+	 * level intersecting the box, see setTiledElevation.
 	 *
 	 * @param minLat minimum latitude requested
 	 * @param minLon minimum longitude requested
 	 * @param maxLat maximum latitude requested
 	 * @param maxLon maximum longitude requested
+	 * Each call returns its own ElevationData, changing its values does
+	 * not change what later calls return.
+	 *
 	 * @param res spatial resolution, aka the distance between two samples (in degrees)
 	 * @return a ElevationData object mapping a region close to the box requested
 	 */
@@ -997,74 +2077,261 @@ public class DataSource {
 	public ElevationData getElevationData(double minLat, double minLon,
 		double maxLat, double maxLon, double res) throws IOException {
 
-		boolean debug = false;
+		if (tiled_elevation)
+			return getTiledElevationData(minLat, minLon, maxLat, maxLon, res);
 
-		String data_url = getElevationBaseURL() +
-			"elevation?minLon=" + URLEncoder.encode(Double.toString(minLon), StandardCharsets.UTF_8.name()) +
-			"&minLat=" + URLEncoder.encode(Double.toString(minLat), StandardCharsets.UTF_8.name()) +
-			"&maxLon=" + URLEncoder.encode(Double.toString(maxLon), StandardCharsets.UTF_8.name()) +
-			"&maxLat=" + URLEncoder.encode(Double.toString(maxLat), StandardCharsets.UTF_8.name()) +
-			"&resX="   + URLEncoder.encode(Double.toString(res), StandardCharsets.UTF_8.name()) +
-			"&resY="   + URLEncoder.encode(Double.toString(res), StandardCharsets.UTF_8.name());
+		String data_url = getElevationURL("elevation", minLat, minLon, maxLat, maxLon, res);
+		String hash_url = getElevationURL("hash", minLat, minLon, maxLat, maxLon, res);
+
+		// the cached maps are copied, callers may change theirs
+		String hash = resolveDataSetHash("elevation", data_url, hash_url);
+		Object cached = hash == null ? null : objects.get(objectKey("elevation", hash));
+		if (cached instanceof ElevationData)
+			return new ElevationData((ElevationData) cached);
+
+		DataSet elev_data = getDataSet(data_url, hash_url, hash);
 
-		String hash_url = getElevationBaseURL() +
-			"hash?minLon=" + URLEncoder.encode(Double.toString(minLon), StandardCharsets.UTF_8.name()) +
+		//Parse Data into object
+		ElevationData ret_data = parseElevationGrid(elev_data.json);
+		if (elev_data.hash != null)
+			objects.put(objectKey("elevation", elev_data.hash), new ElevationData(ret_data));
+		return ret_data;
+	}
+
+	private String getElevationURL(String endpoint, double minLat, double minLon,
+		double maxLat, double maxLon, double res) throws IOException {
+		return getElevationBaseURL() + endpoint +
+			"?minLon=" + URLEncoder.encode(Double.toString(minLon), StandardCharsets.UTF_8.name()) +
 			"&minLat=" + URLEncoder.encode(Double.toString(minLat), StandardCharsets.UTF_8.name()) +
 			"&maxLon=" + URLEncoder.encode(Double.toString(maxLon), StandardCharsets.UTF_8.name()) +
 			"&maxLat=" + URLEncoder.encode(Double.toString(maxLat), StandardCharsets.UTF_8.name()) +
 			"&resX="   + URLEncoder.encode(Double.toString(res), StandardCharsets.UTF_8.name()) +
 			"&resY="   + URLEncoder.encode(Double.toString(res), StandardCharsets.UTF_8.name());
+	}
 
+	// the coarsest level of the pyramid at least as fine as res
+	private static int getElevationLevel(double res) {
+		int level = 0;
+		while (level < ELEVATION_MAX_LEVEL
+			&& ELEVATION_BASE_RES * (1 << (level + 1)) <= res * (1 + 1e-9))
+			level++;
+		return level;
+	}
 
-		String elev_data_json = getDataSetJSON(data_url, hash_url);
+	// assembles the cells of the level intersecting the box from tiles;
+	// cells are indexed globally, column gx covering longitudes
+	// [gx * cell, (gx + 1) * cell) and row gy latitudes [gy * cell,
+	// (gy + 1) * cell)
+	private ElevationData getTiledElevationData(double minLat, double minLon,
+		double maxLat, double maxLon, double res) throws IOException {
+		int level = getElevationLevel(res);
+		double cell = ELEVATION_BASE_RES * (1 << level);
+		int tile_cells = ELEVATION_TILE_CELLS;
+
+		long col0 = (long) Math.floor(minLon / cell);
+		long col1 = Math.max(col0 + 1, (long) Math.ceil(maxLon / cell));
+		long row0 = (long) Math.floor(minLat / cell);
+		long row1 = Math.max(row0 + 1, (long) Math.ceil(maxLat / cell));
+		if ((col1 - col0) * (row1 - row0) > Integer.MAX_VALUE)
+			throw new IOException("Elevation map too large: " + (col1 - col0)
+				+ "x" + (row1 - row0) + " cells");
+		int cols = (int) (col1 - col0);
+		int rows = (int) (row1 - row0);
+
+		int[] values = new int[rows * cols];
+		int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
+		for (long ty = Math.floorDiv(row0, tile_cells); ty <= Math.floorDiv(row1 - 1, tile_cells); ++ty) {
+			for (long tx = Math.floorDiv(col0, tile_cells); tx <= Math.floorDiv(col1 - 1, tile_cells); ++tx) {
+				int[] tile = getElevationTile(level, tx, ty);
+				long gx0 = Math.max(col0, tx * tile_cells);
+				long gx1 = Math.min(col1, (tx + 1) * tile_cells);
+				long gy0 = Math.max(row0, ty * tile_cells);
+				long gy1 = Math.min(row1, (ty + 1) * tile_cells);
+				// rows of both the tile and the map go from north to south
+				for (long gy = gy0; gy < gy1; ++gy) {
+					int src = (int) ((ty + 1) * tile_cells - 1 - gy) * tile_cells
+						+ (int) (gx0 - tx * tile_cells);
+					int dst = (int) (row1 - 1 - gy) * cols + (int) (gx0 - col0);
+					for (int k = 0; k < gx1 - gx0; ++k) {
+						int v = tile[src + k];
+						values[dst + k] = v;
+						if (v < min)
+							min = v;
+						if (v > max)
+							max = v;
+					}
+				}
+			}
+		}
 
+		return new ElevationData(values, cols, rows, col0 * cell, row0 * cell, cell, min, max);
+	}
 
-		//Parse Data into object
-		int cols = 0;
-		int rows = 0;
-		double xll = 0;
-		double yll = 0;
-		double cellsize = 0;
-		int maxVal = -9999999;
-
-		String [] lines = elev_data_json.split("\n");
-		cols = Integer.parseInt(lines[0].replaceAll("[^0-9]", ""));
-		rows = Integer.parseInt(lines[1].replaceAll("[^0-9]", ""));
-		xll = Double.parseDouble(lines[2].replaceAll("[^0-9.]", ""));
-		yll = Double.parseDouble(lines[3].replaceAll("[^0-9.]", ""));
-		cellsize = Double.parseDouble(lines[4].replaceAll("[^0-9.]", ""));
-
-		int[][] data = new int[rows][cols];
-		int crows = 0;
-
-		for (int i = 5; i < lines.length; i++) {
-			String [] vals = lines[i].split(" ");
-			int [] intVals = new int[vals.length - 1];
-			for (int x = 0; x < vals.length - 1; x++) {
-				intVals[x] = Integer.parseInt(vals[x + 1]);
-			}
-			data[crows] = intVals;
-			crows++;
+	// the cells of a tile, row by row from the north; the server may
+	// answer with a grid slightly off the tile, which is resampled to it
+	private int[] getElevationTile(int level, long tx, long ty) throws IOException {
+		String key = "elevation-tile:" + level + "/" + tx + "/" + ty;
+		int tile_cells = ELEVATION_TILE_CELLS;
+		double cell = ELEVATION_BASE_RES * (1 << level);
+		double size = cell * tile_cells;
+		double minLat = ty * size, minLon = tx * size;
+		double maxLat = (ty + 1) * size, maxLon = (tx + 1) * size;
+		String data_url = getElevationURL("elevation", minLat, minLon, maxLat, maxLon, cell);
+		String hash_url = getElevationURL("hash", minLat, minLon, maxLat, maxLon, cell);
+
+		// the tile is resampled from the grid, so it depends on both
+		String hash = resolveDataSetHash("elevation", data_url, hash_url);
+		Object cached = hash == null ? null : objects.get(objectKey(key, hash));
+		if (cached instanceof int[])
+			return (int[]) cached;
+
+		DataSet elev_data = getDataSet(data_url, hash_url, hash);
+		ElevationData grid = parseElevationGrid(elev_data.json);
+
+		int grid_cols = grid.getCols(), grid_rows = grid.getRows();
+		double grid_cell = grid.getCellSize();
+		if (grid_cols == 0 || grid_rows == 0 || !(grid_cell > 0))
+			throw new IOException("Empty elevation tile " + key);
+		int[] grid_values = grid.getValues();
+
+		// nearest cell of the grid to the center of each cell of the tile
+		int[] grid_col = new int[tile_cells];
+		for (int c = 0; c < tile_cells; ++c) {
+			double lon = (tx * tile_cells + c + 0.5) * cell;
+			int gc = (int) Math.floor((lon - grid.getxll()) / grid_cell);
+			grid_col[c] = Math.min(grid_cols - 1, Math.max(0, gc));
 		}
+		int[] tile = new int[tile_cells * tile_cells];
+		for (int r = 0; r < tile_cells; ++r) {
+			double lat = ((ty + 1) * tile_cells - r - 0.5) * cell;
+			int gr = grid_rows - 1 - (int) Math.floor((lat - grid.getyll()) / grid_cell);
+			int grid_row = Math.min(grid_rows - 1, Math.max(0, gr)) * grid_cols;
+			for (int c = 0; c < tile_cells; ++c)
+				tile[r * tile_cells + c] = grid_values[grid_row + grid_col[c]];
+		}
+
+		if (elev_data.hash != null)
+			objects.put(objectKey(key, elev_data.hash), tile);
+		return tile;
+	}
 
-		//Finds and sets the max elevation value in the set
-		for (int i = 0; i < data.length; i++) {
-			for (int j = 0; j < data[i].length; j++) {
-				if (data[i][j] > maxVal) {
-					maxVal = data[i][j];
+	/**
+	 *	@brief Parses an ASCII grid into an ElevationData
+	 *
+	 *	The grid is a header of "name value" lines (ncols, nrows, xllcorner,
+	 *	yllcorner, cellsize and optionally NODATA_value) followed by
+	 *	nrows x ncols integers. The text is scanned once, straight into the
+	 *	flat values of the ElevationData, and min and max are computed on the
+	 *	way. Cells holding NODATA_value are left out of min and max.
+	 *
+	 *	@throws IOException if the grid is malformed
+	 */
+	private static ElevationData parseElevationGrid(String grid) throws IOException {
+		int len = grid.length();
+		int pos = 0;
+
+		int cols = -1, rows = -1;
+		double xll = 0, yll = 0, cellsize = 0;
+		boolean has_nodata = false;
+		int nodata = 0;
+
+		// header
+		while (true) {
+			while (pos < len && Character.isWhitespace(grid.charAt(pos)))
+				pos++;
+			if (pos == len || !Character.isLetter(grid.charAt(pos)))
+				break;
+			int start = pos;
+			while (pos < len && !Character.isWhitespace(grid.charAt(pos)))
+				pos++;
+			String name = grid.substring(start, pos).toLowerCase();
+			while (pos < len && Character.isWhitespace(grid.charAt(pos)))
+				pos++;
+			start = pos;
+			while (pos < len && !Character.isWhitespace(grid.charAt(pos)))
+				pos++;
+			String value = grid.substring(start, pos);
+			try {
+				switch (name) {
+					case "ncols":
+						cols = Integer.parseInt(value);
+						break;
+					case "nrows":
+						rows = Integer.parseInt(value);
+						break;
+					case "xllcorner":
+					case "xllcenter":
+						xll = Double.parseDouble(value);
+						break;
+					case "yllcorner":
+					case "yllcenter":
+						yll = Double.parseDouble(value);
+						break;
+					case "cellsize":
+						cellsize = Double.parseDouble(value);
+						break;
+					case "nodata_value":
+						has_nodata = true;
+						nodata = (int) Double.parseDouble(value);
+						break;
+					default:
+						// unknown header lines are ignored
 				}
 			}
+			catch (NumberFormatException e) {
+				throw new IOException("Malformed elevation data: " + name + " " + value);
+			}
 		}
+		if (cols < 0 || rows < 0)
+			throw new IOException("Malformed elevation data: missing ncols or nrows");
+		if ((long) cols * rows > Integer.MAX_VALUE)
+			throw new IOException("Elevation map too large: " + cols + "x" + rows + " cells");
+
+		// values, straight into the flat storage of the ElevationData
+		int[] values = new int[rows * cols];
+		int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
+		for (int i = 0; i < rows * cols; ++i) {
+			while (pos < len && grid.charAt(pos) <= ' ')
+				pos++;
+			boolean negative = false;
+			if (pos < len && (grid.charAt(pos) == '-' || grid.charAt(pos) == '+'))
+				negative = grid.charAt(pos++) == '-';
+			int start = pos;
+			long val = 0;
+			char c;
+			while (pos < len && (c = grid.charAt(pos)) >= '0' && c <= '9') {
+				val = 10 * val + (c - '0');
+				if (val > Integer.MAX_VALUE)
+					throw new IOException("Malformed elevation data: value out of range");
+				pos++;
+			}
+			if (pos == start || (pos < len && grid.charAt(pos) > ' '))
+				throw new IOException("Malformed elevation data: expected "
+					+ rows * cols + " integers, failed at value " + i);
+			int v = (int) (negative ? -val : val);
+			values[i] = v;
+			if (has_nodata && v == nodata)
+				continue;
+			if (v < min)
+				min = v;
+			if (v > max)
+				max = v;
+		}
+		if (min > max)
+			min = max = 0;
 
-		ElevationData ret_data = new ElevationData(data, cols, rows, xll, yll,
-			cellsize, maxVal);
-		return ret_data;
+		return new ElevationData(values, cols, rows, xll, yll, cellsize, min, max);
 	}
 
 	/**
 	 * @brief This function returns the Movie and Actors playing in them
 	 *		between two years from WikiData
 	 *
+	 * The data is retrieved and cached one year at a time, so that ranges
+	 * sharing years (as 2018-2019 and 2017-2019) only fetch the years not
+	 * seen before. Years already parsed by this program are not read again;
+	 * the pairs returned are copies, callers may change theirs.
+	 *
 	 * @param yearBegin inclusive start year
 	 * @param yearEnd inclusive end year
 	 * @return ArrayList of all ActorMovie pairs in Wikidata between
@@ -1075,35 +2342,43 @@ public class DataSource {
 	public ArrayList<ActorMovieWikidata> getWikidataActorMovie (int
 		yearBegin, int yearEnd) throws IOException {
 		ArrayList<ActorMovieWikidata> ret = new ArrayList<>();
-		int limit = 30;
-		if (yearEnd - yearBegin > 30)
-			limit = (yearEnd - yearBegin) + 1;
 
-		LRUCache cache = new LRUCache(limit);
-
-		for (int i = yearBegin; i <= yearEnd; ++i) {
-			populateWikidataActorMovie(i, i, ret, cache);
+		// the years kept in memory are copied
+		for (int year = yearBegin; year <= yearEnd; ++year) {
+			for (ActorMovieWikidata pair : getWikidataActorMovieYear(year))
+				ret.add(new ActorMovieWikidata(pair.getMovieURI(), pair.getActorURI(),
+						pair.getMovieName(), pair.getActorName()));
 		}
 
 		return ret;
 	}
 
 	/**
-	 *	Helper function that will actually create and execute the
-	 * 	request to WikiData, this allows us to
-	 * 	partition the request to prevent WikiData from kicking out the client.
+	 *	Helper function that returns the actor/movie pairs of a single
+	 *	year, from memory, from the cache, or from WikiData; requesting
+	 *	one year at a time prevents WikiData from kicking out the client.
+	 *	The pairs are the ones kept in memory, not to be changed.
 	 */
-	private void populateWikidataActorMovie(int yearBegin, int yearEnd,
-		ArrayList<ActorMovieWikidata> out, LRUCache cache) throws  IOException {
+	private List<ActorMovieWikidata> getWikidataActorMovieYear(int year)
+	throws IOException {
 
 		String cacheName = String.format("wikidata-actormovie-%d-%d",
-				yearBegin, yearEnd);
-		String json = null;
+				year, year);
+
+		List<ActorMovieWikidata> shard = wikidata_years.get(cacheName);
+		if (shard != null)
+			return shard;
 
-		if (cache.inCache(cacheName)) {
-			json = cache.getDoc(cacheName);
+		if (lru.inCache(cacheName)) {
+			InputStream in = lru.getDocStream(cacheName);
+			if (in != null) {
+				try (Reader reader = new InputStreamReader(in)) {
+					shard = parseWikidataActorMovie(reader);
+				}
+			}
 		}
-		else {
+
+		if (shard == null) {
 			String url = "https://query.wikidata.org/sparql?";
 			String query = "SELECT ?movie ?movieLabel ?actor ?actorLabel WHERE " +
 				"{" +
@@ -1111,7 +2386,7 @@ public class DataSource {
 				"?movie wdt:P161 ?actor." +
 				"?movie wdt:P364 wd:Q1860." +
 				"?movie wdt:P577 ?date."  +
-				"FILTER(YEAR(?date) >= " + yearBegin + " && YEAR(?date) <= " + yearEnd + ")." +
+				"FILTER(YEAR(?date) >= " + year + " && YEAR(?date) <= " + year + ")." +
 				"SERVICE wikibase:label { bd:serviceParam wikibase:language \"en\". }" +
 				"}";
 			url += "query=" + URLEncoder.encode(query) + "&format=json";
@@ -1120,43 +2395,378 @@ public class DataSource {
 			req.addHeader("User-Agent", "bridges-java");
 			req.addHeader("Accept", "application/json");
 
-			HttpClient client = HttpClientBuilder.create().build();
-			HttpResponse resp;
-			try {
-				resp = client.execute(req);
-				int status = resp.getStatusLine().getStatusCode();
-				json = EntityUtils.toString(resp.getEntity());
-				cache.putDoc(cacheName, json);
+			checkOnline(url);
+			long start = System.nanoTime();
+			HttpResponse resp = execute(req);
+			int status = resp.getStatusLine().getStatusCode();
+			String json = EntityUtils.toString(resp.getEntity());
+			if (status != 200) {
+				throw new HttpResponseException(status, "WikiData request for year "
+					+ year + " failed. Error Code: " + status);
 			}
-			catch (Exception e) {}
+
+			shard = parseWikidataActorMovie(new StringReader(json));
+			lru.getStats().recordLoad(System.nanoTime() - start);
+			lru.putDoc(cacheName, json);
 		}
 
-		if (json != null) {
-			try {
-				JSONObject data = (JSONObject) JSONValue.parse(json);
-				JSONArray arr = (JSONArray) ((JSONObject) data.get("results")).get("bindings");
+		wikidata_years.put(cacheName, shard);
+		return shard;
+	}
+
+	/**
+	 *	Parses the actor/movie pairs of a WikiData response, one binding
+	 *	at a time.
+	 */
+	private List<ActorMovieWikidata> parseWikidataActorMovie(Reader json)
+	throws IOException {
+		List<ActorMovieWikidata> out = new ArrayList<>();
+		try {
+			JsonReader reader = new JsonReader(json);
+			reader.beginObject();
+			while (reader.hasNext()) {
+				if (!reader.nextName().equals("results")) {
+					reader.skipValue();
+					continue;
+				}
+				reader.beginObject();
+				while (reader.hasNext()) {
+					if (!reader.nextName().equals("bindings")) {
+						reader.skipValue();
+						continue;
+					}
+					reader.beginArray();
+					while (reader.hasNext()) {
+						String actorUri = null, movieUri = null, actor = null, movie = null;
+
+						reader.beginObject();
+						while (reader.hasNext()) {
+							switch (reader.nextName()) {
+								case "actor":
+									actorUri = readWikidataValue(reader);
+									break;
+								case "movie":
+									movieUri = readWikidataValue(reader);
+									break;
+								case "actorLabel":
+									actor = readWikidataValue(reader);
+									break;
+								case "movieLabel":
+									movie = readWikidataValue(reader);
+									break;
+								default:
+									reader.skipValue();
+							}
+						}
+						reader.endObject();
+
+						if (actorUri == null || movieUri == null || actor == null || movie == null)
+							continue;
+						actorUri = actorUri.replaceFirst("http://www.wikidata.org/entity/", "");
+						movieUri = movieUri.replaceFirst("http://www.wikidata.org/entity/", "");
+
+						out.add(new ActorMovieWikidata(movieUri, actorUri, movie, actor));
+					}
+					reader.endArray();
+				}
+				reader.endObject();
+			}
+			reader.endObject();
+		}
+		catch (IOException | IllegalStateException e) {
+			throw new IOException("Malformed JSON: Not from wikidata?");
+		}
+		return out;
+	}
+
+	// reads the "value" field of a WikiData binding
+	private String readWikidataValue(JsonReader reader) throws IOException {
+		String value = null;
+		reader.beginObject();
+		while (reader.hasNext()) {
+			if (reader.nextName().equals("value"))
+				value = reader.nextString();
+			else
+				reader.skipValue();
+		}
+		reader.endObject();
+		return value;
+	}
+
+	/////////////////////////////////////////////////////////////////////////
+	// Lazy versions of the getters of the larger datasets. Records are
+	// read and parsed as the stream is consumed, so a consumer interested
+	// in a few records does not download them all. The streams hold the
+	// HTTP connection: the connection is released once the stream is
+	// consumed to its end, and closing the stream earlier stops the
+	// download. Use them in try-with-resources:
+	//
+	//	try (Stream<Song> songs = ds.streamSongData()) {
+	//		Optional<Song> song = songs.filter(...).findFirst();
+	//	}
+	//
+	// Errors met while reading are thrown as UncheckedIOException.
+	/////////////////////////////////////////////////////////////////////////
+
+	private <T> Stream<T> streamJSONRecords(String url, String key,
+		JSONRecordReader.RecordParser<T> parser) throws IOException {
+		HttpResponse response = makeRequest(url);
+
+		int status = response.getStatusLine().getStatusCode();
+
+		if (status == 200) 	{
+			return openJSONRecords(response, key, parser).stream();
+		}
+		else {
+			EntityUtils.consumeQuietly(response.getEntity());
+			throw new HttpResponseException(status, "HTTP Request Failed. Error Code: " + status);
+		}
+	}
+
+	/**
+	 *	@brief Lazy version of getCancerIncidenceData()
+	 *
+	 *	@return the cancer incidence records, parsed as the stream is
+	 *	consumed; the stream must be closed
+	 *	@throws IOException if the request fails
+	 */
+	public Stream<CancerIncidence> streamCancerIncidenceData() throws IOException {
+		return streamJSONRecords(CANCER_URL, "data", this::parseCancerIncidence);
+	}
 
-				for (Object item : arr) {
-					JSONObject obj = (JSONObject) item;
-					String actorUri, movieUri, actor, movie;
+	/**
+	 *	@brief Lazy version of getActorMovieIMDBData2()
+	 *
+	 *	@return the actor/movie pairs, parsed as the stream is consumed;
+	 *	the stream must be closed
+	 *	@throws IOException if the request fails
+	 */
+	public Stream<ActorMovieIMDB> streamActorMovieIMDBData2() throws IOException {
+		return streamJSONRecords(IMDB2_URL, "data", this::parseActorMovieIMDB2);
+	}
+
+	/**
+	 *	@brief Lazy version of getGutenbergBookMetaData()
+	 *
+	 *	@return the books, parsed as the stream is consumed; the stream
+	 *	must be closed
+	 *	@throws IOException if the request fails
+	 */
+	public Stream<GutenbergBook> streamGutenbergBookMetaData() throws IOException {
+		return streamJSONRecords(BOOKS_URL, "data", this::parseGutenbergBook);
+	}
 
-					actorUri = (String) ((JSONObject) obj.get("actor")).get("value");
-					movieUri = (String) ((JSONObject) obj.get("movie")).get("value");
-					actorUri = actorUri.replaceFirst("http://www.wikidata.org/entity/", "");
-					movieUri = movieUri.replaceFirst("http://www.wikidata.org/entity/", "");
+	/**
+	 *	@brief Lazy version of getSongData()
+	 *
+	 *	@return the songs, parsed as the stream is consumed; the stream
+	 *	must be closed
+	 *	@throws IOException if the request fails
+	 */
+	public Stream<Song> streamSongData() throws IOException {
+		return streamJSONRecords(SONGS_URL, "data", this::parseSong);
+	}
 
-					actor = (String) ((JSONObject) obj.get("actorLabel")).get("value");
-					movie = (String) ((JSONObject) obj.get("movieLabel")).get("value");
+	/////////////////////////////////////////////////////////////////////////
+	// Asynchronous versions of the dataset getters. Each one runs the
+	// blocking getter on the async executor and returns right away; the
+	// future completes with the dataset, or exceptionally with the error
+	// the getter threw.
+	/////////////////////////////////////////////////////////////////////////
 
-					ActorMovieWikidata add = new ActorMovieWikidata(movieUri, actorUri, movie, actor);
+	// the getters throw checked exceptions, which Supplier does not allow
+	private interface DataSetCall<T> {
+		T call() throws Exception;
+	}
 
-					out.add(add);
+	private static <T> CompletableFuture<T> callAsync(DataSetCall<T> getter) {
+		CompletableFuture<T> future = new CompletableFuture<>();
+		try {
+			getAsyncExecutor().execute(() -> {
+				try {
+					future.complete(getter.call());
 				}
-			}
-			catch (Exception e) {
-				throw new IOException("Malformed JSON: Not from wikidata?");
-			}
+				catch (Throwable e) {
+					future.completeExceptionally(e);
+				}
+			});
 		}
+		catch (RejectedExecutionException e) {
+			future.completeExceptionally(e);
+		}
+		return future;
+	}
+
+	private static synchronized Executor getAsyncExecutor() {
+		if (async_executor == null) {
+			async_executor = Executors.newFixedThreadPool(ASYNC_THREADS, r -> {
+				Thread t = new Thread(r, "bridges-datasource-async");
+				t.setDaemon(true);
+				return t;
+			});
+		}
+		return async_executor;
+	}
+
+	/**
+	 *	@brief Sets the executor running the asynchronous getters
+	 *
+	 *	By default they run on a pool of 4 daemon threads, so that at most
+	 *	4 datasets are downloaded and parsed at the same time. The HTTP
+	 *	connections they use are limited by setHttpConnectionLimits.
+	 *
+	 *	@param executor executor of the asynchronous getters, null to go
+	 *	back to the default pool
+	 */
+	public static synchronized void setAsyncExecutor(Executor executor) {
+		async_executor = executor;
+	}
+
+	/**
+	 *	@brief Asynchronous version of getEarthquakeUSGSData(int)
+	 */
+	public CompletableFuture<List<EarthquakeUSGS>> getEarthquakeUSGSDataAsync(
+		int maxElem) {
+		return callAsync(() -> getEarthquakeUSGSData(maxElem));
+	}
+
+	/**
+	 *	@brief Asynchronous version of getShakespeareData(String, Boolean)
+	 */
+	public CompletableFuture<List<Shakespeare>> getShakespeareDataAsync(
+		String works, Boolean textOnly) {
+		return callAsync(() -> getShakespeareData(works, textOnly));
+	}
+
+	/**
+	 *	@brief Asynchronous version of getShakespeareData()
+	 */
+	public CompletableFuture<List<Shakespeare>> getShakespeareDataAsync() {
+		return callAsync(() -> getShakespeareData());
+	}
+
+	/**
+	 *	@brief Asynchronous version of getCancerIncidenceData()
+	 */
+	public CompletableFuture<List<CancerIncidence>> getCancerIncidenceDataAsync() {
+		return callAsync(() -> getCancerIncidenceData());
+	}
+
+	/**
+	 *	@brief Asynchronous version of getOsmData(String)
+	 */
+	public CompletableFuture<OsmData> getOsmDataAsync(String location) {
+		return callAsync(() -> getOsmData(location));
+	}
+
+	/**
+	 *	@brief Asynchronous version of getOsmData(String, String)
+	 */
+	public CompletableFuture<OsmData> getOsmDataAsync(String location,
+		String level) {
+		return callAsync(() -> getOsmData(location, level));
+	}
+
+	/**
+	 *	@brief Asynchronous version of getOsmData(double, double, double, double)
+	 */
+	public CompletableFuture<OsmData> getOsmDataAsync(double minLat,
+		double minLon, double maxLat, double maxLon) {
+		return callAsync(() -> getOsmData(minLat, minLon, maxLat, maxLon));
+	}
+
+	/**
+	 *	@brief Asynchronous version of
+	 *	getOsmData(double, double, double, double, String)
+	 */
+	public CompletableFuture<OsmData> getOsmDataAsync(double minLat,
+		double minLon, double maxLat, double maxLon, String level) {
+		return callAsync(() -> getOsmData(minLat, minLon, maxLat, maxLon, level));
+	}
+
+	/**
+	 *	@brief Asynchronous version of getActorMovieIMDBData(int)
+	 */
+	public CompletableFuture<List<ActorMovieIMDB>> getActorMovieIMDBDataAsync(
+		int maxElem) {
+		return callAsync(() -> getActorMovieIMDBData(maxElem));
+	}
+
+	/**
+	 *	@brief Asynchronous version of getActorMovieIMDBData2()
+	 */
+	public CompletableFuture<List<ActorMovieIMDB>> getActorMovieIMDBData2Async() {
+		return callAsync(() -> getActorMovieIMDBData2());
+	}
+
+	/**
+	 *	@brief Asynchronous version of getGutenbergBookMetaData()
+	 */
+	public CompletableFuture<List<GutenbergBook>> getGutenbergBookMetaDataAsync() {
+		return callAsync(() -> getGutenbergBookMetaData());
+	}
+
+	/**
+	 *	@brief Asynchronous version of getGameData()
+	 */
+	public CompletableFuture<List<Game>> getGameDataAsync() {
+		return callAsync(() -> getGameData());
+	}
+
+	/**
+	 *	@brief Asynchronous version of getSongData()
+	 */
+	public CompletableFuture<ArrayList<Song>> getSongDataAsync() {
+		return callAsync(() -> getSongData());
+	}
+
+	/**
+	 *	@brief Asynchronous version of getSong(String, String)
+	 */
+	public CompletableFuture<Song> getSongAsync(String songTitle,
+		String artistName) {
+		return callAsync(() -> getSong(songTitle, artistName));
+	}
+
+	/**
+	 *	@brief Asynchronous version of getSong(String)
+	 */
+	public CompletableFuture<Song> getSongAsync(String songTitle) {
+		return callAsync(() -> getSong(songTitle));
+	}
+
+	/**
+	 *	@brief Asynchronous version of getAmenityData(String, String)
+	 */
+	public CompletableFuture<AmenityData> getAmenityDataAsync(String location,
+		String amenity) {
+		return callAsync(() -> getAmenityData(location, amenity));
+	}
+
+	/**
+	 *	@brief Asynchronous version of
+	 *	getAmenityData(double, double, double, double, String)
+	 */
+	public CompletableFuture<AmenityData> getAmenityDataAsync(double minLat,
+		double minLon, double maxLat, double maxLon, String amenity) {
+		return callAsync(() -> getAmenityData(minLat, minLon, maxLat, maxLon, amenity));
+	}
+
+	/**
+	 *	@brief Asynchronous version of
+	 *	getElevationData(double, double, double, double, double)
+	 */
+	public CompletableFuture<ElevationData> getElevationDataAsync(double minLat,
+		double minLon, double maxLat, double maxLon, double res) {
+		return callAsync(() -> getElevationData(minLat, minLon, maxLat, maxLon, res));
+	}
+
+	/**
+	 *	@brief Asynchronous version of getWikidataActorMovie(int, int)
+	 */
+	public CompletableFuture<ArrayList<ActorMovieWikidata>> getWikidataActorMovieAsync(
+		int yearBegin, int yearEnd) {
+		return callAsync(() -> getWikidataActorMovie(yearBegin, yearEnd));
 	}
 
 	/////////////////////////////////////////////////////////////////////////
@@ -0,0 +1,84 @@
+package bridges.connect;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ *	@brief Writes visualizations to files of a directory, rather than
+ *	sending them to the BRIDGES server
+ *
+ *	Each visualization is written to &lt;assignment&gt;.json, or
+ *	&lt;assignment&gt;.json.gz when compressed (for instance 12.03.json),
+ *	in UTF-8. A file is only visible once completely written, and is
+ *	replaced if the same subassignment is visualized again.
+ *
+ *	\code{java}
+ *	bridges.setVisualizationSink(new DirectorySink(new File("out")));
+ *	bridges.visualize();
+ *	\endcode
+ */
+public class DirectorySink implements VisualizationSink {
+	private final File dir;
+	private final boolean compress;
+
+	/**
+	 *	@param dir directory to write to, created if needed
+	 */
+	public DirectorySink(File dir) {
+		this(dir, false);
+	}
+
+	/**
+	 *	@param dir directory to write to, created if needed
+	 *	@param compress whether to gzip the files
+	 */
+	public DirectorySink(File dir, boolean compress) {
+		this.dir = dir;
+		this.compress = compress;
+	}
+
+	/**
+	 *	@return the directory the visualizations are written to
+	 */
+	public File getDirectory() {
+		return dir;
+	}
+
+	@Override
+	public void send(String assignment, Payload payload) throws IOException {
+		Path directory = dir.toPath();
+		Files.createDirectories(directory);
+		String name = assignment + (compress ? ".json.gz" : ".json");
+
+		Path tmp = Files.createTempFile(directory, "." + name, ".tmp");
+		try {
+			OutputStream file = Files.newOutputStream(tmp);
+			try (Writer out = new BufferedWriter(new OutputStreamWriter(
+							compress ? new GZIPOutputStream(file) : file,
+							StandardCharsets.UTF_8))) {
+				payload.writeTo(out);
+			}
+			Path target = directory.resolve(name);
+			try {
+				Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE,
+					StandardCopyOption.REPLACE_EXISTING);
+			}
+			catch (AtomicMoveNotSupportedException e) {
+				Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+		finally {
+			Files.deleteIfExists(tmp);
+		}
+	}
+}
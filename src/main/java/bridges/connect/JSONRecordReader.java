@@ -0,0 +1,221 @@
+package bridges.connect;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.google.gson.stream.JsonReader;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+/**
+ *	Reads the records of a JSON array one at a time, without holding the
+ *	whole document in memory.
+ *
+ *	The array is either the document itself or the value of a field of
+ *	the top level object. Each record is read into json-simple objects
+ *	(integers as Long, other numbers as Double, as JSONValue.parse does)
+ *	and handed to a RecordParser.
+ *
+ *	Errors while reading are thrown by next and hasNext as
+ *	UncheckedIOException. The reader closes itself once the array is read
+ *	or an error occurs. When it is closed before that, the connection the
+ *	document comes from is closed rather than read to the end.
+ */
+class JSONRecordReader<T> implements Iterator<T>, Closeable {
+	interface RecordParser<T> {
+		T parse(JSONObject record);
+	}
+
+	private final JsonReader reader;
+	private final String key;
+	private final RecordParser<T> parser;
+	private final Closeable connection;
+	private boolean started = false;
+	private boolean ended = false;
+	private boolean closed = false;
+
+	/**
+	 *	@param in the JSON document
+	 *	@param key field holding the array in the top level object, null
+	 *	if the document is the array
+	 *	@param parser makes a record out of each element of the array
+	 *	@param connection closed when the reader is closed before the end
+	 *	of the array, null if there is none
+	 */
+	JSONRecordReader(Reader in, String key, RecordParser<T> parser,
+		Closeable connection) {
+		this.reader = new JsonReader(in);
+		this.key = key;
+		this.parser = parser;
+		this.connection = connection;
+	}
+
+	// moves to the first element of the array
+	private void start() throws IOException {
+		started = true;
+		if (key != null) {
+			reader.beginObject();
+			while (true) {
+				if (!reader.hasNext())
+					throw new IOException("Malformed JSON: no field " + key);
+				if (reader.nextName().equals(key))
+					break;
+				reader.skipValue();
+			}
+		}
+		reader.beginArray();
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (ended || closed)
+			return false;
+		try {
+			if (!started)
+				start();
+			if (reader.hasNext())
+				return true;
+			reader.endArray();
+			ended = true;
+			close();
+			return false;
+		}
+		catch (IOException e) {
+			throw failed(e);
+		}
+		catch (IllegalStateException e) {
+			throw failed(new IOException("Malformed JSON: " + e.getMessage()));
+		}
+	}
+
+	@Override
+	public T next() {
+		if (!hasNext())
+			throw new NoSuchElementException();
+		Object value;
+		try {
+			value = readValue(reader);
+		}
+		catch (IOException e) {
+			throw failed(e);
+		}
+		catch (IllegalStateException | NumberFormatException e) {
+			throw failed(new IOException("Malformed JSON: " + e.getMessage()));
+		}
+		if (!(value instanceof JSONObject))
+			throw failed(new IOException("Malformed JSON: not a record: " + value));
+		return parser.parse((JSONObject) value);
+	}
+
+	private UncheckedIOException failed(IOException e) {
+		try {
+			close();
+		}
+		catch (IOException ignored) {
+			// the error being reported matters more
+		}
+		return new UncheckedIOException(e);
+	}
+
+	/**
+	 *	@return the records, read as the stream is consumed; closing the
+	 *	stream closes the reader
+	 */
+	Stream<T> stream() {
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this,
+				Spliterator.ORDERED), false)
+			.onClose(() -> {
+				try {
+					close();
+				}
+				catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+	}
+
+	/**
+	 *	@return whether the whole array was read
+	 */
+	boolean isFinished() {
+		return ended;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (closed)
+			return;
+		closed = true;
+		if (ended || connection == null) {
+			reader.close();
+			return;
+		}
+		// stops the download instead of reading the rest of the document
+		try {
+			connection.close();
+		}
+		finally {
+			try {
+				reader.close();
+			}
+			catch (IOException e) {
+				// the connection is already closed
+			}
+		}
+	}
+
+	/**
+	 *	Reads the next value into json-simple objects.
+	 */
+	@SuppressWarnings("unchecked")
+	static Object readValue(JsonReader reader) throws IOException {
+		switch (reader.peek()) {
+			case BEGIN_OBJECT: {
+				JSONObject object = new JSONObject();
+				reader.beginObject();
+				while (reader.hasNext())
+					object.put(reader.nextName(), readValue(reader));
+				reader.endObject();
+				return object;
+			}
+			case BEGIN_ARRAY: {
+				JSONArray array = new JSONArray();
+				reader.beginArray();
+				while (reader.hasNext())
+					array.add(readValue(reader));
+				reader.endArray();
+				return array;
+			}
+			case STRING:
+				return reader.nextString();
+			case NUMBER: {
+				String number = reader.nextString();
+				if (number.indexOf('.') < 0 && number.indexOf('e') < 0
+					&& number.indexOf('E') < 0) {
+					try {
+						return Long.valueOf(number);
+					}
+					catch (NumberFormatException e) {
+						// too large for a long
+					}
+				}
+				return Double.valueOf(number);
+			}
+			case BOOLEAN:
+				return reader.nextBoolean();
+			case NULL:
+				reader.nextNull();
+				return null;
+			default:
+				throw new IOException("Malformed JSON: unexpected " + reader.peek());
+		}
+	}
+}
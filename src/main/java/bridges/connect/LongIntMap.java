@@ -0,0 +1,85 @@
+package bridges.connect;
+
+/**
+ *	A map from long keys to int values, without boxing.
+ *
+ *	Keys are stored in an open addressing table with linear probing,
+ *	which is kept at most half full.
+ */
+final class LongIntMap {
+	private long[] keys;
+	private int[] values;
+	private boolean[] used;
+	private int size = 0;
+	private final int missing;
+
+	/**
+	 *	@param expected number of keys expected, to size the table
+	 *	@param missing value returned by get for absent keys
+	 */
+	LongIntMap(int expected, int missing) {
+		int capacity = Integer.highestOneBit(Math.max(4, expected) * 2 - 1) << 1;
+		keys = new long[capacity];
+		values = new int[capacity];
+		used = new boolean[capacity];
+		this.missing = missing;
+	}
+
+	private static int hash(long key) {
+		// the low bits of the multiplication mix all the bits of the key
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	// the slot of key, or the empty slot where it would go
+	private int slot(long key) {
+		int mask = keys.length - 1;
+		int i = hash(key) & mask;
+		while (used[i] && keys[i] != key)
+			i = (i + 1) & mask;
+		return i;
+	}
+
+	/**
+	 *	@return the value of key, or the missing value if it is absent
+	 */
+	int get(long key) {
+		int i = slot(key);
+		return used[i] ? values[i] : missing;
+	}
+
+	void put(long key, int value) {
+		int i = slot(key);
+		if (!used[i]) {
+			if (2 * (size + 1) > keys.length) {
+				grow();
+				i = slot(key);
+			}
+			used[i] = true;
+			keys[i] = key;
+			size++;
+		}
+		values[i] = value;
+	}
+
+	int size() {
+		return size;
+	}
+
+	private void grow() {
+		long[] old_keys = keys;
+		int[] old_values = values;
+		boolean[] old_used = used;
+		keys = new long[old_keys.length * 2];
+		values = new int[old_keys.length * 2];
+		used = new boolean[old_keys.length * 2];
+		for (int i = 0; i < old_keys.length; ++i) {
+			if (old_used[i]) {
+				int j = slot(old_keys[i]);
+				used[j] = true;
+				keys[j] = old_keys[i];
+				values[j] = old_values[i];
+			}
+		}
+	}
+}
@@ -0,0 +1,67 @@
+package bridges.connect;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ *	@brief Keeps visualizations in memory, rather than sending them to
+ *	the BRIDGES server
+ *
+ *	Useful to test programs, or to measure how fast visualizations are
+ *	generated without any network. The JSON of each visualization is kept
+ *	by assignment number, in the order they were sent.
+ */
+public class MemorySink implements VisualizationSink {
+	private final Map<String, String> visualizations = new LinkedHashMap<>();
+	private long length = 0;
+
+	@Override
+	public void send(String assignment, Payload payload) throws IOException {
+		StringWriter out = new StringWriter();
+		payload.writeTo(out);
+		String json = out.toString();
+		synchronized (this) {
+			String previous = visualizations.remove(assignment);
+			if (previous != null)
+				length -= previous.length();
+			visualizations.put(assignment, json);
+			length += json.length();
+		}
+	}
+
+	/**
+	 *	@return the assignment numbers of the visualizations, in the order
+	 *	they were sent
+	 */
+	public synchronized List<String> getAssignments() {
+		return new ArrayList<>(visualizations.keySet());
+	}
+
+	/**
+	 *	@param assignment assignment number, as "12.03"
+	 *	@return the JSON of the visualization of that assignment, null if
+	 *	there is none
+	 */
+	public synchronized String getJSON(String assignment) {
+		return visualizations.get(assignment);
+	}
+
+	/**
+	 *	@return the total length of the JSON of the visualizations kept
+	 */
+	public synchronized long getLength() {
+		return length;
+	}
+
+	/**
+	 *	@brief Forgets all the visualizations
+	 */
+	public synchronized void clear() {
+		visualizations.clear();
+		length = 0;
+	}
+}
@@ -0,0 +1,40 @@
+package bridges.connect;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ *	@brief Where Bridges.visualize() sends visualizations, when they are
+ *	not sent to the BRIDGES server
+ *
+ *	A sink is set with Bridges.setVisualizationSink(). Each visualization
+ *	is given with its assignment number ("12.03" for the fourth
+ *	subassignment of assignment 12) and its JSON, which is written on
+ *	demand, so that it does not need to be held as one String.
+ *
+ *	@sa DirectorySink, MemorySink
+ */
+public interface VisualizationSink {
+	/**
+	 *	@brief The JSON of a visualization
+	 */
+	interface Payload {
+		/**
+		 *	@param out where to write the JSON
+		 *	@throws IOException if writing to out fails
+		 */
+		void writeTo(Writer out) throws IOException;
+	}
+
+	/**
+	 *	@brief Sends a visualization
+	 *
+	 *	The subassignment number is only incremented when this returns
+	 *	normally.
+	 *
+	 *	@param assignment assignment and subassignment number
+	 *	@param payload the JSON of the visualization
+	 *	@throws IOException if the visualization could not be sent
+	 */
+	void send(String assignment, Payload payload) throws IOException;
+}
@@ -55,6 +55,25 @@ public class AmenityData {
 		this.setCount(count);
 	}
 
+	/**
+	 * Copy constructor, the amenities are copied too
+	 *
+	 * @param other  amenity data to copy
+	 */
+	public AmenityData(AmenityData other) {
+		this.data = new ArrayList<>(other.data.size());
+		for (Amenities amenity : other.data) {
+			String[] amenity_other = amenity.getOther();
+			this.data.add(new Amenities(amenity.getId(), amenity.getLat(), amenity.getLon(),
+					amenity.getName(), amenity_other == null ? null : amenity_other.clone()));
+		}
+		this.setMinLat(other.minLat);
+		this.setMinLon(other.minLon);
+		this.setMaxLat(other.maxLat);
+		this.setMaxLon(other.maxLon);
+		this.setCount(other.count);
+	}
+
 	/**
 	 * get Amenity data
 	 * @return amenity data
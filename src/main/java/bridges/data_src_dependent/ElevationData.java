@@ -1,5 +1,7 @@
 package bridges.data_src_dependent;
 
+import java.util.Arrays;
+
 /**
  * Object that holds elevation data retrieved from NOAA repository
  *
@@ -10,8 +12,9 @@ package bridges.data_src_dependent;
 
 public class ElevationData {
 
-	// elevation data
-	private int [][] data;
+	// elevation data, row by row from the north: the value at (row, col)
+	// is values[row * cols + col]
+	private int[] values;
 
 	// data dimensions
 	private int cols;
@@ -24,7 +27,8 @@ public class ElevationData {
 	// cell size
 	private double cellsize;
 
-	// max val in dataset
+	// min and max val in dataset
+	private int minVal;
 	private int maxVal;
 
 
@@ -34,12 +38,13 @@ public class ElevationData {
 	 *
 	 */
 	public ElevationData() {
-		this.data = null;
+		this.values = null;
 		this.cols = 0;
 		this.rows = 0;
 		this.xll = 0;
 		this.yll = 0;
 		this.cellsize = 0;
+		this.minVal = 0;
 		this.maxVal = 0;
 	}
 
@@ -64,13 +69,67 @@ public class ElevationData {
 		this.setMaxVal(maxVal);
 	}
 
+	/**
+	 * constructors
+	 *
+	 * @param values  elevation data, row by row from the top (cols * rows
+	 *	ints), used as is (not copied)
+	 * @param cols  width of data
+	 * @param rows  height of data
+	 * @param xll  lower left x coord of origin
+	 * @param yll  lower left y coord of origin
+	 * @param cellsize  size of each cell (resolution)
+	 * @param minVal  min value in dataset
+	 * @param maxVal  max value in dataset
+	 */
+	public ElevationData (int[] values, int cols, int rows, double xll, double yll,
+		double cellsize, int minVal, int maxVal) {
+		if (values.length != cols * rows)
+			throw new IllegalArgumentException("Expected " + cols + "x" + rows
+				+ " values, got " + values.length);
+		this.values = values;
+		this.setCols(cols);
+		this.setRows(rows);
+		this.setxll(xll);
+		this.setyll(yll);
+		this.setCellSize(cellsize);
+		this.setMinVal(minVal);
+		this.setMaxVal(maxVal);
+	}
+
+	/**
+	 * copy constructor, the elevation values are copied too
+	 *
+	 * @param other  elevation data to copy
+	 */
+	public ElevationData (ElevationData other) {
+		if (other.values != null)
+			this.values = other.values.clone();
+		this.setCols(other.cols);
+		this.setRows(other.rows);
+		this.setxll(other.xll);
+		this.setyll(other.yll);
+		this.setCellSize(other.cellsize);
+		this.setMinVal(other.minVal);
+		this.setMaxVal(other.maxVal);
+	}
+
 	/**
 	 *
 	 * get elev. data
 	 *
-	 * @return the current dataset (2D array of ints)
+	 * The rows are built from the values each time, so changing them does
+	 * not change this dataset; use setData to store them back, or
+	 * getValue and getValues to read the values without copying them.
+	 *
+	 * @return a copy of the current dataset (2D array of ints)
 	 */
 	public int[][] getData() {
+		if (values == null)
+			return null;
+		int[][] data = new int[rows][];
+		for (int row = 0; row < rows; ++row)
+			data[row] = Arrays.copyOfRange(values, row * cols, (row + 1) * cols);
 		return data;
 	}
 
@@ -78,10 +137,46 @@ public class ElevationData {
 	 *
 	 * set elev. data
 	 *
+	 * The rows are copied, and give the width and height of the dataset.
+	 *
 	 * @param data (2D array of ints)
 	 */
 	public void setData(int[][] data) {
-		this.data = data;
+		int rows = data.length;
+		int cols = rows > 0 ? data[0].length : 0;
+		int[] values = new int[rows * cols];
+		for (int row = 0; row < rows; ++row) {
+			if (data[row].length != cols)
+				throw new IllegalArgumentException("Rows of different lengths");
+			System.arraycopy(data[row], 0, values, row * cols, cols);
+		}
+		this.values = values;
+		this.rows = rows;
+		this.cols = cols;
+	}
+
+	/**
+	 *
+	 * get the elevation values
+	 *
+	 * @return the values, row by row from the top: the value at (row,
+	 *	col) is at row * getCols() + col. This is the storage of the
+	 *	dataset, changing it changes the dataset.
+	 */
+	public int[] getValues() {
+		return values;
+	}
+
+	/**
+	 *
+	 * get the elevation of a cell
+	 *
+	 * @param row  row of the cell, 0 being the top row
+	 * @param col  column of the cell
+	 * @return the elevation at (row, col)
+	 */
+	public int getValue(int row, int col) {
+		return values[row * cols + col];
 	}
 
 	/**
@@ -183,6 +278,26 @@ public class ElevationData {
 		this.cellsize = cellsize;
 	}
 
+	/**
+	 *
+	 * get min value
+	 *
+	 * @return min value of dataset
+	 */
+	public int getMinVal() {
+		return minVal;
+	}
+
+	/**
+	 *
+	 * set min value
+	 *
+	 * @param minVal min value to be set
+	 */
+	public void setMinVal(int minVal) {
+		this.minVal = minVal;
+	}
+
 	/**
 	 *
 	 * get max value
@@ -13,6 +13,12 @@ import bridges.base.GraphAdjList;
  */
 public class OsmData {
 
+	// the map is stored by columns: vertex i is at (latitude[i],
+	// longitude[i]), edge j goes from edge_from[j] to edge_to[j]
+	private double[] latitude, longitude, cartesian_x, cartesian_y;
+	private int[] edge_from, edge_to;
+	private double[] distance;
+	// built from the columns on first use, see getVertices and getEdges
 	private OsmVertex[] vertices;
 	private OsmEdge[] edges;
 	private double[] latitude_range, longitude_range, cartesian_range_x, cartesian_range_y;
@@ -37,17 +43,83 @@ public class OsmData {
 		this.setName(name);
 	}
 
+	/**
+	 * Constructor from columns, which are used as is (not copied). No
+	 * OsmVertex or OsmEdge object is created unless getVertices,
+	 * getEdges or getGraph is called.
+	 *
+	 * @param latitude latitude of each vertex
+	 * @param longitude longitude of each vertex
+	 * @param edge_from index of the source vertex of each edge
+	 * @param edge_to index of the destination vertex of each edge
+	 * @param distance length of each edge
+	 * @param name dataset name
+	 */
+	public OsmData(double[] latitude, double[] longitude, int[] edge_from,
+		int[] edge_to, double[] distance, String name) {
+		if (longitude.length != latitude.length || edge_to.length != edge_from.length
+			|| distance.length != edge_from.length)
+			throw new IllegalArgumentException("Columns of different lengths");
+		this.edge_from = edge_from;
+		this.edge_to = edge_to;
+		this.distance = distance;
+		this.setColumns(latitude, longitude);
+		this.setName(name);
+	}
+
+	/**
+	 * Copy constructor. The columns, which are never changed in place,
+	 * are shared; the copy has its own name, ranges, vertices and edges,
+	 * so changing them does not change other.
+	 *
+	 * @param other map to copy
+	 */
+	public OsmData(OsmData other) {
+		this.latitude = other.latitude;
+		this.longitude = other.longitude;
+		this.cartesian_x = other.cartesian_x;
+		this.cartesian_y = other.cartesian_y;
+		this.edge_from = other.edge_from;
+		this.edge_to = other.edge_to;
+		this.distance = other.distance;
+		this.latitude_range = clone(other.latitude_range);
+		this.longitude_range = clone(other.longitude_range);
+		this.cartesian_range_x = clone(other.cartesian_range_x);
+		this.cartesian_range_y = clone(other.cartesian_range_y);
+		this.name = other.name;
+	}
+
+	private static double[] clone(double[] values) {
+		return values == null ? null : values.clone();
+	}
+
 	/**
 	 * Gets the nodes of the dataset
+	 *
+	 * The vertices are built from the columns on the first call. Changing
+	 * them does not change the map, use setVertices for that.
+	 *
 	 * @return the nodes of the dataset (array of OsmVertex)
 	 */
 	public OsmVertex[] getVertices() {
+		if (vertices == null && latitude != null) {
+			OsmVertex[] built = new OsmVertex[latitude.length];
+			for (int i = 0; i < built.length; ++i)
+				built[i] = new OsmVertex(latitude[i], longitude[i], cartesian_x[i], cartesian_y[i]);
+			vertices = built;
+		}
 		return vertices;
 	}
 
-	private void minMax(double[] arr, double val) {
-		arr[0] = arr[0] > val ? val : arr[0];
-		arr[1] = arr[1] < val ? val : arr[1];
+	private static double[] range(double[] values) {
+		double[] range = {Double.MAX_VALUE, -Double.MAX_VALUE};
+		for (double val : values) {
+			if (val < range[0])
+				range[0] = val;
+			if (val > range[1])
+				range[1] = val;
+		}
+		return range;
 	}
 
 
@@ -56,29 +128,104 @@ public class OsmData {
 	 * @param vertices nodes of the map
 	 */
 	public void setVertices(OsmVertex[] vertices) {
+		double[] lat = new double[vertices.length];
+		double[] lon = new double[vertices.length];
+		for (int i = 0; i < vertices.length; ++i) {
+			lat[i] = vertices[i].getLatitude();
+			lon[i] = vertices[i].getLongitude();
+		}
+		setColumns(lat, lon);
 		this.vertices = vertices;
-		double[] lat_range = {Double.MAX_VALUE, -Double.MAX_VALUE},
-				 lon_range = {Double.MAX_VALUE, -Double.MAX_VALUE},
-				 cart_range_x = {Double.MAX_VALUE, -Double.MAX_VALUE},
-				 cart_range_y = {Double.MAX_VALUE, -Double.MAX_VALUE};
-
-		for (OsmVertex vertex : vertices) {
-			double lat = vertex.getLatitude();
-			double lon = vertex.getLongitude();
-			double cart_x = vertex.getCartesian_coord()[0];
-			double cart_y = vertex.getCartesian_coord()[1];
-
-			minMax(lat_range, lat);
-			minMax(lon_range, lon);
-			minMax(cart_range_x, cart_x);
-			minMax(cart_range_y, cart_y);
+	}
+
+	private void setColumns(double[] lat, double[] lon) {
+		double[] cart_x = new double[lat.length];
+		double[] cart_y = new double[lat.length];
+		for (int i = 0; i < lat.length; ++i) {
+			cart_x[i] = OsmVertex.cartesianX(lat[i], lon[i]);
+			cart_y[i] = OsmVertex.cartesianY(lat[i], lon[i]);
 		}
 
-		this.latitude_range = lat_range;
-		this.longitude_range = lon_range;
-		this.cartesian_range_x = cart_range_x;
-		this.cartesian_range_y = cart_range_y;
+		this.latitude = lat;
+		this.longitude = lon;
+		this.cartesian_x = cart_x;
+		this.cartesian_y = cart_y;
+		this.vertices = null;
 
+		this.latitude_range = range(lat);
+		this.longitude_range = range(lon);
+		this.cartesian_range_x = range(cart_x);
+		this.cartesian_range_y = range(cart_y);
+	}
+
+	/**
+	 * @return the number of vertices of the map
+	 */
+	public int getVertexCount() {
+		return latitude == null ? 0 : latitude.length;
+	}
+
+	/**
+	 * @param i index of a vertex
+	 * @return the latitude of the vertex
+	 */
+	public double getLatitude(int i) {
+		return latitude[i];
+	}
+
+	/**
+	 * @param i index of a vertex
+	 * @return the longitude of the vertex
+	 */
+	public double getLongitude(int i) {
+		return longitude[i];
+	}
+
+	/**
+	 * @param i index of a vertex
+	 * @return the x cartesian coordinate of the vertex
+	 */
+	public double getCartesianX(int i) {
+		return cartesian_x[i];
+	}
+
+	/**
+	 * @param i index of a vertex
+	 * @return the y cartesian coordinate of the vertex
+	 */
+	public double getCartesianY(int i) {
+		return cartesian_y[i];
+	}
+
+	/**
+	 * @return the number of edges of the map
+	 */
+	public int getEdgeCount() {
+		return edge_from == null ? 0 : edge_from.length;
+	}
+
+	/**
+	 * @param j index of an edge
+	 * @return the index of the source vertex of the edge
+	 */
+	public int getEdgeSource(int j) {
+		return edge_from[j];
+	}
+
+	/**
+	 * @param j index of an edge
+	 * @return the index of the destination vertex of the edge
+	 */
+	public int getEdgeDestination(int j) {
+		return edge_to[j];
+	}
+
+	/**
+	 * @param j index of an edge
+	 * @return the length of the edge
+	 */
+	public double getEdgeDistance(int j) {
+		return distance[j];
 	}
 
 	/**
@@ -99,9 +246,19 @@ public class OsmData {
 
 	/**
 	 * get edges of OsmData
+	 *
+	 * The edges are built from the columns on the first call. Changing
+	 * them does not change the map, use setEdges for that.
+	 *
 	 * @return edges: OsmEdge[]
 	 */
 	public OsmEdge[] getEdges() {
+		if (edges == null && edge_from != null) {
+			OsmEdge[] built = new OsmEdge[edge_from.length];
+			for (int j = 0; j < built.length; ++j)
+				built[j] = new OsmEdge(edge_from[j], edge_to[j], distance[j]);
+			edges = built;
+		}
 		return edges;
 	}
 
@@ -111,6 +268,17 @@ public class OsmData {
 	 * @param edges: OsmEdge[]
 	 */
 	public void setEdges(OsmEdge[] edges) {
+		int[] from = new int[edges.length];
+		int[] to = new int[edges.length];
+		double[] dist = new double[edges.length];
+		for (int j = 0; j < edges.length; ++j) {
+			from[j] = edges[j].getSource();
+			to[j] = edges[j].getDestination();
+			dist[j] = edges[j].getDistance();
+		}
+		this.edge_from = from;
+		this.edge_to = to;
+		this.distance = dist;
 		this.edges = edges;
 	}
 
@@ -174,16 +342,15 @@ public class OsmData {
 	public GraphAdjList<Integer, OsmVertex, Double> getGraph() {
 		GraphAdjList<Integer, OsmVertex, Double> ret_graph = new GraphAdjList<>();
 
-		for (int i = 0; i < this.vertices.length; ++i) {
-			OsmVertex vertex = this.vertices[i];
-			double[] cart_coord = vertex.getCartesian_coord();
-			ret_graph.addVertex(i, vertex);
-			ret_graph.getVertex(i).setLocation(cart_coord[0], cart_coord[1]);
+		OsmVertex[] vertices = getVertices();
+		for (int i = 0; i < vertices.length; ++i) {
+			ret_graph.addVertex(i, vertices[i]);
+			ret_graph.getVertex(i).setLocation(cartesian_x[i], cartesian_y[i]);
 			ret_graph.getVertex(i).setColor("green");
 		}
 
-		for (OsmEdge edge : this.edges) {
-			ret_graph.addEdge(edge.getSource(), edge.getDestination(), edge.getDistance());
+		for (int j = 0; j < edge_from.length; ++j) {
+			ret_graph.addEdge(edge_from[j], edge_to[j], distance[j]);
 		}
 
 		return ret_graph;
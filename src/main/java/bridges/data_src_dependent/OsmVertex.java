@@ -21,6 +21,14 @@ public class OsmVertex {
 		this.to_cartesian_coord();
 	}
 
+	// a vertex whose cartesian coordinates are already known
+	OsmVertex(double latitude, double longitude, double cart_x, double cart_y) {
+		this.latitude = latitude;
+		this.longitude = longitude;
+		this.cartesian_coord[0] = cart_x;
+		this.cartesian_coord[1] = cart_y;
+	}
+
 	/**
 	 * get latitude of vertex
 	 * @return double
@@ -64,10 +72,21 @@ public class OsmVertex {
 	}
 
 	private void to_cartesian_coord() {
-		final int earth_radius = 6378;
-		double lat_rad = this.latitude * Math.PI / 180;
-		double lon_rad = this.longitude * Math.PI / 180;
-		this.cartesian_coord[0] = earth_radius * Math.cos(lat_rad) * Math.cos(lon_rad);
-		this.cartesian_coord[1] = earth_radius * Math.cos(lat_rad) * Math.sin(lon_rad);
+		this.cartesian_coord[0] = cartesianX(this.latitude, this.longitude);
+		this.cartesian_coord[1] = cartesianY(this.latitude, this.longitude);
+	}
+
+	private static final int earth_radius = 6378;
+
+	static double cartesianX(double latitude, double longitude) {
+		double lat_rad = latitude * Math.PI / 180;
+		double lon_rad = longitude * Math.PI / 180;
+		return earth_radius * Math.cos(lat_rad) * Math.cos(lon_rad);
+	}
+
+	static double cartesianY(double latitude, double longitude) {
+		double lat_rad = latitude * Math.PI / 180;
+		double lon_rad = longitude * Math.PI / 180;
+		return earth_radius * Math.cos(lat_rad) * Math.sin(lon_rad);
 	}
 }
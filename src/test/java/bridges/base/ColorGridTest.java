@@ -0,0 +1,67 @@
+package bridges.base;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.commons.codec.binary.Base64;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
+import org.junit.Test;
+
+public class ColorGridTest {
+	private static JSONObject parse(ColorGrid grid) throws Exception {
+		StringWriter out = new StringWriter();
+		grid.writeDataStructureRepresentation(out);
+		assertEquals(grid.getDataStructureRepresentation(), out.toString());
+		return (JSONObject) JSONValue.parse("{" + out);
+	}
+
+	private static byte[] pixels(JSONObject json) {
+		return Base64.decodeBase64((String) ((JSONArray) json.get("nodes")).get(0));
+	}
+
+	@Test
+	public void pixelsSpanningSeveralChunksAreEncodedWhole() throws Exception {
+		// random colors do not compress, the grid is sent raw: 90000
+		// bytes, beyond one 48 KB chunk
+		Random random = new Random(3);
+		ColorGrid grid = new ColorGrid(150, 150);
+		Color[] colors = new Color[150 * 150];
+		for (int i = 0; i < colors.length; ++i) {
+			colors[i] = new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256));
+			grid.set(i / 150, i % 150, colors[i]);
+		}
+
+		JSONObject json = parse(grid);
+		assertEquals("RAW", json.get("encoding"));
+		byte[] raw = pixels(json);
+		assertEquals(4 * colors.length, raw.length);
+		for (int i = 0; i < colors.length; ++i)
+			assertArrayEquals(colors[i].getByteRepresentation(), Arrays.copyOfRange(raw, 4 * i, 4 * i + 4));
+		assertEquals(Arrays.asList(150L, 150L), json.get("dimensions"));
+	}
+
+	@Test
+	public void uniformGridIsRunLengthEncoded() throws Exception {
+		Color red = new Color(255, 0, 0);
+		ColorGrid grid = new ColorGrid(100, 30, red);
+
+		JSONObject json = parse(grid);
+		assertEquals("RLE", json.get("encoding"));
+		byte[] rle = pixels(json);
+		assertEquals(0, rle.length % 5);
+		int pixels = 0;
+		for (int i = 0; i < rle.length; i += 5) {
+			pixels += (rle[i] & 0xff) + 1;
+			assertArrayEquals(red.getByteRepresentation(), Arrays.copyOfRange(rle, i + 1, i + 5));
+		}
+		assertEquals(3000, pixels);
+		assertTrue(rle.length < 3000);
+	}
+}
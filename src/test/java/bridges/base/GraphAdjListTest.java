@@ -0,0 +1,63 @@
+package bridges.base;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.StringWriter;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
+import org.junit.Test;
+
+public class GraphAdjListTest {
+	private static GraphAdjList<Integer, String, Double> graph(int n) {
+		GraphAdjList<Integer, String, Double> graph = new GraphAdjList<>();
+		for (int i = 0; i < n; ++i) {
+			graph.addVertex(i, "v" + i);
+			graph.getVertex(i).setLocation(i, 2 * i);
+		}
+		for (int i = 0; i + 1 < n; ++i)
+			graph.addEdge(i, i + 1, 1.0);
+		graph.addEdge(n - 1, 0, 1.0);
+		return graph;
+	}
+
+	private static JSONObject parse(GraphAdjList<Integer, String, Double> graph) throws Exception {
+		StringWriter out = new StringWriter();
+		graph.writeDataStructureRepresentation(out);
+		assertEquals(graph.getDataStructureRepresentation(), out.toString());
+		return (JSONObject) JSONValue.parse("{" + out);
+	}
+
+	@Test
+	public void representationListsEveryNodeAndLink() throws Exception {
+		JSONObject json = parse(graph(5));
+		assertEquals(5, ((JSONArray) json.get("nodes")).size());
+		JSONArray links = (JSONArray) json.get("links");
+		assertEquals(5, links.size());
+		for (Object link : links) {
+			JSONObject l = (JSONObject) link;
+			long source = (Long) l.get("source"), target = (Long) l.get("target");
+			assertEquals((source + 1) % 5, target);
+		}
+	}
+
+	@Test
+	public void largeRepresentationListsEveryNodeAndLink() throws Exception {
+		GraphAdjList<Integer, String, Double> graph = graph(5);
+		graph.forceLargeVisualization(true);
+		JSONObject json = parse(graph);
+		JSONArray nodes = (JSONArray) json.get("nodes");
+		assertEquals(5, nodes.size());
+		// [[x, y], [r, g, b, a]]
+		JSONArray location = (JSONArray) ((JSONArray) nodes.get(3)).get(0);
+		assertEquals(3.0, ((Number) location.get(0)).doubleValue(), 0);
+		assertEquals(6.0, ((Number) location.get(1)).doubleValue(), 0);
+		JSONArray links = (JSONArray) json.get("links");
+		assertEquals(5, links.size());
+		for (Object link : links) {
+			JSONArray l = (JSONArray) link;
+			assertEquals(((Long) l.get(0) + 1) % 5, (long) (Long) l.get(1));
+		}
+	}
+}
@@ -0,0 +1,156 @@
+package bridges.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CacheCodecTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private String dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = folder.newFolder("cache").getPath() + File.separator;
+    }
+
+    private static byte[] roundTrip(CacheCodec codec, byte[] data) throws IOException {
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        try (OutputStream out = codec.encode(encoded)) {
+            out.write(data);
+        }
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+        try (InputStream in = codec.decode(new ByteArrayInputStream(encoded.toByteArray()))) {
+            byte[] buf = new byte[4096];
+            int n;
+            while ((n = in.read(buf)) >= 0)
+                decoded.write(buf, 0, n);
+        }
+        return decoded.toByteArray();
+    }
+
+    private static byte[][] samples() {
+        Random random = new Random(42);
+        byte[] noise = new byte[300000];
+        random.nextBytes(noise);
+        StringBuilder json = new StringBuilder();
+        for (int i = 0; i < 20000; ++i)
+            json.append("{\"id\":").append(i).append(",\"name\":\"node ").append(i % 97).append("\"},");
+        byte[] runs = new byte[200000];
+        for (int i = 0; i < runs.length; ++i)
+            runs[i] = (byte) (i / 1000);
+        return new byte[][] {
+            new byte[0], {1}, "abcd".getBytes(), noise, json.toString().getBytes(), runs
+        };
+    }
+
+    @Test
+    public void codecsRoundTrip() throws IOException {
+        for (CacheCodec codec : new CacheCodec[] {CacheCodec.NONE, CacheCodec.GZIP, CacheCodec.LZ}) {
+            for (byte[] sample : samples())
+                assertArrayEquals(codec.getName(), sample, roundTrip(codec, sample));
+        }
+    }
+
+    @Test
+    public void lzCompressesRepetitiveDocuments() throws IOException {
+        byte[] json = samples()[4];
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        try (OutputStream out = CacheCodec.LZ.encode(encoded)) {
+            out.write(json);
+        }
+        assertTrue(encoded.size() < json.length / 2);
+    }
+
+    @Test
+    public void cacheReadsDocumentsOfEveryCodec() throws IOException {
+        SimpleCache cache = new SimpleCache(dir);
+        cache.setCodec(CacheCodec.GZIP);
+        cache.putDoc("gzip", "gzipped");
+        cache.setCodec(CacheCodec.LZ);
+        cache.putDoc("lz", "lz encoded");
+        cache.setCodec(CacheCodec.NONE);
+        cache.putDoc("none", "plain");
+
+        assertEquals("gzipped", cache.getDoc("gzip"));
+        assertEquals("lz encoded", cache.getDoc("lz"));
+        assertEquals("plain", cache.getDoc("none"));
+    }
+
+    @Test
+    public void plainDocumentsLookingEncodedAreReadAsIs() throws IOException {
+        SimpleCache cache = new SimpleCache(dir);
+        cache.putDoc("lzlike", "BLZ1 is not an LZ document");
+        cache.setCodec(CacheCodec.GZIP);
+        cache.putDoc("lzlike2", "BLZ1 still is not");
+        assertEquals("BLZ1 is not an LZ document", cache.getDoc("lzlike"));
+        assertEquals("BLZ1 still is not", cache.getDoc("lzlike2"));
+    }
+
+    @Test
+    public void documentsWithoutHeaderAreReadAsIs() throws IOException {
+        // written by an older version, starting with the gzip magic bytes
+        byte[] legacy = {(byte) 0x1f, (byte) 0x8b, 'x', 'y'};
+        Files.write(Paths.get(dir + "legacy"), legacy);
+        Files.write(Paths.get(dir + "text"), "[1,2,3]".getBytes());
+
+        SimpleCache cache = new SimpleCache(dir);
+        cache.setCodec(CacheCodec.GZIP);
+        try (InputStream in = cache.getDocStream("legacy")) {
+            byte[] read = new byte[8];
+            int n = in.read(read);
+            assertEquals(legacy.length, n);
+            for (int i = 0; i < n; ++i)
+                assertEquals(legacy[i], read[i]);
+        }
+        assertEquals("[1,2,3]", cache.getDoc("text"));
+    }
+
+    @Test
+    public void unknownCodecIsAnError() throws IOException {
+        SimpleCache writer = new SimpleCache(dir);
+        writer.setCodec(new CacheCodec() {
+            @Override
+            public String getName() {
+                return "custom";
+            }
+
+            @Override
+            public OutputStream encode(OutputStream out) {
+                return out;
+            }
+
+            @Override
+            public InputStream decode(InputStream in) {
+                return in;
+            }
+        });
+        writer.putDoc("doc", "content");
+        assertEquals("content", writer.getDoc("doc"));
+
+        try {
+            new SimpleCache(dir).getDoc("doc");
+            fail("read a document of an unknown codec");
+        }
+        catch (IOException e) {
+            assertTrue(e.getMessage().contains("custom"));
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package bridges.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CacheLockingTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private String dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = folder.newFolder("cache").getPath() + File.separator;
+    }
+
+    private static String repeat(char c, int n) {
+        StringBuilder out = new StringBuilder(n);
+        for (int i = 0; i < n; ++i)
+            out.append(c);
+        return out.toString();
+    }
+
+    @Test(timeout = 30000)
+    public void readersNeverSeePartialDocuments() throws Exception {
+        SimpleCache cache = new SimpleCache(dir);
+        String[] versions = {repeat('a', 200000), repeat('b', 100000)};
+        cache.putDoc("doc", versions[0]);
+
+        AtomicBoolean done = new AtomicBoolean(false);
+        ExecutorService pool = Executors.newFixedThreadPool(3);
+        try {
+            Future<?> writer = pool.submit(() -> {
+                for (int i = 0; i < 50; ++i)
+                    cache.putDoc("doc", versions[i % 2]);
+                done.set(true);
+                return null;
+            });
+            List<Future<Integer>> readers = new ArrayList<>();
+            for (int r = 0; r < 2; ++r) {
+                readers.add(pool.submit(() -> {
+                    int reads = 0;
+                    while (!done.get()) {
+                        String content = cache.getDoc("doc");
+                        assertTrue(content.equals(versions[0]) || content.equals(versions[1]));
+                        reads++;
+                    }
+                    return reads;
+                }));
+            }
+            writer.get();
+            for (Future<Integer> reader : readers)
+                reader.get();
+        }
+        finally {
+            pool.shutdownNow();
+            pool.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void processSafeCachesShareTheIndex() throws Exception {
+        // two caches on one directory stand for two processes
+        LRUCache first = new LRUCache(dir, 20);
+        LRUCache second = new LRUCache(dir, 20);
+        first.setProcessSafe(true);
+        second.setProcessSafe(true);
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int t = 0; t < 4; ++t) {
+                LRUCache cache = t % 2 == 0 ? first : second;
+                String prefix = "t" + t + "-";
+                writers.add(pool.submit(() -> {
+                    for (int i = 0; i < 25; ++i)
+                        cache.putDoc(prefix + i, "content " + i);
+                    return null;
+                }));
+            }
+            for (Future<?> writer : writers)
+                writer.get();
+        }
+        finally {
+            pool.shutdownNow();
+        }
+        first.flush();
+        second.flush();
+
+        // both see the same documents, and evictions kept the directory
+        // within the limit
+        LRUCache reopened = new LRUCache(dir, 20);
+        assertEquals(20, reopened.size());
+        String[] files = new File(dir).list((d, name) -> name.startsWith("t"));
+        assertEquals(20, files.length);
+        for (String name : files)
+            assertTrue(reopened.inCache(name));
+    }
+
+    @Test(timeout = 30000)
+    public void lockIsReleasedAfterEachChange() throws Exception {
+        LRUCache cache = new LRUCache(dir, 5);
+        cache.setProcessSafe(true);
+        cache.putDoc("a", "A");
+        cache.removeDoc("a");
+        cache.flush();
+        // the lock was released: another thread can take it
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            LRUCache other = pool.submit(() -> {
+                LRUCache c = new LRUCache(dir, 5);
+                c.setProcessSafe(true);
+                c.putDoc("b", "B");
+                return c;
+            }).get(10, TimeUnit.SECONDS);
+            assertEquals(1, other.size());
+        }
+        finally {
+            pool.shutdownNow();
+        }
+    }
+}
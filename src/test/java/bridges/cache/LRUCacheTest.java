@@ -0,0 +1,195 @@
+package bridges.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class LRUCacheTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private String dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = folder.newFolder("cache").getPath() + File.separator;
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedBeyondMaxSize() throws IOException {
+        LRUCache cache = new LRUCache(dir, 3);
+        cache.putDoc("a", "A");
+        cache.putDoc("b", "B");
+        cache.putDoc("c", "C");
+        assertEquals("A", cache.getDoc("a"));
+        cache.putDoc("d", "D");
+
+        assertEquals(3, cache.size());
+        assertTrue(cache.inCache("a"));
+        assertFalse(cache.inCache("b"));
+        assertTrue(cache.inCache("c"));
+        assertTrue(cache.inCache("d"));
+        assertFalse(new File(dir + "b").exists());
+        assertEquals(1, cache.getStats().getEvictions());
+    }
+
+    @Test
+    public void evictsBeyondMaxBytes() throws IOException {
+        // room for two documents
+        LRUCache probe = new LRUCache(folder.newFolder("probe").getPath() + File.separator, 0);
+        probe.putDoc("a", "0123456789");
+        long limit = 2 * probe.getTotalBytes() + 1;
+
+        LRUCache cache = new LRUCache(dir, 0, limit, Weigher.STORED_BYTES);
+        cache.putDoc("a", "0123456789");
+        cache.putDoc("b", "0123456789");
+        assertEquals(2, cache.size());
+        cache.putDoc("c", "0123456789");
+
+        assertTrue(cache.getTotalBytes() <= limit);
+        assertFalse(cache.inCache("a"));
+        assertTrue(cache.inCache("b"));
+        assertTrue(cache.inCache("c"));
+    }
+
+    @Test
+    public void neverEvictsTheDocumentJustWritten() throws IOException {
+        LRUCache cache = new LRUCache(dir, 0, 5, Weigher.STORED_BYTES);
+        cache.putDoc("big", "0123456789");
+        assertTrue(cache.inCache("big"));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void reopenedCacheReplaysTheJournal() throws IOException {
+        LRUCache cache = new LRUCache(dir, 3);
+        cache.putDoc("a", "A");
+        cache.putDoc("b", "B");
+        cache.putDoc("c", "C");
+        cache.getDoc("a");
+        cache.flush();
+        assertTrue(new File(dir + "lru.journal").exists());
+
+        LRUCache reopened = new LRUCache(dir, 3);
+        assertEquals(3, reopened.size());
+        assertEquals(cache.getTotalBytes(), reopened.getTotalBytes());
+        // b is the least recently used once the read of a is replayed
+        reopened.putDoc("d", "D");
+        assertFalse(reopened.inCache("b"));
+        assertTrue(reopened.inCache("a"));
+    }
+
+    @Test
+    public void unflushedReadsAreNotPersisted() throws IOException {
+        LRUCache cache = new LRUCache(dir, 3);
+        cache.putDoc("a", "A");
+        cache.putDoc("b", "B");
+        cache.putDoc("c", "C");
+        cache.getDoc("a");
+
+        LRUCache reopened = new LRUCache(dir, 3);
+        reopened.putDoc("d", "D");
+        assertFalse(reopened.inCache("a"));
+    }
+
+    @Test
+    public void compactsTheJournalIntoTheIndex() throws IOException {
+        LRUCache cache = new LRUCache(dir, 10);
+        for (int i = 0; i < 10; ++i)
+            cache.putDoc("doc" + i, "x");
+        for (int i = 0; i < 600; ++i)
+            cache.getDoc("doc" + (i % 10));
+        cache.flush();
+        assertTrue(new File(dir + "lru").exists());
+
+        LRUCache reopened = new LRUCache(dir, 10);
+        assertEquals(10, reopened.size());
+        // the index is readable by older versions: plain comma separated
+        String index = new String(Files.readAllBytes(new File(dir + "lru").toPath()));
+        assertEquals(10, index.split(",").length);
+    }
+
+    @Test
+    public void documentRemovedBehindTheCacheReadsAsNull() throws IOException {
+        LRUCache cache = new LRUCache(dir, 3);
+        cache.putDoc("a", "A");
+        assertTrue(new File(dir + "a").delete());
+
+        assertNull(cache.getDoc("a"));
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.getStats().getMisses());
+    }
+
+    @Test
+    public void removeDocForgetsTheDocument() throws IOException {
+        LRUCache cache = new LRUCache(dir, 3);
+        cache.putDoc("a", "A");
+        cache.removeDoc("a");
+        assertFalse(cache.inCache("a"));
+        assertEquals(0, cache.getTotalBytes());
+
+        assertEquals(0, new LRUCache(dir, 3).size());
+    }
+
+    @Test
+    public void readsAreCountedAsHitsWithTheirReadTime() throws IOException {
+        LRUCache cache = new LRUCache(dir, 3);
+        cache.putDoc("a", "A");
+        cache.putBytes("b", ByteBuffer.wrap(new byte[] {1, 2}));
+
+        assertEquals("A", cache.getDoc("a"));
+        assertEquals(2, cache.mapDoc("b").remaining());
+        assertEquals(2, cache.getStats().getHits());
+        assertEquals(2, cache.getStats().getReadCount());
+
+        // a stream is timed until it is closed
+        InputStream in = cache.getDocStream("a");
+        assertEquals('A', in.read());
+        assertEquals(3, cache.getStats().getHits());
+        assertEquals(2, cache.getStats().getReadCount());
+        in.close();
+        in.close();
+        assertEquals(3, cache.getStats().getReadCount());
+        assertEquals(0, cache.getStats().getMisses());
+    }
+
+    @Test
+    public void peekedDocumentsAreNotCounted() throws IOException {
+        LRUCache cache = new LRUCache(dir, 2);
+        cache.putDoc("a", "A");
+        cache.putDoc("b", "B");
+
+        assertNull(cache.peekDoc("missing"));
+        assertEquals("A", cache.peekDoc("a"));
+        assertEquals(0, cache.getStats().getHits());
+        assertEquals(0, cache.getStats().getMisses());
+        assertEquals(0, cache.getStats().getReadCount());
+
+        // a peek still marks the document as recently used
+        cache.putDoc("c", "C");
+        assertTrue(cache.inCache("a"));
+        assertFalse(cache.inCache("b"));
+    }
+
+    @Test
+    public void smallDocumentsWeighAtLeastTheMinimumWeight() throws IOException {
+        LRUCache cache = new LRUCache(dir, 0, 3000, Weigher.atLeast(1000));
+        for (int i = 0; i < 4; ++i)
+            cache.putDoc("doc" + i, "x");
+        assertEquals(3, cache.size());
+        assertEquals(3000, cache.getTotalBytes());
+        assertFalse(cache.inCache("doc0"));
+    }
+}
@@ -0,0 +1,79 @@
+package bridges.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class ObjectCacheTest {
+    private static ObjectCache<int[]> cache(int maxEntries, long maxWeight) {
+        return new ObjectCache<>(maxEntries, maxWeight, values -> values.length);
+    }
+
+    @Test
+    public void leastRecentlyUsedObjectsAreEvictedByCount() {
+        ObjectCache<int[]> cache = new ObjectCache<>(2);
+        int[] a = new int[1];
+        cache.put("a", a);
+        cache.put("b", new int[1]);
+        cache.get("a");
+        cache.put("c", new int[1]);
+
+        assertSame(a, cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getStats().getEvictions());
+    }
+
+    @Test
+    public void objectsAreEvictedByWeight() {
+        ObjectCache<int[]> cache = cache(100, 10);
+        cache.put("a", new int[4]);
+        cache.put("b", new int[4]);
+        assertEquals(8, cache.getWeight());
+
+        // many light objects and one heavy one do not fit together
+        cache.put("c", new int[6]);
+        assertNull(cache.get("a"));
+        assertEquals(10, cache.getWeight());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void objectsHeavierThanTheCacheAreNotKept() {
+        ObjectCache<int[]> cache = cache(100, 10);
+        cache.put("a", new int[4]);
+        cache.put("huge", new int[11]);
+
+        assertNull(cache.get("huge"));
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.getWeight());
+    }
+
+    @Test
+    public void replacedAndRemovedObjectsGiveTheirWeightBack() {
+        ObjectCache<int[]> cache = cache(100, 10);
+        cache.put("a", new int[4]);
+        cache.put("a", new int[3]);
+        assertEquals(3, cache.getWeight());
+        cache.put("b", new int[5]);
+        cache.remove("a");
+        assertEquals(5, cache.getWeight());
+        cache.clear();
+        assertEquals(0, cache.getWeight());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void loweringTheMaximumWeightEvicts() {
+        ObjectCache<int[]> cache = cache(100, 10);
+        cache.put("a", new int[4]);
+        cache.put("b", new int[4]);
+        cache.setMaxWeight(5);
+
+        assertEquals(5, cache.getMaxWeight());
+        assertNull(cache.get("a"));
+        assertEquals(4, cache.getWeight());
+    }
+}
@@ -0,0 +1,296 @@
+package bridges.connect;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import bridges.base.Array1D;
+import bridges.base.Element;
+import bridges.base.GraphAdjList;
+
+public class BridgesTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Bridges bridges;
+	private MemorySink sink;
+	private Array1D<String> array;
+
+	@Before
+	public void setUp() {
+		bridges = new Bridges(5, "tester", "key");
+		sink = new MemorySink();
+		bridges.setVisualizationSink(sink);
+		bridges.postVisualizationLink(false);
+		array = new Array1D<>(3);
+		for (int i = 0; i < 3; i++)
+			array.getElement(i).setLabel("el" + i);
+		bridges.setDataStructure(array);
+	}
+
+	@After
+	public void tearDown() {
+		bridges.setDeltaVisualization(false);
+		bridges.setVisualizationSink(null);
+	}
+
+	private static JSONObject parse(String json) throws ParseException {
+		return (JSONObject) new JSONParser().parse(json);
+	}
+
+	// labels of the nodes of a full visualization
+	private static List<String> labels(String json) throws ParseException {
+		List<String> labels = new ArrayList<>();
+		for (Object node : (JSONArray) parse(json).get("nodes"))
+			labels.add((String) ((JSONObject) node).get("name"));
+		return labels;
+	}
+
+	@Test
+	public void visualizationsGoToTheSinkWithTheirSubassignment() throws Exception {
+		String full = bridges.getJSONHeader() + array.getDataStructureRepresentation();
+		bridges.visualize();
+		array.getElement(0).setLabel("changed");
+		bridges.visualize();
+
+		assertEquals(Arrays.asList("5.00", "5.01"), sink.getAssignments());
+		// the streamed JSON is the same as the one generated at once
+		assertEquals(full, sink.getJSON("5.00"));
+		assertEquals(Arrays.asList("changed", "el1", "el2"), labels(sink.getJSON("5.01")));
+		assertEquals("5.02", Bridges.getAssignment());
+	}
+
+	@Test
+	public void visualizationsCanBeWrittenToFiles() throws Exception {
+		File dir = folder.getRoot();
+		bridges.setVisualizationSink(new DirectorySink(dir));
+		bridges.visualize();
+		bridges.visualizeAsync();
+		bridges.flush();
+
+		String[] names = dir.list();
+		Arrays.sort(names);
+		assertArrayEquals(new String[] {"5.00.json", "5.01.json"}, names);
+		String json = new String(Files.readAllBytes(new File(dir, "5.00.json").toPath()),
+				StandardCharsets.UTF_8);
+		assertEquals(Arrays.asList("el0", "el1", "el2"), labels(json));
+	}
+
+	@Test
+	public void asyncVisualizationsAreSnapshotsSentInOrder() throws Exception {
+		bridges.visualizeAsync();
+		array.getElement(1).setLabel("changed");
+		bridges.visualizeAsync();
+		bridges.flush();
+
+		assertEquals(Arrays.asList("5.00", "5.01"), sink.getAssignments());
+		assertEquals(Arrays.asList("el0", "el1", "el2"), labels(sink.getJSON("5.00")));
+		assertEquals(Arrays.asList("el0", "changed", "el2"), labels(sink.getJSON("5.01")));
+		assertEquals("5.02", Bridges.getAssignment());
+	}
+
+	@Test
+	public void eachAsyncVisualizationGetsItsOwnSubassignment() throws Exception {
+		for (int i = 0; i < 12; i++)
+			bridges.visualizeAsync();
+		bridges.visualize();
+
+		List<String> expected = new ArrayList<>();
+		for (int i = 0; i < 13; i++)
+			expected.add(String.format("5.%02d", i));
+		assertEquals(expected, sink.getAssignments());
+		assertEquals("5.13", Bridges.getAssignment());
+	}
+
+	@Test
+	public void uploadsDoNotKeepTheProgramAlive() throws Exception {
+		Thread caller = Thread.currentThread();
+		List<Thread> senders = new ArrayList<>();
+		CountDownLatch sent = new CountDownLatch(1);
+		bridges.setVisualizationSink((assignment, payload) -> {
+			senders.add(Thread.currentThread());
+			sent.countDown();
+		});
+		bridges.visualizeAsync();
+		assertTrue(sent.await(10, TimeUnit.SECONDS));
+		bridges.flush();
+
+		assertNotSame(caller, senders.get(0));
+		assertTrue(senders.get(0).isDaemon());
+	}
+
+	@Test
+	public void failedAsyncUploadsDoNotUseASubassignment() throws Exception {
+		bridges.setVisualizationSink((assignment, payload) -> {
+			throw new IOException("full");
+		});
+		bridges.visualizeAsync();
+		bridges.flush();
+		assertEquals("5.00", Bridges.getAssignment());
+
+		bridges.setVisualizationSink(sink);
+		bridges.visualizeAsync();
+		bridges.flush();
+		assertEquals(Arrays.asList("5.00"), sink.getAssignments());
+	}
+
+	@Test
+	public void runtimeFailuresOfAsyncUploadsAreReported() throws Exception {
+		bridges.setVisualizationSink((assignment, payload) -> {
+			throw new IllegalStateException("sink broken");
+		});
+		ByteArrayOutputStream err = new ByteArrayOutputStream();
+		PrintStream stderr = System.err;
+		System.setErr(new PrintStream(err, true, "UTF-8"));
+		try {
+			bridges.visualizeAsync();
+			bridges.flush();
+		}
+		finally {
+			System.setErr(stderr);
+		}
+
+		assertTrue(err.toString("UTF-8").contains("sink broken"));
+		assertEquals("5.00", Bridges.getAssignment());
+	}
+
+	@Test
+	public void deltasListOnlyTheChangedElements() throws Exception {
+		bridges.setDeltaVisualization(true);
+		bridges.visualize();
+		array.getElement(1).getVisualizer().setColor("red");
+		bridges.visualize();
+		bridges.visualize();
+
+		assertEquals(Arrays.asList("5.00", "5.01", "5.02"), sink.getAssignments());
+		assertFalse(parse(sink.getJSON("5.00")).containsKey("delta_of"));
+
+		JSONObject delta = parse(sink.getJSON("5.01"));
+		assertEquals("5.00", delta.get("delta_of"));
+		JSONObject nodes = (JSONObject) delta.get("nodes");
+		assertEquals(Collections.singleton("1"), nodes.keySet());
+		assertEquals("el1", ((JSONObject) nodes.get("1")).get("name"));
+		// a delta has the header of a full visualization
+		assertEquals(parse(sink.getJSON("5.00")).get("visual"), delta.get("visual"));
+
+		delta = parse(sink.getJSON("5.02"));
+		assertEquals("5.01", delta.get("delta_of"));
+		assertTrue(((JSONObject) delta.get("nodes")).isEmpty());
+	}
+
+	@Test
+	public void replacedElementsNeedAFullVisualization() throws Exception {
+		bridges.setDeltaVisualization(true);
+		bridges.visualize();
+		array.setElement(2, new Element<String>("new", "N"));
+		bridges.visualize();
+
+		JSONObject full = parse(sink.getJSON("5.01"));
+		assertFalse(full.containsKey("delta_of"));
+		assertEquals(Arrays.asList("el0", "el1", "new"), labels(sink.getJSON("5.01")));
+	}
+
+	@Test
+	public void graphDeltasListTheChangedLinks() throws Exception {
+		GraphAdjList<String, String, String> graph = new GraphAdjList<>();
+		graph.addVertex("a", "A");
+		graph.addVertex("b", "B");
+		graph.addEdge("a", "b", "ab");
+		graph.addEdge("b", "a", "ba");
+		bridges.setDataStructure(graph);
+		bridges.setDeltaVisualization(true);
+		bridges.visualize();
+		graph.getLinkVisualizer("b", "a").setColor("red");
+		bridges.visualize();
+		graph.addVertex("c", "C");
+		bridges.visualize();
+
+		JSONObject delta = parse(sink.getJSON("5.01"));
+		assertEquals("5.00", delta.get("delta_of"));
+		assertTrue(((JSONObject) delta.get("nodes")).isEmpty());
+		assertEquals(Collections.singleton("1"), ((JSONObject) delta.get("links")).keySet());
+
+		// added vertices change the structure
+		assertFalse(parse(sink.getJSON("5.02")).containsKey("delta_of"));
+	}
+
+	@Test
+	public void deltasAreOnlyForTheDataStructureVisualizedLast() throws Exception {
+		bridges.setDeltaVisualization(true);
+		bridges.visualize();
+		Array1D<String> other = new Array1D<>(2);
+		bridges.setDataStructure(other);
+		bridges.visualize();
+		bridges.setDataStructure(array);
+		bridges.visualize();
+
+		for (String assignment : sink.getAssignments())
+			assertFalse(parse(sink.getJSON(assignment)).containsKey("delta_of"));
+	}
+
+	@Test
+	public void asyncVisualizationsAreTheBaseOfLaterDeltas() throws Exception {
+		bridges.setDeltaVisualization(true);
+		bridges.visualizeAsync();
+		array.getElement(0).setLabel("changed");
+		bridges.visualize();
+
+		assertFalse(parse(sink.getJSON("5.00")).containsKey("delta_of"));
+		JSONObject delta = parse(sink.getJSON("5.01"));
+		assertEquals("5.00", delta.get("delta_of"));
+		assertEquals(Collections.singleton("0"), ((JSONObject) delta.get("nodes")).keySet());
+	}
+
+	@Test
+	public void failedUploadsAreNotTheBaseOfDeltas() throws Exception {
+		AtomicBoolean fail = new AtomicBoolean(true);
+		bridges.setVisualizationSink((assignment, payload) -> {
+			if (fail.get())
+				throw new IOException("full");
+			sink.send(assignment, payload);
+		});
+		bridges.setDeltaVisualization(true);
+		bridges.visualize();
+		fail.set(false);
+		bridges.visualize();
+
+		assertEquals(Arrays.asList("5.00"), sink.getAssignments());
+		assertFalse(parse(sink.getJSON("5.00")).containsKey("delta_of"));
+	}
+
+	@Test
+	public void deltasAreNotSentWithoutBeingAsked() throws Exception {
+		bridges.visualize();
+		array.getElement(1).setLabel("changed");
+		bridges.visualize();
+
+		assertFalse(parse(sink.getJSON("5.01")).containsKey("delta_of"));
+		assertEquals(Arrays.asList("el0", "changed", "el2"), labels(sink.getJSON("5.01")));
+	}
+}
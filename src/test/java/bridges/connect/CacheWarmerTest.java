@@ -0,0 +1,90 @@
+package bridges.connect;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.http.client.HttpResponseException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import bridges.cache.LRUCache;
+
+public class CacheWarmerTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private FakeDataSource ds;
+
+	@Before
+	public void setUp() throws IOException {
+		DataSource.setCache(new LRUCache(folder.newFolder("cache").getPath() + File.separator, 100));
+		ds = new FakeDataSource();
+	}
+
+	private static List<CacheWarmer.Query> manifest(String json) throws IOException {
+		return CacheWarmer.readManifest(new StringReader(json));
+	}
+
+	@Test
+	public void wikidataRangesAreSplitInYears() throws IOException {
+		List<CacheWarmer.Query> queries = manifest("[{\"dataset\":\"wikidata\",\"begin\":1990,\"end\":1992},"
+			+ "{\"dataset\":\"songs\",\"title\":\"Delicate\"}]");
+		assertEquals(4, queries.size());
+		assertTrue(queries.get(0).toString().contains("1990"));
+		assertTrue(queries.get(3).toString().contains("Delicate"));
+	}
+
+	@Test
+	public void malformedQueriesAreRejected() {
+		String[] manifests = {
+			"{}",
+			"[{\"level\":\"default\"}]",
+			"[{\"dataset\":\"unknown\"}]",
+			"[{\"dataset\":\"songs\",\"artist\":\"Taylor Swift\"}]",
+			"[{\"dataset\":\"elevation\",\"minLat\":0,\"minLon\":0,\"maxLat\":1,\"maxLon\":\"x\",\"res\":1}]"
+		};
+		for (String json : manifests) {
+			try {
+				manifest(json);
+				fail("accepted " + json);
+			}
+			catch (IOException e) {
+				assertTrue(e.getMessage().startsWith("Malformed manifest"));
+			}
+		}
+	}
+
+	@Test
+	public void failedQueriesAreReported() throws IOException {
+		ds.answer("wikidata", 500, "busy");
+		ds.answer("songs/find/Delicate", "{\"song\":\"Delicate\",\"artist\":\"Taylor Swift\"}");
+		List<CacheWarmer.Query> queries = manifest("[{\"dataset\":\"wikidata\",\"begin\":1990,\"end\":1990},"
+			+ "{\"dataset\":\"songs\",\"title\":\"Delicate\",\"artist\":\"Taylor Swift\"}]");
+
+		Map<CacheWarmer.Query, Exception> failures = new CacheWarmer(ds, 2).warm(queries);
+		assertEquals(1, failures.size());
+		Exception error = failures.get(queries.get(0));
+		assertTrue(error instanceof HttpResponseException);
+		assertEquals(500, ((HttpResponseException) error).getStatusCode());
+	}
+
+	@Test
+	public void warmedSongsAreReadFromTheCache() throws IOException {
+		ds.answer("songs/find/Delicate", "{\"song\":\"Delicate\",\"artist\":\"Taylor Swift\"}");
+		List<CacheWarmer.Query> queries = manifest("[{\"dataset\":\"songs\",\"title\":\"Delicate\"}]");
+		assertTrue(new CacheWarmer(ds, 1).warm(queries).isEmpty());
+
+		FakeDataSource later = new FakeDataSource();
+		assertEquals("Taylor Swift", later.getSong("Delicate").getArtist());
+		assertEquals(0, later.countRequests("songs"));
+	}
+}
@@ -0,0 +1,237 @@
+package bridges.connect;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.http.client.HttpResponseException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import bridges.validation.RateLimitException;
+
+public class ConnectorTest {
+	// what the server received
+	static class Upload {
+		final String encoding;
+		final String body;
+
+		Upload(String encoding, String body) {
+			this.encoding = encoding;
+			this.body = body;
+		}
+	}
+
+	private HttpServer server;
+	private final List<Upload> uploads = Collections.synchronizedList(new ArrayList<Upload>());
+	// status answered to compressed and to plain bodies, -1 to drop the
+	// connection
+	private volatile int gzip_status = 200;
+	private volatile int plain_status = 200;
+	private Connector connector;
+
+	@Before
+	public void setUp() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/", this::handle);
+		server.start();
+		Bridges.setUserName("tester");
+		connector = new Connector();
+		connector.setServerURL("http://127.0.0.1:" + server.getAddress().getPort());
+		connector.setCompressionThreshold(100);
+	}
+
+	@After
+	public void tearDown() {
+		server.stop(0);
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		String encoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+		InputStream in = exchange.getRequestBody();
+		if ("gzip".equals(encoding))
+			in = new GZIPInputStream(in);
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		byte[] buf = new byte[4096];
+		int n;
+		while ((n = in.read(buf)) >= 0)
+			body.write(buf, 0, n);
+		uploads.add(new Upload(encoding, new String(body.toByteArray(), StandardCharsets.ISO_8859_1)));
+
+		int status = "gzip".equals(encoding) ? gzip_status : plain_status;
+		if (status < 0) {
+			// the connection is dropped without an answer
+			throw new IOException("dropped");
+		}
+		byte[] answer = (status < 400 ? "{\"status\":\"ok\"}" : "{\"error\":\"status " + status + "\"}")
+			.getBytes(StandardCharsets.UTF_8);
+		exchange.sendResponseHeaders(status, answer.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(answer);
+		}
+	}
+
+	private static String body(int length) {
+		StringBuilder out = new StringBuilder(length);
+		for (int i = 0; i < length; ++i)
+			out.append((char) ('a' + i % 26));
+		return out.toString();
+	}
+
+	@Test
+	public void bodiesAreSentAsIsWithoutCompression() throws Exception {
+		connector.post("/upload", body(500));
+		assertEquals(1, uploads.size());
+		assertNull(uploads.get(0).encoding);
+		assertEquals(body(500), uploads.get(0).body);
+	}
+
+	@Test
+	public void largeBodiesAreCompressed() throws Exception {
+		connector.setCompression(true);
+		connector.post("/upload", body(99));
+		connector.post("/upload", body(100));
+		assertNull(uploads.get(0).encoding);
+		assertEquals("gzip", uploads.get(1).encoding);
+		assertEquals(body(100), uploads.get(1).body);
+	}
+
+	@Test
+	public void thresholdCountsTheBytesSent() throws Exception {
+		connector.setCompression(true);
+		// 120 chars, but 60 characters sent as 60 bytes
+		StringBuilder data = new StringBuilder();
+		for (int i = 0; i < 60; ++i)
+			data.appendCodePoint(0x1F600);
+		connector.post("/upload", data.toString());
+		assertNull(uploads.get(0).encoding);
+		assertEquals(60, uploads.get(0).body.length());
+	}
+
+	@Test
+	public void rejectedEncodingFallsBackToPlainBodies() throws Exception {
+		for (int status : new int[] {415, 400}) {
+			uploads.clear();
+			connector.setCompression(true);
+			gzip_status = status;
+			connector.post("/upload", body(200));
+			assertEquals(2, uploads.size());
+			assertEquals("gzip", uploads.get(0).encoding);
+			assertNull(uploads.get(1).encoding);
+			assertEquals(body(200), uploads.get(1).body);
+
+			// compression is off from then on
+			connector.post("/upload", body(200));
+			assertEquals(3, uploads.size());
+			assertNull(uploads.get(2).encoding);
+		}
+	}
+
+	@Test
+	public void otherFailuresAreNotRetried() throws Exception {
+		connector.setCompression(true);
+		for (int status : new int[] {401, 500, -1}) {
+			uploads.clear();
+			gzip_status = status;
+			try {
+				connector.post("/upload", body(200));
+				fail("upload answered with " + status + " succeeded");
+			}
+			catch (HttpResponseException e) {
+				assertEquals(status, e.getStatusCode());
+			}
+			catch (IOException e) {
+				assertEquals(-1, status);
+			}
+			assertEquals(1, uploads.size());
+			assertTrue(connector.compress);
+		}
+	}
+
+	@Test(expected = RateLimitException.class)
+	public void unavailableServerIsRateLimited() throws Exception {
+		connector.setCompression(true);
+		gzip_status = 503;
+		connector.post("/upload", body(200));
+	}
+
+	@Test
+	public void plainBodyRejectedToo() throws Exception {
+		connector.setCompression(true);
+		gzip_status = 400;
+		plain_status = 400;
+		try {
+			connector.post("/upload", body(200));
+			fail("a bad request succeeded");
+		}
+		catch (HttpResponseException e) {
+			assertEquals(400, e.getStatusCode());
+			assertTrue(e.getMessage().contains("status 400"));
+		}
+		// the body was at fault, not the encoding
+		assertTrue(connector.compress);
+	}
+
+	@Test
+	public void streamedBodiesAreCompressedOnceLarge() throws Exception {
+		connector.setCompression(true);
+		AtomicInteger calls = new AtomicInteger();
+		connector.post("/upload", out -> {
+			calls.incrementAndGet();
+			out.write(body(50).getBytes(StandardCharsets.ISO_8859_1));
+		});
+		assertEquals(1, calls.get());
+		assertNull(uploads.get(0).encoding);
+
+		connector.post("/upload", out -> {
+			calls.incrementAndGet();
+			for (int i = 0; i < 10; ++i)
+				out.write(body(50).getBytes(StandardCharsets.ISO_8859_1));
+		});
+		// written once, not once to measure it and once to send it
+		assertEquals(2, calls.get());
+		assertEquals("gzip", uploads.get(1).encoding);
+		assertEquals(repeat(body(50), 10), uploads.get(1).body);
+	}
+
+	@Test
+	public void rejectedStreamedBodiesAreNotWrittenAgain() throws Exception {
+		connector.setCompression(true);
+		gzip_status = 415;
+		AtomicInteger calls = new AtomicInteger();
+		connector.post("/upload", out -> {
+			calls.incrementAndGet();
+			for (int i = 0; i < 10; ++i)
+				out.write(body(50).getBytes(StandardCharsets.ISO_8859_1));
+		});
+		assertEquals(1, calls.get());
+		assertEquals(2, uploads.size());
+		assertEquals("gzip", uploads.get(0).encoding);
+		assertNull(uploads.get(1).encoding);
+		assertEquals(repeat(body(50), 10), uploads.get(1).body);
+	}
+
+	private static String repeat(String s, int n) {
+		StringBuilder out = new StringBuilder();
+		for (int i = 0; i < n; ++i)
+			out.append(s);
+		return out.toString();
+	}
+}
@@ -0,0 +1,116 @@
+package bridges.connect;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpResponseException;
+import org.apache.http.client.methods.HttpGet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import bridges.cache.LRUCache;
+import bridges.data_src_dependent.OsmData;
+
+public class DataSourceAsyncTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private FakeDataSource ds;
+	// tasks given to the executor, run when the test says so
+	private final List<Runnable> tasks = new ArrayList<>();
+
+	@Before
+	public void setUp() throws IOException {
+		DataSource.setCache(new LRUCache(folder.newFolder("cache").getPath() + File.separator, 100));
+		ds = new FakeDataSource();
+		ds.answer("hash?", "h1");
+		ds.answer("coords?", "{\"nodes\":[[1,35.0,-80.0]],\"edges\":[],\"meta\":{\"name\":\"map\"}}");
+	}
+
+	@After
+	public void tearDown() {
+		DataSource.setAsyncExecutor(null);
+	}
+
+	private void runTasks() {
+		for (Runnable task : tasks)
+			task.run();
+		tasks.clear();
+	}
+
+	@Test
+	public void asyncGettersRunOnTheExecutor() throws Exception {
+		DataSource.setAsyncExecutor(tasks::add);
+		CompletableFuture<OsmData> map = ds.getOsmDataAsync(35.0, -80.1, 35.1, -80.0);
+
+		// nothing is requested before the executor runs the getter
+		assertFalse(map.isDone());
+		assertTrue(ds.getRequests().isEmpty());
+
+		runTasks();
+		assertEquals("map", map.get().getName());
+		assertEquals(1, ds.countRequests("coords?"));
+	}
+
+	@Test
+	public void failedGettersCompleteExceptionally() throws Exception {
+		DataSource.setAsyncExecutor(tasks::add);
+		ds.answer("coords?", 500, "down");
+		CompletableFuture<OsmData> map = ds.getOsmDataAsync(35.0, -80.1, 35.1, -80.0);
+		runTasks();
+
+		try {
+			map.get();
+			fail("expected an ExecutionException");
+		}
+		catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof HttpResponseException);
+			assertEquals(500, ((HttpResponseException) e.getCause()).getStatusCode());
+		}
+	}
+
+	@Test
+	public void rejectedGettersCompleteExceptionally() throws Exception {
+		DataSource.setAsyncExecutor(task -> {
+			throw new RejectedExecutionException("shut down");
+		});
+		CompletableFuture<OsmData> map = ds.getOsmDataAsync(35.0, -80.1, 35.1, -80.0);
+
+		assertTrue(map.isCompletedExceptionally());
+		assertTrue(ds.getRequests().isEmpty());
+	}
+
+	@Test
+	public void defaultExecutorUsesDaemonThreads() throws Exception {
+		CompletableFuture<Thread> thread = new CompletableFuture<>();
+		ds = new FakeDataSource() {
+			@Override
+			HttpResponse execute(HttpGet request) throws IOException {
+				thread.complete(Thread.currentThread());
+				return super.execute(request);
+			}
+		};
+		ds.answer("hash?", "h1");
+		ds.answer("coords?", "{\"nodes\":[[1,35.0,-80.0]],\"edges\":[],\"meta\":{\"name\":\"map\"}}");
+
+		assertEquals("map", ds.getOsmDataAsync(35.0, -80.1, 35.1, -80.0)
+			.get(10, TimeUnit.SECONDS).getName());
+		assertTrue(thread.get().isDaemon());
+		assertEquals("bridges-datasource-async", thread.get().getName());
+	}
+}
@@ -0,0 +1,129 @@
+package bridges.connect;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import bridges.cache.LRUCache;
+import bridges.data_src_dependent.OsmData;
+
+public class DataSourceCacheTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private FakeDataSource ds;
+
+	@Before
+	public void setUp() throws IOException {
+		DataSource.setCache(new LRUCache(folder.newFolder("cache").getPath() + File.separator, 100));
+		ds = new FakeDataSource();
+		ds.answer("hash?", "h1");
+		ds.answer("coords?", "{\"nodes\":[[1,35.0,-80.0]],\"edges\":[],\"meta\":{\"name\":\"old\"}}");
+	}
+
+	@After
+	public void tearDown() {
+		DataSource.setOffline(false);
+		DataSource.setBackgroundRevalidation(false);
+		DataSource.setCacheTTL(24L * 60 * 60 * 1000);
+	}
+
+	private OsmData getMap() throws IOException {
+		// the map kept in memory would hide the dataset cache
+		DataSource.getObjectCache().clear();
+		return ds.getOsmData(35.0, -80.1, 35.1, -80.0);
+	}
+
+	private void changeMap() {
+		ds.answer("hash?", "h2");
+		ds.answer("coords?", "{\"nodes\":[[1,35.0,-80.0]],\"edges\":[],\"meta\":{\"name\":\"new\"}}");
+	}
+
+	@Test
+	public void freshDatasetsAreNotChecked() throws IOException {
+		getMap();
+		changeMap();
+
+		assertEquals("old", getMap().getName());
+		assertEquals(1, ds.countRequests("hash?"));
+		assertEquals(1, ds.countRequests("coords?"));
+	}
+
+	@Test
+	public void staleDatasetsAreChecked() throws IOException {
+		DataSource.setCacheTTL("osm", 0);
+		getMap();
+		getMap();
+		assertEquals(2, ds.countRequests("hash?"));
+		assertEquals(1, ds.countRequests("coords?"));
+
+		changeMap();
+		assertEquals("new", getMap().getName());
+		assertEquals(2, ds.countRequests("coords?"));
+	}
+
+	@Test
+	public void timesToLiveOnlyApplyToTheirKind() throws IOException {
+		DataSource.setCacheTTL("amenity", 0);
+		getMap();
+		changeMap();
+
+		assertEquals("old", getMap().getName());
+		assertEquals(1, ds.countRequests("hash?"));
+	}
+
+	@Test
+	public void offlineDatasetsAreServedWhateverTheirAge() throws IOException {
+		getMap();
+		changeMap();
+		DataSource.setCacheTTL("osm", 0);
+		DataSource.setOffline(true);
+
+		assertEquals("old", getMap().getName());
+		assertEquals(1, ds.countRequests("hash?"));
+		assertEquals(1, ds.countRequests("coords?"));
+	}
+
+	@Test
+	public void offlineDatasetsNotInTheCacheFail() {
+		DataSource.setOffline(true);
+		try {
+			getMap();
+			fail("expected an IOException");
+		}
+		catch (IOException e) {
+			assertTrue(e.getMessage().startsWith("Not in cache and offline"));
+		}
+		assertTrue(ds.getRequests().isEmpty());
+	}
+
+	@Test
+	public void staleDatasetsAreRevalidatedInTheBackground() throws Exception {
+		getMap();
+		changeMap();
+		DataSource.setCacheTTL("osm", 0);
+		DataSource.setBackgroundRevalidation(true);
+
+		// the stale copy is returned right away
+		assertEquals("old", getMap().getName());
+
+		// and the next requests get the new one once it was downloaded
+		DataSource.setCacheTTL("osm", 24L * 60 * 60 * 1000);
+		long deadline = System.currentTimeMillis() + 10000;
+		while (!getMap().getName().equals("new")) {
+			assertTrue("not revalidated", System.currentTimeMillis() < deadline);
+			Thread.sleep(10);
+		}
+		assertEquals(2, ds.countRequests("hash?"));
+		assertEquals(2, ds.countRequests("coords?"));
+	}
+}
@@ -0,0 +1,105 @@
+package bridges.connect;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import bridges.cache.LRUCache;
+import bridges.data_src_dependent.ElevationData;
+
+public class DataSourceElevationTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private FakeDataSource ds;
+
+	@Before
+	public void setUp() throws IOException {
+		DataSource.setCache(new LRUCache(folder.newFolder("cache").getPath() + File.separator, 100));
+		ds = new FakeDataSource();
+		ds.answer("hash?", "false");
+	}
+
+	@After
+	public void tearDown() {
+		DataSource.setTiledElevation(false);
+	}
+
+	@Test
+	public void gridsAreParsedRowByRow() throws IOException {
+		ds.answer("elevation?", "ncols 3\nnrows 2\nxllcorner -80.5\nyllcorner 35.25\n"
+			+ "cellsize 0.5\nNODATA_value -9999\n-12 0 +7\n-9999 40 3\n");
+
+		ElevationData elevation = ds.getElevationData(35.25, -80.5, 36.25, -79, 0.5);
+		assertEquals(3, elevation.getCols());
+		assertEquals(2, elevation.getRows());
+		assertEquals(-80.5, elevation.getxll(), 0);
+		assertEquals(35.25, elevation.getyll(), 0);
+		assertEquals(0.5, elevation.getCellSize(), 0);
+		assertEquals(-12, elevation.getData()[0][0]);
+		assertEquals(7, elevation.getValue(0, 2));
+		assertEquals(-9999, elevation.getValue(1, 0));
+		assertEquals(40, elevation.getData()[1][1]);
+		// nodata cells are not part of the range
+		assertEquals(-12, elevation.getMinVal());
+		assertEquals(40, elevation.getMaxVal());
+	}
+
+	@Test(expected = IOException.class)
+	public void shortGridIsAnError() throws IOException {
+		ds.answer("elevation?", "ncols 2\nnrows 2\nxllcorner 0\nyllcorner 0\ncellsize 1\n1 2\n3\n");
+		ds.getElevationData(0, 0, 2, 2, 1);
+	}
+
+	@Test(expected = IOException.class)
+	public void malformedValueIsAnError() throws IOException {
+		ds.answer("elevation?", "ncols 2\nnrows 1\nxllcorner 0\nyllcorner 0\ncellsize 1\n1 2x\n");
+		ds.getElevationData(0, 0, 2, 1, 1);
+	}
+
+	@Test
+	public void tiledMapsAreStitchedFromCachedTiles() throws IOException {
+		DataSource.setTiledElevation(true);
+		ds.answer("hash?minLon=0.0&", "tile-0");
+		ds.answer("hash?minLon=0.07", "tile-1");
+		// level 0: cells of 1/3600 degree in tiles of 256 cells; the server
+		// answers each tile with a coarser 2x2 grid, resampled to the tile
+		double cell = 1.0 / 3600;
+		String coarse = "cellsize " + 128 * cell + "\n";
+		ds.answer("elevation?minLon=0.0&", "ncols 2\nnrows 2\nxllcorner 0\nyllcorner 0\n"
+			+ coarse + "1 2\n3 4\n");
+		ds.answer("elevation?", "ncols 2\nnrows 2\nxllcorner " + 256 * cell + "\nyllcorner 0\n"
+			+ coarse + "5 6\n7 8\n");
+
+		// 12 columns across the two tiles, 10 rows along the south edge
+		ElevationData elevation = ds.getElevationData(0.5 * cell, 250.5 * cell,
+			9.5 * cell, 261.5 * cell, cell);
+		assertEquals(12, elevation.getCols());
+		assertEquals(10, elevation.getRows());
+		assertEquals(250 * cell, elevation.getxll(), 1e-12);
+		assertEquals(0, elevation.getyll(), 1e-12);
+		assertEquals(cell, elevation.getCellSize(), 1e-12);
+		for (int row = 0; row < 10; ++row) {
+			for (int col = 0; col < 12; ++col)
+				assertEquals(col < 6 ? 4 : 7, elevation.getValue(row, col));
+		}
+		assertEquals(4, elevation.getMinVal());
+		assertEquals(7, elevation.getMaxVal());
+		assertEquals(2, ds.countRequests("elevation?"));
+
+		// a box within the same tiles downloads nothing
+		ElevationData inside = ds.getElevationData(2.5 * cell, 252.5 * cell,
+			4.5 * cell, 258.5 * cell, cell);
+		assertEquals(7, inside.getCols());
+		assertEquals(4, inside.getValue(0, 3));
+		assertEquals(7, inside.getValue(0, 4));
+		assertEquals(2, ds.countRequests("elevation?"));
+	}
+}
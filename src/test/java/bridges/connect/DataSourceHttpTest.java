@@ -0,0 +1,138 @@
+package bridges.connect;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.util.EntityUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+// requests through the shared client of DataSource, to a local server
+public class DataSourceHttpTest {
+	private HttpServer server;
+	private ExecutorService handlers;
+	private final Set<Integer> client_ports = Collections.synchronizedSet(new HashSet<Integer>());
+	private final AtomicInteger in_progress = new AtomicInteger();
+	private final AtomicInteger most_in_progress = new AtomicInteger();
+	// requests to /slow wait for it
+	private volatile CountDownLatch release = new CountDownLatch(0);
+	private DataSource ds;
+
+	@Before
+	public void setUp() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/", this::handle);
+		handlers = Executors.newCachedThreadPool();
+		server.setExecutor(handlers);
+		server.start();
+		ds = new DataSource();
+	}
+
+	@After
+	public void tearDown() {
+		release.countDown();
+		DataSource.setHttpConnectionLimits(20, 8);
+		DataSource.setHttpTimeouts(10 * 1000, 2 * 60 * 1000);
+		server.stop(0);
+		handlers.shutdownNow();
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		client_ports.add(exchange.getRemoteAddress().getPort());
+		most_in_progress.accumulateAndGet(in_progress.incrementAndGet(), Math::max);
+		try {
+			if (exchange.getRequestURI().getPath().equals("/slow"))
+				release.await(10, TimeUnit.SECONDS);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		finally {
+			in_progress.decrementAndGet();
+		}
+		byte[] answer = "ok".getBytes(StandardCharsets.UTF_8);
+		exchange.sendResponseHeaders(200, answer.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(answer);
+		}
+	}
+
+	private String get(String path) throws IOException {
+		HttpResponse response = ds.execute(new HttpGet("http://127.0.0.1:"
+			+ server.getAddress().getPort() + path));
+		return EntityUtils.toString(response.getEntity());
+	}
+
+	@Test
+	public void connectionsAreReused() throws IOException {
+		for (int i = 0; i < 5; i++)
+			assertEquals("ok", get("/fast"));
+		assertEquals(1, client_ports.size());
+
+		// by every DataSource
+		ds = new DataSource();
+		get("/fast");
+		assertEquals(1, client_ports.size());
+	}
+
+	@Test
+	public void connectionsAreLimited() throws Exception {
+		DataSource.setHttpConnectionLimits(2, 1);
+		release = new CountDownLatch(1);
+		ExecutorService callers = Executors.newFixedThreadPool(2);
+		try {
+			Future<?> first = callers.submit(() -> get("/slow"));
+			Future<?> second = callers.submit(() -> get("/slow"));
+			// the second request waits for the connection of the first
+			Thread.sleep(200);
+			assertEquals(1, in_progress.get());
+
+			release.countDown();
+			assertEquals("ok", first.get(10, TimeUnit.SECONDS));
+			assertEquals("ok", second.get(10, TimeUnit.SECONDS));
+			assertEquals(1, most_in_progress.get());
+		}
+		finally {
+			callers.shutdownNow();
+		}
+	}
+
+	@Test
+	public void slowServersTimeOut() throws IOException {
+		DataSource.setHttpTimeouts(1000, 200);
+		release = new CountDownLatch(1);
+		try {
+			get("/slow");
+			fail("expected a timeout");
+		}
+		catch (SocketTimeoutException e) {
+			// expected
+		}
+
+		// the client is rebuilt with the new settings
+		DataSource.setHttpTimeouts(1000, 0);
+		release.countDown();
+		assertEquals("ok", get("/fast"));
+	}
+}
@@ -0,0 +1,133 @@
+package bridges.connect;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import bridges.cache.LRUCache;
+import bridges.data_src_dependent.AmenityData;
+import bridges.data_src_dependent.ElevationData;
+import bridges.data_src_dependent.OsmData;
+
+public class DataSourceObjectsTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private FakeDataSource ds;
+
+	@Before
+	public void setUp() throws IOException {
+		DataSource.setCache(new LRUCache(folder.newFolder("cache").getPath() + File.separator, 100));
+		ds = new FakeDataSource();
+		ds.answer("hash?", "h1");
+	}
+
+	@After
+	public void tearDown() {
+		DataSource.setCacheTTL(24L * 60 * 60 * 1000);
+	}
+
+	@Test
+	public void cachedMapsAreNotShared() throws IOException {
+		ds.answer("coords?", "{\"nodes\":[[1,35.0,-80.0],[2,35.1,-80.1]],"
+			+ "\"edges\":[[1,2,12.5]],\"meta\":{\"name\":\"map\"}}");
+
+		OsmData first = ds.getOsmData(35.0, -80.1, 35.1, -80.0);
+		first.setName("changed");
+		first.getLatitudeRange()[0] = 0;
+		first.getVertices()[0] = null;
+
+		OsmData second = ds.getOsmData(35.0, -80.1, 35.1, -80.0);
+		assertNotSame(first, second);
+		assertEquals(1, ds.countRequests("coords?"));
+		assertEquals("map", second.getName());
+		assertEquals(35.0, second.getLatitudeRange()[0], 0);
+		assertEquals(2, second.getVertices().length);
+		assertEquals(35.0, second.getVertices()[0].getLatitude(), 0);
+		assertEquals(1, second.getEdgeCount());
+	}
+
+	@Test
+	public void cachedElevationsAreNotShared() throws IOException {
+		ds.answer("elevation?", "ncols 2\nnrows 2\nxllcorner 0\nyllcorner 0\ncellsize 1\n1 2\n3 4\n");
+
+		ElevationData first = ds.getElevationData(0, 0, 2, 2, 1);
+		first.getData()[0][0] = 99;
+		first.setMaxVal(99);
+
+		ElevationData second = ds.getElevationData(0, 0, 2, 2, 1);
+		assertEquals(1, ds.countRequests("elevation?"));
+		assertEquals(1, second.getData()[0][0]);
+		assertEquals(1, second.getValue(0, 0));
+		assertEquals(4, second.getMaxVal());
+	}
+
+	@Test
+	public void cachedAmenitiesAreNotShared() throws IOException {
+		ds.answer("amenity?", "{\"nodes\":[[1,35.0,-80.0,\"Cafe\"],[2,35.1,-80.1,\"Diner\"]],"
+			+ "\"meta\":{\"count\":2,\"minlat\":35.0,\"minlon\":-80.1,\"maxlat\":35.1,\"maxlon\":-80.0}}");
+
+		AmenityData first = ds.getAmenityData(35.0, -80.1, 35.1, -80.0, "food");
+		first.getAmenities().get(0).setName("changed");
+		first.getAmenities().remove(1);
+
+		AmenityData second = ds.getAmenityData(35.0, -80.1, 35.1, -80.0, "food");
+		assertEquals(1, ds.countRequests("amenity?"));
+		assertEquals(2, second.getAmenities().size());
+		assertEquals("Cafe", second.getAmenities().get(0).getName());
+		assertEquals(2, second.getCount());
+	}
+
+	@Test
+	public void cachedMapsAreCheckedWhenTheirTimeToLiveIsZero() throws IOException {
+		DataSource.setCacheTTL("osm", 0);
+		ds.answer("coords?", "{\"nodes\":[[1,35.0,-80.0]],\"edges\":[],\"meta\":{\"name\":\"map\"}}");
+
+		ds.getOsmData(35.0, -80.1, 35.1, -80.0);
+		OsmData second = ds.getOsmData(35.0, -80.1, 35.1, -80.0);
+		// the hash is asked for again, the map itself is still cached
+		assertEquals(2, ds.countRequests("hash?"));
+		assertEquals(1, ds.countRequests("coords?"));
+		assertEquals("map", second.getName());
+	}
+
+	@Test
+	public void changedDatasetsAreNotServedFromMemory() throws IOException {
+		DataSource.setCacheTTL(0);
+		ds.answer("coords?", "{\"nodes\":[[1,35.0,-80.0]],\"edges\":[],\"meta\":{\"name\":\"old\"}}");
+		ds.getOsmData(35.0, -80.1, 35.1, -80.0);
+
+		ds.answer("hash?", "h2");
+		ds.answer("coords?", "{\"nodes\":[[1,35.0,-80.0]],\"edges\":[],\"meta\":{\"name\":\"new\"}}");
+		assertEquals("new", ds.getOsmData(35.0, -80.1, 35.1, -80.0).getName());
+		assertEquals(2, ds.countRequests("coords?"));
+	}
+
+	@Test
+	public void datasetsWithoutHashAreNotKept() throws IOException {
+		ds.answer("hash?", "false");
+		ds.answer("elevation?", "ncols 1\nnrows 1\nxllcorner 0\nyllcorner 0\ncellsize 1\n5\n");
+
+		ds.getElevationData(0, 0, 1, 1, 1);
+		ds.getElevationData(0, 0, 1, 1, 1);
+		assertEquals(2, ds.countRequests("elevation?"));
+	}
+
+	@Test
+	public void cachedMapsAreWeighedByTheirColumns() throws IOException {
+		ds.answer("coords?", "{\"nodes\":[[1,35.0,-80.0],[2,35.1,-80.1],[3,35.2,-80.2]],"
+			+ "\"edges\":[[1,2,1.0]],\"meta\":{\"name\":\"map\"}}");
+		ds.getOsmData(35.0, -80.1, 35.1, -80.0);
+
+		// 2 doubles per vertex, 2 ints and a double per edge
+		assertEquals(3 * 16 + 16, DataSource.getObjectCache().getWeight());
+	}
+}
@@ -0,0 +1,121 @@
+package bridges.connect;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.google.gson.JsonParseException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import bridges.cache.LRUCache;
+import bridges.data_src_dependent.OsmData;
+
+public class DataSourceOsmTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private FakeDataSource ds;
+
+	@Before
+	public void setUp() throws IOException {
+		DataSource.setCache(new LRUCache(folder.newFolder("cache").getPath() + File.separator, 100));
+		ds = new FakeDataSource();
+		ds.answer("hash?", "false");
+	}
+
+	@After
+	public void tearDown() {
+		DataSource.setTiledOsm(false);
+	}
+
+	@Test
+	public void nodeIdsAreMappedToVertexIndices() throws IOException {
+		// edges may come first, ids do not fit in an int
+		ds.answer("loc?", "{\"edges\":[[9000000001,7,1.5],[7,-3,2.5]],"
+			+ "\"nodes\":[[-3,35.2,-80.2],[9000000001,35.0,-80.0],[7,35.1,-80.1]],"
+			+ "\"meta\":{\"name\":\"ids\"}}");
+
+		OsmData map = ds.getOsmData("somewhere", "default");
+		assertEquals(3, map.getVertexCount());
+		assertEquals(2, map.getEdgeCount());
+		assertEquals(1, map.getEdgeSource(0));
+		assertEquals(2, map.getEdgeDestination(0));
+		assertEquals(2, map.getEdgeSource(1));
+		assertEquals(0, map.getEdgeDestination(1));
+		assertEquals(35.0, map.getLatitude(map.getEdgeSource(0)), 0);
+	}
+
+	@Test(expected = JsonParseException.class)
+	public void edgeToAnUnknownNodeIsAnError() throws IOException {
+		ds.answer("loc?", "{\"nodes\":[[1,35.0,-80.0]],\"edges\":[[1,2,1.0]]}");
+		ds.getOsmData("somewhere", "default");
+	}
+
+	@Test
+	public void tiledMapsAreStitchedFromCachedTiles() throws IOException {
+		DataSource.setTiledOsm(true);
+		ds.answer("hash?minLon=0.0&", "tile-0");
+		ds.answer("hash?minLon=0.05&", "tile-1");
+		// node 2 and the road from 2 to 3 are returned with both tiles,
+		// node 9 is outside the box but ends a road from inside of it
+		ds.answer("coords?minLon=0.0&", "{\"nodes\":[[1,0.02,0.04],[2,0.02,0.049],[9,0.02,0.01]],"
+			+ "\"edges\":[[1,2,1.0],[2,3,2.0],[1,9,3.0]],\"meta\":{\"name\":\"tiles\"}}");
+		ds.answer("coords?minLon=0.05&", "{\"nodes\":[[3,0.02,0.055],[2,0.02,0.049]],"
+			+ "\"edges\":[[2,3,2.0]],\"meta\":{\"name\":\"tiles\"}}");
+
+		OsmData map = ds.getOsmData(0.01, 0.035, 0.04, 0.06, "default");
+		assertEquals(4, map.getVertexCount());
+		assertEquals(3, map.getEdgeCount());
+		assertEquals("tiles", map.getName());
+		for (int j = 0; j < map.getEdgeCount(); ++j) {
+			double lon_from = map.getLongitude(map.getEdgeSource(j));
+			double lon_to = map.getLongitude(map.getEdgeDestination(j));
+			double d = map.getEdgeDistance(j);
+			assertEquals(d == 2.0 ? 0.049 : 0.04, lon_from, 0);
+			assertEquals(d == 1.0 ? 0.049 : d == 2.0 ? 0.055 : 0.01, lon_to, 0);
+		}
+		assertEquals(2, ds.countRequests("coords?"));
+
+		// a box within the first tile downloads nothing; node 2 is now
+		// outside, but ends a road from node 1
+		OsmData inside = ds.getOsmData(0.01, 0.035, 0.04, 0.045, "default");
+		assertEquals(3, inside.getVertexCount());
+		assertEquals(2, inside.getEdgeCount());
+		assertEquals(0.04, inside.getLongitude(0), 0);
+		assertEquals(2, ds.countRequests("coords?"));
+	}
+
+	@Test
+	public void roadsAcrossTilesAreKept() throws IOException {
+		DataSource.setTiledOsm(true);
+		// only the first tile has the road from 1 to 3, and only the
+		// second one has node 3
+		ds.answer("coords?minLon=0.0&", "{\"nodes\":[[1,0.02,0.04]],"
+			+ "\"edges\":[[1,3,7.5]],\"meta\":{\"name\":\"tiles\"}}");
+		ds.answer("coords?minLon=0.05&", "{\"nodes\":[[3,0.02,0.055]],"
+			+ "\"edges\":[],\"meta\":{\"name\":\"tiles\"}}");
+
+		OsmData map = ds.getOsmData(0.01, 0.035, 0.04, 0.06, "default");
+		assertEquals(2, map.getVertexCount());
+		assertEquals(1, map.getEdgeCount());
+		assertEquals(0.04, map.getLongitude(map.getEdgeSource(0)), 0);
+		assertEquals(0.055, map.getLongitude(map.getEdgeDestination(0)), 0);
+		assertEquals(7.5, map.getEdgeDistance(0), 0);
+	}
+
+	@Test
+	public void roadsToNodesOfNoTileAreDropped() throws IOException {
+		DataSource.setTiledOsm(true);
+		ds.answer("coords?", "{\"nodes\":[[1,0.02,0.04],[2,0.02,0.045]],"
+			+ "\"edges\":[[1,2,1.0],[1,42,2.0]],\"meta\":{\"name\":\"tiles\"}}");
+
+		OsmData map = ds.getOsmData(0.01, 0.035, 0.04, 0.048, "default");
+		assertEquals(2, map.getVertexCount());
+		assertEquals(1, map.getEdgeCount());
+	}
+}
@@ -0,0 +1,125 @@
+package bridges.connect;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import bridges.cache.LRUCache;
+import bridges.data_src_dependent.OsmData;
+
+public class DataSourceSnapshotTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static final String MAP = "{\"nodes\":[[1,35.0,-80.0],[2,-35.5,80.25],[3,0,0]],"
+		+ "\"edges\":[[1,2,12.5],[3,1,0.5]],\"meta\":{\"name\":\"Charlotte\"}}";
+
+	private LRUCache lru;
+	private FakeDataSource ds;
+
+	@Before
+	public void setUp() throws IOException {
+		lru = new LRUCache(folder.newFolder("cache").getPath() + File.separator, 100);
+		DataSource.setCache(lru);
+		ds = new FakeDataSource();
+		ds.answer("hash?", "h1");
+		ds.answer("coords?", MAP);
+	}
+
+	@After
+	public void tearDown() {
+		DataSource.setCacheTTL(24L * 60 * 60 * 1000);
+	}
+
+	private OsmData getMap() throws IOException {
+		// the parsed map kept in memory would hide the snapshot
+		DataSource.getObjectCache().clear();
+		return ds.getOsmData(35.0, -80.1, 35.1, -80.0);
+	}
+
+	private static void assertIsTheMap(OsmData map) {
+		assertEquals("Charlotte", map.getName());
+		assertEquals(3, map.getVertexCount());
+		assertEquals(-35.5, map.getLatitude(1), 0);
+		assertEquals(80.25, map.getLongitude(1), 0);
+		assertEquals(2, map.getEdgeCount());
+		assertEquals(2, map.getEdgeSource(1));
+		assertEquals(0, map.getEdgeDestination(1));
+		assertEquals(12.5, map.getEdgeDistance(0), 0);
+	}
+
+	@Test
+	public void snapshotsAreReadInsteadOfTheJSON() throws IOException {
+		assertIsTheMap(getMap());
+		assertTrue(lru.inCache("h1.osmbin"));
+
+		// the JSON is not parsed again
+		lru.putDoc("h1", "not a map");
+		assertIsTheMap(getMap());
+		assertEquals(1, ds.countRequests("coords?"));
+	}
+
+	@Test
+	public void mapsWithoutNameRoundTrip() throws IOException {
+		ds.answer("coords?", "{\"nodes\":[[1,35.0,-80.0]],\"edges\":[]}");
+		getMap();
+		lru.putDoc("h1", "not a map");
+
+		OsmData map = getMap();
+		assertNull(map.getName());
+		assertEquals(1, map.getVertexCount());
+		assertEquals(0, map.getEdgeCount());
+	}
+
+	@Test
+	public void corruptedSnapshotsFallBackToTheJSON() throws IOException {
+		getMap();
+		ByteBuffer good = lru.mapDoc("h1.osmbin");
+		byte[] bytes = new byte[good.remaining()];
+		good.get(bytes);
+
+		byte[][] corrupted = {
+			withInt(bytes, 0, 0x12345678),		// magic
+			withInt(bytes, 4, 99),			// version
+			Arrays.copyOf(bytes, bytes.length - 8),	// truncated
+			withInt(bytes, bytes.length - 16 * 3 - 16 * 2 - 8, Integer.MAX_VALUE),	// vertex count
+			new byte[2],
+		};
+		for (byte[] snapshot : corrupted) {
+			lru.putBytes("h1.osmbin", ByteBuffer.wrap(snapshot));
+			assertIsTheMap(getMap());
+			// and the snapshot is written again
+			assertEquals(bytes.length, lru.mapDoc("h1.osmbin").remaining());
+		}
+		assertEquals(1, ds.countRequests("coords?"));
+	}
+
+	@Test
+	public void snapshotsOfAnotherHashAreNotUsed() throws IOException {
+		DataSource.setCacheTTL("osm", 0);
+		getMap();
+
+		ds.answer("hash?", "h2");
+		ds.answer("coords?", "{\"nodes\":[[1,35.0,-80.0]],\"edges\":[],\"meta\":{\"name\":\"new\"}}");
+		assertEquals("new", getMap().getName());
+		assertEquals(2, ds.countRequests("coords?"));
+		assertTrue(lru.inCache("h2.osmbin"));
+	}
+
+	private static byte[] withInt(byte[] bytes, int offset, int value) {
+		byte[] copy = bytes.clone();
+		ByteBuffer.wrap(copy).putInt(offset, value);
+		return copy;
+	}
+}
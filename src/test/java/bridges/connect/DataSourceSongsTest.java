@@ -0,0 +1,130 @@
+package bridges.connect;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.client.HttpResponseException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import bridges.cache.LRUCache;
+import bridges.data_src_dependent.Song;
+
+public class DataSourceSongsTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private FakeDataSource ds;
+
+	@Before
+	public void setUp() throws IOException {
+		DataSource.setCache(new LRUCache(folder.newFolder("cache").getPath() + File.separator, 100));
+		ds = new FakeDataSource();
+		ds.answer("find/Delicate", "{\"song\":\"Delicate\",\"artist\":\"Taylor Swift\"}");
+		ds.answer("find/Hello", "{\"song\":\"Hello\",\"artist\":\"Adele\"}");
+		ds.answer("find/Missing", 404, "not found");
+		ds.answer("find/Gone", 410, "gone");
+		ds.answer("find/Busy", 503, "busy");
+	}
+
+	@After
+	public void tearDown() {
+		DataSource.setAsyncExecutor(null);
+		DataSource.setCacheTTL(24L * 60 * 60 * 1000);
+	}
+
+	private static DataSource.SongQuery song(String title) {
+		return new DataSource.SongQuery(title);
+	}
+
+	@Test
+	public void duplicateQueriesAreRequestedOnce() throws IOException {
+		List<Song> songs = ds.getSongs(Arrays.asList(song("Delicate"), song("Hello"),
+			song("Delicate")));
+		assertEquals(3, songs.size());
+		assertEquals("Taylor Swift", songs.get(0).getArtist());
+		assertEquals("Adele", songs.get(1).getArtist());
+		assertEquals("Taylor Swift", songs.get(2).getArtist());
+		assertNotSame(songs.get(0), songs.get(2));
+		assertEquals(1, ds.countRequests("find/Delicate"));
+
+		// and the next batch reads them from the cache
+		ds.getSongs(Arrays.asList(song("Hello")));
+		assertEquals(1, ds.countRequests("find/Hello"));
+	}
+
+	@Test
+	public void songsAreCachedForTheirTimeToLive() throws IOException {
+		ds.getSong("Hello", "Adele");
+		assertEquals("Adele", ds.getSong("Hello", "Adele").getArtist());
+		assertEquals(1, ds.countRequests("find/Hello"));
+
+		DataSource.setCacheTTL("songs", 0);
+		ds.getSong("Hello", "Adele");
+		assertEquals(2, ds.countRequests("find/Hello"));
+	}
+
+	@Test
+	public void songsAreRequestedOnTheAsyncExecutor() throws IOException {
+		AtomicInteger workers = new AtomicInteger();
+		DataSource.setAsyncExecutor(task -> {
+			workers.incrementAndGet();
+			new Thread(task).start();
+		});
+		ds.getSongs(Arrays.asList(song("Delicate"), song("Hello"), song("Delicate")), 8);
+		// one worker per distinct query, the caller being one of them
+		assertEquals(1, workers.get());
+	}
+
+	@Test
+	public void batchCompletesWhenTheExecutorRejects() throws IOException {
+		DataSource.setAsyncExecutor(task -> {
+			throw new RejectedExecutionException("shut down");
+		});
+		List<Song> songs = ds.getSongs(Arrays.asList(song("Delicate"), song("Hello")));
+		assertEquals("Adele", songs.get(1).getArtist());
+	}
+
+	@Test
+	public void eachFailureIsReportedOnce() {
+		try {
+			ds.getSongs(Arrays.asList(song("Missing"), song("Delicate"), song("Gone"),
+				song("Missing"), song("Gone")));
+			fail("got missing songs");
+		}
+		catch (IOException e) {
+			assertTrue(e.getMessage().startsWith("Could not get 4 of 5 songs"));
+			HttpResponseException first = (HttpResponseException) e.getCause();
+			assertEquals(404, first.getStatusCode());
+			assertEquals(1, first.getSuppressed().length);
+			assertEquals(410, ((HttpResponseException) first.getSuppressed()[0]).getStatusCode());
+		}
+		// client errors are not retried
+		assertEquals(1, ds.countRequests("find/Missing"));
+		assertEquals(1, ds.countRequests("find/Gone"));
+	}
+
+	@Test(timeout = 20000)
+	public void serverErrorsAreRetried() {
+		try {
+			ds.getSongs(Arrays.asList(song("Busy")));
+			fail("got a song of a busy server");
+		}
+		catch (IOException e) {
+			assertEquals(503, ((HttpResponseException) e.getCause()).getStatusCode());
+		}
+		assertEquals(3, ds.countRequests("find/Busy"));
+	}
+}
@@ -0,0 +1,116 @@
+package bridges.connect;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpResponseException;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.message.BasicHttpResponse;
+import org.junit.Before;
+import org.junit.Test;
+
+import bridges.data_src_dependent.Song;
+
+public class DataSourceStreamTest {
+	private static final String SONGS = "{\"data\":["
+		+ "{\"song\":\"Delicate\",\"artist\":\"Taylor Swift\",\"album\":\"reputation\"},"
+		+ "{\"song\":\"Hello\",\"artist\":\"Adele\",\"album\":\"25\"},";
+
+	// a response that counts how many times it was closed
+	static class ClosingResponse extends BasicHttpResponse implements CloseableHttpResponse {
+		final AtomicInteger closed;
+
+		ClosingResponse(HttpResponse response, AtomicInteger closed) {
+			super(response.getStatusLine());
+			setEntity(response.getEntity());
+			this.closed = closed;
+		}
+
+		@Override
+		public void close() {
+			closed.incrementAndGet();
+		}
+	}
+
+	private final AtomicInteger closed = new AtomicInteger();
+	private FakeDataSource ds;
+
+	@Before
+	public void setUp() {
+		ds = new FakeDataSource() {
+			@Override
+			HttpResponse execute(HttpGet request) throws IOException {
+				return new ClosingResponse(super.execute(request), closed);
+			}
+		};
+	}
+
+	private static List<String> titles(Stream<Song> songs) {
+		return songs.map(Song::getSongTitle).collect(Collectors.toList());
+	}
+
+	@Test
+	public void streamsHaveTheRecordsOfTheGetters() throws IOException {
+		ds.answer("api/songs", SONGS + "{\"song\":\"Yesterday\",\"artist\":\"The Beatles\"}]}");
+		try (Stream<Song> songs = ds.streamSongData()) {
+			assertEquals(titles(ds.getSongData().stream()), titles(songs));
+		}
+		assertEquals(2, ds.countRequests("api/songs"));
+	}
+
+	@Test
+	public void recordsAreParsedAsTheStreamIsConsumed() throws IOException {
+		ds.answer("api/songs", SONGS + "not json");
+		try (Stream<Song> songs = ds.streamSongData()) {
+			List<Song> first = songs.limit(2).collect(Collectors.toList());
+			assertEquals("Taylor Swift", first.get(0).getArtist());
+			assertEquals("reputation", first.get(0).getAlbumTitle());
+			assertEquals("Hello", first.get(1).getSongTitle());
+		}
+	}
+
+	@Test
+	public void malformedRecordsFailWhenReached() throws IOException {
+		ds.answer("api/songs", SONGS + "not json");
+		try (Stream<Song> songs = ds.streamSongData()) {
+			songs.count();
+			fail("expected an UncheckedIOException");
+		}
+		catch (UncheckedIOException e) {
+			// expected
+		}
+		// the response is released with the error
+		assertEquals(1, closed.get());
+	}
+
+	@Test
+	public void closingTheStreamReleasesTheResponse() throws IOException {
+		ds.answer("api/songs", SONGS + "{\"song\":\"Yesterday\"}]}");
+		Stream<Song> songs = ds.streamSongData();
+		songs.findFirst();
+		assertEquals(0, closed.get());
+		songs.close();
+		assertEquals(1, closed.get());
+	}
+
+	@Test
+	public void failedRequestsThrowRightAway() {
+		ds.answer("api/songs", 503, "busy");
+		try {
+			ds.streamSongData();
+			fail("expected an HttpResponseException");
+		}
+		catch (IOException e) {
+			assertEquals(503, ((HttpResponseException) e).getStatusCode());
+		}
+	}
+}
@@ -0,0 +1,83 @@
+package bridges.connect;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.http.client.HttpResponseException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import bridges.cache.LRUCache;
+import bridges.data_src_dependent.ActorMovieWikidata;
+
+public class DataSourceWikidataTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static final String YEAR = "{\"results\":{\"bindings\":[{"
+		+ "\"movie\":{\"value\":\"http://www.wikidata.org/entity/Q1\"},"
+		+ "\"movieLabel\":{\"value\":\"Movie\"},"
+		+ "\"actor\":{\"value\":\"http://www.wikidata.org/entity/Q2\"},"
+		+ "\"actorLabel\":{\"value\":\"Actor\"}}]}}";
+
+	private FakeDataSource ds;
+
+	@Before
+	public void setUp() throws IOException {
+		DataSource.setCache(new LRUCache(folder.newFolder("cache").getPath() + File.separator, 100));
+		ds = new FakeDataSource();
+	}
+
+	@Test
+	public void yearsAreFetchedOnce() throws IOException {
+		ds.answer("wikidata", YEAR);
+		List<ActorMovieWikidata> pairs = ds.getWikidataActorMovie(2001, 2001);
+		assertEquals(1, pairs.size());
+		assertEquals("Q1", pairs.get(0).getMovieURI());
+		assertEquals("Actor", pairs.get(0).getActorName());
+
+		assertEquals(2, ds.getWikidataActorMovie(2000, 2001).size());
+		assertEquals(2, ds.countRequests("wikidata"));
+	}
+
+	@Test
+	public void yearsKeptInMemoryAreNotShared() throws IOException {
+		ds.answer("wikidata", YEAR);
+		List<ActorMovieWikidata> first = ds.getWikidataActorMovie(2001, 2001);
+		first.get(0).setActorName("changed");
+		first.clear();
+
+		List<ActorMovieWikidata> second = ds.getWikidataActorMovie(2001, 2001);
+		assertEquals(1, ds.countRequests("wikidata"));
+		assertEquals(1, second.size());
+		assertEquals("Actor", second.get(0).getActorName());
+	}
+
+	@Test
+	public void failedYearIsAnError() throws IOException {
+		ds.answer("wikidata", 500, "busy");
+		try {
+			ds.getWikidataActorMovie(2001, 2001);
+			fail("a failed year read as empty");
+		}
+		catch (HttpResponseException e) {
+			assertEquals(500, e.getStatusCode());
+		}
+
+		// the failure is not remembered
+		ds.answer("wikidata", YEAR);
+		assertEquals(1, ds.getWikidataActorMovie(2001, 2001).size());
+	}
+
+	@Test(expected = IOException.class)
+	public void unreachableWikidataIsAnError() throws IOException {
+		ds.answer("wikidata", -1, "");
+		ds.getWikidataActorMovie(2001, 2001);
+	}
+}
@@ -0,0 +1,101 @@
+package bridges.connect;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DirectorySinkTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static String read(File file) throws IOException {
+		return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+	}
+
+	private static String readCompressed(File file) throws IOException {
+		try (InputStream in = new GZIPInputStream(Files.newInputStream(file.toPath()))) {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			int n;
+			while ((n = in.read(buffer)) > 0)
+				bytes.write(buffer, 0, n);
+			return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+		}
+	}
+
+	private static String[] names(File dir) {
+		String[] names = dir.list();
+		Arrays.sort(names);
+		return names;
+	}
+
+	@Test
+	public void writesEachSubassignmentToItsFile() throws IOException {
+		File dir = new File(folder.getRoot(), "out");
+		DirectorySink sink = new DirectorySink(dir);
+		sink.send("4.00", out -> out.write("{\"title\":\"café\"}"));
+		sink.send("4.01", out -> out.write("{}"));
+
+		assertEquals(dir, sink.getDirectory());
+		assertArrayEquals(new String[] {"4.00.json", "4.01.json"}, names(dir));
+		assertEquals("{\"title\":\"café\"}", read(new File(dir, "4.00.json")));
+		assertEquals("{}", read(new File(dir, "4.01.json")));
+	}
+
+	@Test
+	public void compressesWhenAsked() throws IOException {
+		File dir = folder.getRoot();
+		DirectorySink sink = new DirectorySink(dir, true);
+		sink.send("4.00", out -> out.write("{\"nodes\":[]}"));
+
+		assertArrayEquals(new String[] {"4.00.json.gz"}, names(dir));
+		assertEquals("{\"nodes\":[]}", readCompressed(new File(dir, "4.00.json.gz")));
+	}
+
+	@Test
+	public void replacesASubassignmentSentAgain() throws IOException {
+		File dir = folder.getRoot();
+		DirectorySink sink = new DirectorySink(dir);
+		sink.send("4.00", out -> out.write("first"));
+		sink.send("4.00", out -> out.write("second"));
+
+		assertArrayEquals(new String[] {"4.00.json"}, names(dir));
+		assertEquals("second", read(new File(dir, "4.00.json")));
+	}
+
+	@Test
+	public void failedPayloadsLeaveNoFile() throws IOException {
+		File dir = folder.getRoot();
+		DirectorySink sink = new DirectorySink(dir);
+		sink.send("4.00", out -> out.write("kept"));
+		try {
+			sink.send("4.00", out -> {
+				out.write("partial");
+				throw new IOException("failed");
+			});
+			fail("the failure should be reported");
+		}
+		catch (IOException e) {
+			assertEquals("failed", e.getMessage());
+		}
+
+		// neither the temporary file nor a partial visualization
+		assertArrayEquals(new String[] {"4.00.json"}, names(dir));
+		assertEquals("kept", read(new File(dir, "4.00.json")));
+		assertFalse(new File(dir, "4.01.json").exists());
+	}
+}
@@ -0,0 +1,88 @@
+package bridges.connect;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicHttpResponse;
+
+/**
+ *	A DataSource answering its requests from canned responses: of the
+ *	keys that are part of the URL, the longest one is served (the first
+ *	one given among keys of the same length). URLs without a response get
+ *	a 404.
+ */
+class FakeDataSource extends DataSource {
+	static class Response {
+		final int status;
+		final String body;
+
+		Response(int status, String body) {
+			this.status = status;
+			this.body = body;
+		}
+	}
+
+	private final Map<String, Response> responses = new LinkedHashMap<>();
+	private final List<String> requests = Collections.synchronizedList(new ArrayList<String>());
+
+	FakeDataSource answer(String url_part, String body) {
+		return answer(url_part, 200, body);
+	}
+
+	synchronized FakeDataSource answer(String url_part, int status, String body) {
+		responses.put(url_part, new Response(status, body));
+		return this;
+	}
+
+	/**
+	 *	@return the URLs requested so far
+	 */
+	List<String> getRequests() {
+		synchronized (requests) {
+			return new ArrayList<>(requests);
+		}
+	}
+
+	int countRequests(String url_part) {
+		int n = 0;
+		for (String url : getRequests()) {
+			if (url.contains(url_part))
+				n++;
+		}
+		return n;
+	}
+
+	@Override
+	HttpResponse execute(HttpGet request) throws IOException {
+		String url = request.getURI().toString();
+		requests.add(url);
+		Response response = null;
+		synchronized (this) {
+			int matched = -1;
+			for (Map.Entry<String, Response> entry : responses.entrySet()) {
+				String key = entry.getKey();
+				if (key.length() > matched && url.contains(key)) {
+					response = entry.getValue();
+					matched = key.length();
+				}
+			}
+		}
+		if (response == null)
+			response = new Response(404, "not found");
+		if (response.status < 0)
+			throw new IOException("connection reset");
+		BasicHttpResponse http = new BasicHttpResponse(HttpVersion.HTTP_1_1,
+			response.status, "status " + response.status);
+		http.setEntity(new StringEntity(response.body, ContentType.APPLICATION_JSON));
+		return http;
+	}
+}
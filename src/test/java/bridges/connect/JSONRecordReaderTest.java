@@ -0,0 +1,144 @@
+package bridges.connect;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.Closeable;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.junit.Test;
+
+public class JSONRecordReaderTest {
+	private static class Connection implements Closeable {
+		boolean closed = false;
+
+		@Override
+		public void close() {
+			closed = true;
+		}
+	}
+
+	private static JSONRecordReader<JSONObject> reader(String json, String key,
+		Closeable connection) {
+		return new JSONRecordReader<>(new StringReader(json), key, record -> record, connection);
+	}
+
+	private static List<JSONObject> readAll(JSONRecordReader<JSONObject> reader) {
+		List<JSONObject> records = new ArrayList<>();
+		while (reader.hasNext())
+			records.add(reader.next());
+		return records;
+	}
+
+	@Test
+	public void readsTheRecordsOfAnArray() {
+		JSONRecordReader<JSONObject> reader = reader("[{\"a\":1},{\"a\":2}]", null, null);
+		List<JSONObject> records = readAll(reader);
+		assertEquals(2, records.size());
+		assertEquals(2L, records.get(1).get("a"));
+		assertTrue(reader.isFinished());
+	}
+
+	@Test
+	public void readsTheRecordsOfAField() {
+		String json = "{\"meta\":{\"skip\":[1,{\"x\":null}]},\"data\":[{\"name\":\"first\"}],\"after\":1}";
+		List<JSONObject> records = readAll(reader(json, "data", null));
+		assertEquals(1, records.size());
+		assertEquals("first", records.get(0).get("name"));
+	}
+
+	@Test
+	public void valuesAreReadAsJsonSimpleDoes() {
+		String json = "[{\"int\":3,\"big\":123456789012345678901234,\"real\":1.5,\"exp\":1e3,"
+			+ "\"bool\":true,\"none\":null,\"list\":[1,\"two\"],\"object\":{\"k\":\"v\"}}]";
+		JSONObject record = readAll(reader(json, null, null)).get(0);
+		assertEquals(3L, record.get("int"));
+		assertEquals(1.2345678901234568e23, (Double) record.get("big"), 1e8);
+		assertEquals(1.5, record.get("real"));
+		assertEquals(1000.0, record.get("exp"));
+		assertEquals(Boolean.TRUE, record.get("bool"));
+		assertTrue(record.containsKey("none"));
+		assertNull(record.get("none"));
+		JSONArray list = (JSONArray) record.get("list");
+		assertEquals(1L, list.get(0));
+		assertEquals("two", list.get(1));
+		assertEquals("v", ((JSONObject) record.get("object")).get("k"));
+	}
+
+	@Test
+	public void missingFieldIsAnError() {
+		Connection connection = new Connection();
+		JSONRecordReader<JSONObject> reader = reader("{\"other\":[]}", "data", connection);
+		try {
+			reader.hasNext();
+			fail("read a missing field");
+		}
+		catch (UncheckedIOException e) {
+			assertTrue(e.getCause().getMessage().contains("data"));
+		}
+		assertTrue(connection.closed);
+		assertFalse(reader.hasNext());
+	}
+
+	@Test
+	public void elementsThatAreNotRecordsAreAnError() {
+		JSONRecordReader<JSONObject> reader = reader("[{\"a\":1},2]", null, null);
+		reader.next();
+		try {
+			reader.next();
+			fail("read a number as a record");
+		}
+		catch (UncheckedIOException e) {
+			assertTrue(e.getCause().getMessage().startsWith("Malformed JSON"));
+		}
+	}
+
+	@Test(expected = UncheckedIOException.class)
+	public void truncatedDocumentIsAnError() {
+		readAll(reader("[{\"a\":1},{\"a\"", null, null));
+	}
+
+	@Test(expected = NoSuchElementException.class)
+	public void nextAfterTheEndFails() {
+		JSONRecordReader<JSONObject> reader = reader("[]", null, null);
+		assertFalse(reader.hasNext());
+		reader.next();
+	}
+
+	@Test
+	public void connectionIsClosedOnlyWhenStoppingEarly() throws Exception {
+		Connection read = new Connection();
+		readAll(reader("[{\"a\":1}]", null, read));
+		assertFalse(read.closed);
+
+		Connection stopped = new Connection();
+		JSONRecordReader<JSONObject> reader = reader("[{\"a\":1},{\"a\":2}]", null, stopped);
+		reader.next();
+		reader.close();
+		assertTrue(stopped.closed);
+		assertFalse(reader.hasNext());
+	}
+
+	@Test
+	public void closingTheStreamClosesTheReader() {
+		Connection connection = new Connection();
+		JSONRecordReader<JSONObject> reader = reader("[{\"a\":1},{\"a\":2},{\"a\":3}]", null, connection);
+		List<Object> first;
+		try (Stream<JSONObject> records = reader.stream()) {
+			first = records.limit(2).map(r -> r.get("a")).collect(Collectors.toList());
+		}
+		assertEquals(2, first.size());
+		assertTrue(connection.closed);
+	}
+}
@@ -0,0 +1,58 @@
+package bridges.connect;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class LongIntMapTest {
+	@Test
+	public void absentKeysHaveTheMissingValue() {
+		LongIntMap map = new LongIntMap(0, -1);
+		assertEquals(-1, map.get(0));
+		map.put(0, 7);
+		assertEquals(7, map.get(0));
+		assertEquals(-1, map.get(1));
+		assertEquals(1, map.size());
+	}
+
+	@Test
+	public void putReplacesTheValue() {
+		LongIntMap map = new LongIntMap(4, -1);
+		map.put(42, 1);
+		map.put(42, 2);
+		assertEquals(2, map.get(42));
+		assertEquals(1, map.size());
+	}
+
+	@Test
+	public void growsPastTheExpectedSize() {
+		LongIntMap map = new LongIntMap(2, -1);
+		long[] keys = {Long.MIN_VALUE, Long.MAX_VALUE, -1, 0, 1L << 32, 1L << 40, 1L << 48};
+		for (int i = 0; i < keys.length; ++i)
+			map.put(keys[i], i);
+		for (int i = 0; i < keys.length; ++i)
+			assertEquals(i, map.get(keys[i]));
+		assertEquals(keys.length, map.size());
+	}
+
+	@Test
+	public void agreesWithAHashMap() {
+		Random random = new Random(7);
+		LongIntMap map = new LongIntMap(16, Integer.MIN_VALUE);
+		Map<Long, Integer> expected = new HashMap<>();
+		for (int i = 0; i < 100000; ++i) {
+			// OSM ids are large and clustered
+			long key = 4000000000L + random.nextInt(50000) * 1024L;
+			map.put(key, i);
+			expected.put(key, i);
+		}
+		assertEquals(expected.size(), map.size());
+		for (Map.Entry<Long, Integer> entry : expected.entrySet())
+			assertEquals((int) entry.getValue(), map.get(entry.getKey()));
+		assertEquals(Integer.MIN_VALUE, map.get(4000000001L));
+	}
+}
@@ -0,0 +1,69 @@
+package bridges.connect;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class MemorySinkTest {
+	@Test
+	public void keepsVisualizationsInTheOrderSent() throws IOException {
+		MemorySink sink = new MemorySink();
+		sink.send("3.00", out -> out.write("{\"a\":1}"));
+		sink.send("3.01", out -> {
+			out.write("{\"b\":");
+			out.write("2}");
+		});
+
+		assertEquals(Arrays.asList("3.00", "3.01"), sink.getAssignments());
+		assertEquals("{\"a\":1}", sink.getJSON("3.00"));
+		assertEquals("{\"b\":2}", sink.getJSON("3.01"));
+		assertNull(sink.getJSON("3.02"));
+		assertEquals(14, sink.getLength());
+	}
+
+	@Test
+	public void replacesASubassignmentSentAgain() throws IOException {
+		MemorySink sink = new MemorySink();
+		sink.send("3.00", out -> out.write("first"));
+		sink.send("3.01", out -> out.write("other"));
+		sink.send("3.00", out -> out.write("second!"));
+
+		assertEquals(Arrays.asList("3.01", "3.00"), sink.getAssignments());
+		assertEquals("second!", sink.getJSON("3.00"));
+		assertEquals(12, sink.getLength());
+	}
+
+	@Test
+	public void failedPayloadsAreNotKept() {
+		MemorySink sink = new MemorySink();
+		try {
+			sink.send("3.00", out -> {
+				out.write("partial");
+				throw new IOException("failed");
+			});
+			fail("the failure should be reported");
+		}
+		catch (IOException e) {
+			assertEquals("failed", e.getMessage());
+		}
+		assertTrue(sink.getAssignments().isEmpty());
+		assertEquals(0, sink.getLength());
+	}
+
+	@Test
+	public void clearForgetsEverything() throws IOException {
+		MemorySink sink = new MemorySink();
+		sink.send("3.00", out -> out.write("json"));
+		sink.clear();
+
+		assertTrue(sink.getAssignments().isEmpty());
+		assertNull(sink.getJSON("3.00"));
+		assertEquals(0, sink.getLength());
+	}
+}
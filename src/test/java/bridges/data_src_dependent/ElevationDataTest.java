@@ -0,0 +1,58 @@
+package bridges.data_src_dependent;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class ElevationDataTest {
+	private static ElevationData grid() {
+		return new ElevationData(new int[] {1, 2, 3, 4, 5, 6}, 3, 2, 0, 0, 1, 1, 6);
+	}
+
+	@Test
+	public void valuesAreStoredRowByRow() {
+		ElevationData elevation = grid();
+		assertEquals(2, elevation.getValue(0, 1));
+		assertEquals(6, elevation.getValue(1, 2));
+		assertArrayEquals(new int[][] {{1, 2, 3}, {4, 5, 6}}, elevation.getData());
+
+		// the values are the storage
+		elevation.getValues()[5] = 60;
+		assertEquals(60, elevation.getValue(1, 2));
+	}
+
+	@Test
+	public void rowsAreCopiesStoredBackBySetData() {
+		ElevationData elevation = grid();
+		int[][] rows = elevation.getData();
+		rows[1][2] = 60;
+		assertEquals(6, elevation.getValue(1, 2));
+
+		elevation.setData(rows);
+		assertEquals(60, elevation.getValue(1, 2));
+
+		elevation.setData(new int[][] {{7, 8}});
+		assertEquals(2, elevation.getCols());
+		assertEquals(1, elevation.getRows());
+		assertEquals(8, elevation.getValue(0, 1));
+		assertArrayEquals(new int[] {7, 8}, elevation.getValues());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void valuesMustFillTheGrid() {
+		new ElevationData(new int[] {1, 2, 3}, 2, 2, 0, 0, 1, 1, 3);
+	}
+
+	@Test
+	public void copiesHaveTheirOwnValues() {
+		ElevationData elevation = grid();
+		ElevationData copy = new ElevationData(elevation);
+		copy.getValues()[0] = 10;
+		assertEquals(1, elevation.getValue(0, 0));
+		assertEquals(10, copy.getValue(0, 0));
+		assertEquals(3, copy.getCols());
+		assertEquals(1, copy.getMinVal());
+		assertEquals(6, copy.getMaxVal());
+	}
+}
@@ -0,0 +1,83 @@
+package bridges.data_src_dependent;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import bridges.base.GraphAdjList;
+
+public class OsmDataTest {
+	private static OsmData columns() {
+		return new OsmData(new double[] {35.0, 35.2, 35.1}, new double[] {-80.0, -80.3, -80.1},
+			new int[] {0, 1}, new int[] {1, 2}, new double[] {10.5, 20.5}, "map");
+	}
+
+	@Test
+	public void columnsMatchTheObjects() {
+		OsmData from_columns = columns();
+		OsmData from_objects = new OsmData(
+			new OsmVertex[] {new OsmVertex(35.0, -80.0), new OsmVertex(35.2, -80.3),
+				new OsmVertex(35.1, -80.1)},
+			new OsmEdge[] {new OsmEdge(0, 1, 10.5), new OsmEdge(1, 2, 20.5)}, "map");
+
+		for (OsmData map : new OsmData[] {from_columns, from_objects}) {
+			assertEquals(3, map.getVertexCount());
+			assertEquals(2, map.getEdgeCount());
+			assertEquals(35.2, map.getLatitude(1), 0);
+			assertEquals(-80.1, map.getLongitude(2), 0);
+			assertEquals(1, map.getEdgeSource(1));
+			assertEquals(2, map.getEdgeDestination(1));
+			assertEquals(20.5, map.getEdgeDistance(1), 0);
+			assertArrayEquals(new double[] {35.0, 35.2}, map.getLatitudeRange(), 0);
+			assertArrayEquals(new double[] {-80.3, -80.0}, map.getLongitudeRange(), 0);
+		}
+		for (int i = 0; i < 3; ++i) {
+			OsmVertex vertex = from_objects.getVertices()[i];
+			assertEquals(vertex.getCartesian_coord()[0], from_columns.getCartesianX(i), 0);
+			assertEquals(vertex.getCartesian_coord()[1], from_columns.getCartesianY(i), 0);
+		}
+		assertArrayEquals(from_objects.getCartesianRangeX(), from_columns.getCartesianRangeX(), 0);
+		assertArrayEquals(from_objects.getCartesianRangeY(), from_columns.getCartesianRangeY(), 0);
+	}
+
+	@Test
+	public void objectsAreBuiltOnceFromTheColumns() {
+		OsmData map = columns();
+		OsmVertex[] vertices = map.getVertices();
+		assertEquals(3, vertices.length);
+		assertEquals(35.1, vertices[2].getLatitude(), 0);
+		assertEquals(map.getCartesianX(2), vertices[2].getCartesian_coord()[0], 0);
+		assertSame(vertices, map.getVertices());
+
+		OsmEdge[] edges = map.getEdges();
+		assertEquals(2, edges.length);
+		assertEquals(0, edges[0].getSource());
+		assertEquals(10.5, edges[0].getDistance(), 0);
+		assertSame(edges, map.getEdges());
+	}
+
+	@Test
+	public void settingTheVerticesRebuildsTheColumns() {
+		OsmData map = columns();
+		map.setVertices(new OsmVertex[] {new OsmVertex(1, 2), new OsmVertex(3, 4)});
+		assertEquals(2, map.getVertexCount());
+		assertEquals(3, map.getLatitude(1), 0);
+		assertArrayEquals(new double[] {2, 4}, map.getLongitudeRange(), 0);
+	}
+
+	@Test
+	public void graphHasTheEdgesOfTheMap() {
+		GraphAdjList<Integer, OsmVertex, Double> graph = columns().getGraph();
+		assertEquals(3, graph.getVertices().size());
+		assertEquals(10.5, graph.getEdgeData(0, 1), 0);
+		assertEquals(20.5, graph.getEdgeData(1, 2), 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void columnsMustHaveTheSameLength() {
+		new OsmData(new double[] {1, 2}, new double[] {1}, new int[0], new int[0],
+			new double[0], "map");
+	}
+}